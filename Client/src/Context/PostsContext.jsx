@@ -4,6 +4,8 @@ import { useAuth } from './AuthContext';
 
 const PostsContext = createContext();
 
+const STATS_BATCH_SIZE = 100;
+
 export const usePosts = () => {
     const context = useContext(PostsContext);
     if (!context) {
@@ -20,6 +22,8 @@ export const PostsProvider = ({ children }) => {
     const [voteCounts, setVoteCounts] = useState({});
     const [commentCounts, setCommentCounts] = useState({});
     const [userVotes, setUserVotes] = useState({});
+    const [nextCursor, setNextCursor] = useState(null);
+    const [loadingMore, setLoadingMore] = useState(false);
     
     const { user } = useAuth();
 
@@ -30,6 +34,33 @@ export const PostsProvider = ({ children }) => {
         }
     }, [user, initialized]);
 
+    // Vote counts, comment counts and the user's own votes for a list of posts, in batches
+    const fetchStats = async (postsToLoad) => {
+        const newVoteCounts = {};
+        const newCommentCounts = {};
+        const newUserVotes = {};
+
+        // The server accepts at most STATS_BATCH_SIZE ids per request
+        const statsRequests = [];
+        for (let i = 0; i < postsToLoad.length; i += STATS_BATCH_SIZE) {
+            const params = { ids: postsToLoad.slice(i, i + STATS_BATCH_SIZE).map(post => post.id).join(',') };
+            if (user?.studentId) {
+                params.studentId = user.studentId;
+            }
+            statsRequests.push(API.get('/posts/stats', { params }).catch(() => ({ data: {} })));
+        }
+        const statsResponses = await Promise.all(statsRequests);
+        const stats = Object.assign({}, ...statsResponses.map(res => res.data || {}));
+
+        postsToLoad.forEach(post => {
+            newVoteCounts[post.id] = stats[post.id]?.voteCount || 0;
+            newCommentCounts[post.id] = stats[post.id]?.commentCount || 0;
+            newUserVotes[post.id] = stats[post.id]?.userVote || 0;
+        });
+
+        return { newVoteCounts, newCommentCounts, newUserVotes };
+    };
+
     const fetchPosts = async () => {
         if (loading) return; // Prevent multiple simultaneous fetches
         
@@ -41,44 +72,13 @@ export const PostsProvider = ({ children }) => {
             const response = await API.get('/posts');
             console.log('Posts response:', response);
             
-            const fetchedPosts = response.data;
+            const fetchedPosts = response.data.posts || [];
             setPosts(fetchedPosts);
-            
-            // Fetch vote and comment counts for each post
-            const voteCountPromises = fetchedPosts.map(post => 
-                API.get(`/posts/${post.id}/votes`).catch(() => ({ data: 0 }))
-            );
-            const commentCountPromises = fetchedPosts.map(post => 
-                API.get(`/posts/${post.id}/comments/count`).catch(() => ({ data: 0 }))
-            );
-            
-            const voteCountResponses = await Promise.all(voteCountPromises);
-            const commentCountResponses = await Promise.all(commentCountPromises);
-            
-            const newVoteCounts = {};
-            const newCommentCounts = {};
-            
-            fetchedPosts.forEach((post, index) => {
-                newVoteCounts[post.id] = voteCountResponses[index]?.data || 0;
-                newCommentCounts[post.id] = commentCountResponses[index]?.data || 0;
-            });
-            
+            setNextCursor(response.data.nextCursor || null);
+
+            const { newVoteCounts, newCommentCounts, newUserVotes } = await fetchStats(fetchedPosts);
             setVoteCounts(newVoteCounts);
             setCommentCounts(newCommentCounts);
-
-            // Fetch current user's vote for each post (if logged in)
-            const newUserVotes = {};
-            if (user) {
-                const userVotePromises = fetchedPosts.map(post => 
-                    API.get(`/posts/${post.id}/vote?studentId=${user.studentId}`).catch(() => ({ data: 0 }))
-                );
-                const userVoteResponses = await Promise.all(userVotePromises);
-                
-                fetchedPosts.forEach((post, index) => {
-                    newUserVotes[post.id] = userVoteResponses[index]?.data || 0;
-                });
-            }
-            
             setUserVotes(newUserVotes);
             setInitialized(true);
             
@@ -90,6 +90,34 @@ export const PostsProvider = ({ children }) => {
         }
     };
 
+    // Append the next page of the feed
+    const loadMorePosts = async () => {
+        if (!nextCursor || loadingMore) return;
+
+        setLoadingMore(true);
+
+        try {
+            const response = await API.get('/posts', { params: { cursor: nextCursor } });
+            const pagePosts = response.data.posts || [];
+
+            // A page can repeat a post if the ranked snapshot expired meanwhile
+            const knownIds = new Set(posts.map(post => post.id));
+            const newPosts = pagePosts.filter(post => !knownIds.has(post.id));
+
+            const { newVoteCounts, newCommentCounts, newUserVotes } = await fetchStats(newPosts);
+            setPosts(prevPosts => [...prevPosts, ...newPosts]);
+            setVoteCounts(prev => ({ ...prev, ...newVoteCounts }));
+            setCommentCounts(prev => ({ ...prev, ...newCommentCounts }));
+            setUserVotes(prev => ({ ...prev, ...newUserVotes }));
+            setNextCursor(response.data.nextCursor || null);
+        } catch (error) {
+            console.error('Error loading more posts:', error);
+            setError('Failed to load more posts. Please try again.');
+        } finally {
+            setLoadingMore(false);
+        }
+    };
+
     const addPost = async (postData) => {
         try {
             const response = await API.post('/posts', postData);
@@ -254,7 +282,10 @@ export const PostsProvider = ({ children }) => {
         voteCounts,
         commentCounts,
         userVotes,
+        hasMore: nextCursor !== null,
+        loadingMore,
         fetchPosts,
+        loadMorePosts,
         addPost,
         updatePost,
         deletePost,
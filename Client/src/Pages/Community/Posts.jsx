@@ -24,6 +24,9 @@ const Posts = () => {
         voteCounts, 
         commentCounts, 
         userVotes,
+        hasMore,
+        loadingMore,
+        loadMorePosts,
         addPost,
         updatePost: updatePostFromContext,
         deletePost: deletePostFromContext,
@@ -205,8 +208,20 @@ const Posts = () => {
                         />
                     ))}
                 </div>
+
+                {hasMore && (
+                    <div className="flex justify-center mt-8">
+                        <button
+                            onClick={loadMorePosts}
+                            disabled={loadingMore}
+                            className="px-8 py-3 bg-gray-700/50 text-gray-200 rounded-xl hover:bg-gray-700 transition-colors font-medium disabled:opacity-50"
+                        >
+                            {loadingMore ? 'Loading...' : 'Load more posts'}
+                        </button>
+                    </div>
+                )}
                 
-                {visiblePosts.length === 0 && (
+                {visiblePosts.length === 0 && !hasMore && (
                     <div className="text-center py-16 max-w-2xl mx-auto">
                         <div className="w-20 h-20 bg-gradient-to-r from-blue-500 to-purple-600 rounded-full flex items-center justify-center mx-auto mb-6">
                             <svg className="w-10 h-10 text-white" fill="none" stroke="currentColor" viewBox="0 0 24 24">
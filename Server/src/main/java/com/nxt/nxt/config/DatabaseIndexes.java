@@ -0,0 +1,41 @@
+package com.nxt.nxt.config;
+
+import java.util.List;
+
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates indexes the feed queries rely on. The posts, post_votes and comments tables
+ * are not managed by Hibernate, so ddl-auto does not create these.
+ */
+@Component
+public class DatabaseIndexes implements CommandLineRunner {
+
+    private static final List<String> INDEXES = List.of(
+        // Keyset pagination of the chronological feed
+        "CREATE INDEX IF NOT EXISTS idx_posts_created_at_id ON posts (created_at DESC, id DESC)",
+        // Grouped vote and comment counts for a page of posts
+        "CREATE INDEX IF NOT EXISTS idx_post_votes_post_id ON post_votes (post_id)",
+        "CREATE INDEX IF NOT EXISTS idx_comments_post_id ON comments (post_id)"
+    );
+
+    private final JdbcTemplate jdbc;
+
+    public DatabaseIndexes(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    @Override
+    public void run(String... args) {
+        for (String ddl : INDEXES) {
+            try {
+                jdbc.execute(ddl);
+            }
+            catch (Exception e) {
+                System.err.println("Could not create index (" + ddl + "): " + e.getMessage());
+            }
+        }
+    }
+}
@@ -17,6 +17,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.nxt.nxt.dto.AdminSigninRequest;
@@ -25,6 +26,11 @@ import com.nxt.nxt.entity.User;
 import com.nxt.nxt.repositories.UserRepository;
 import com.nxt.nxt.security.JWTUtil;
 import com.nxt.nxt.service.AdminService;
+import com.nxt.nxt.service.UserProfileService;
+import com.nxt.nxt.service.VectorSyncService;
+import com.nxt.nxt.service.IndexingPipeline;
+import com.nxt.nxt.util.VectorCollectionBootstrap;
+import com.nxt.nxt.util.VectorTenantMigration;
 import com.nxt.nxt.dto.TrackActivityRequest;
 import com.nxt.nxt.entity.UserActivity;
 import com.nxt.nxt.repositories.UserActivityRepository;
@@ -46,14 +52,25 @@ import org.springframework.mail.javamail.JavaMailSender;
 public class AdminController {
 
     private final AdminService adminService;
+    private final UserProfileService userProfileService;
+    // Empty when vector.store=embedded: there is no Qdrant collection to manage
+    private final Optional<VectorCollectionBootstrap> vectorCollectionBootstrap;
+    private final Optional<VectorTenantMigration> vectorTenantMigration;
+    private final VectorSyncService vectorSyncService;
+    private final IndexingPipeline indexingPipeline;
     private final UserRepository userRepository;
     private final UserActivityRepository activityRepository;
     private final JWTUtil jwtUtil;
     private final JavaMailSender mailSender;
     private final String fromAddress;
 
-    public AdminController(AdminService adminService, UserRepository userRepository, UserActivityRepository activityRepository, JWTUtil jwtUtil, JavaMailSender mailSender, @Value("${app.email.from:noreply@localhost}") String fromAddress) {
+    public AdminController(AdminService adminService, UserProfileService userProfileService, Optional<VectorCollectionBootstrap> vectorCollectionBootstrap, Optional<VectorTenantMigration> vectorTenantMigration, VectorSyncService vectorSyncService, IndexingPipeline indexingPipeline, UserRepository userRepository, UserActivityRepository activityRepository, JWTUtil jwtUtil, JavaMailSender mailSender, @Value("${app.email.from:noreply@localhost}") String fromAddress) {
         this.adminService = adminService;
+        this.userProfileService = userProfileService;
+        this.vectorCollectionBootstrap = vectorCollectionBootstrap;
+        this.vectorTenantMigration = vectorTenantMigration;
+        this.vectorSyncService = vectorSyncService;
+        this.indexingPipeline = indexingPipeline;
         this.userRepository = userRepository;
         this.activityRepository = activityRepository;
         this.jwtUtil = jwtUtil;
@@ -460,6 +477,227 @@ public class AdminController {
         }
     }
 
+    @PostMapping("/profiles/rebuild")
+    public ResponseEntity<?> rebuildUserProfiles(@RequestParam(value = "username", required = false) String username, HttpServletRequest request) {
+        try {
+            // Verify admin access
+            if (!isAdminAuthenticated(request)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of(
+                    "success", false,
+                    "message", "Admin access required"
+                ));
+            }
+
+            // Recompute interest vectors from the vectors stored in Qdrant (no embedding calls)
+            if (username != null && !username.isBlank()) {
+                boolean complete = userProfileService.rebuild(username);
+                return ResponseEntity.ok(Map.of(
+                    "success", complete,
+                    "message", complete ? "Profile rebuilt for " + username : "Profile partially rebuilt for " + username
+                ));
+            }
+
+            int rebuilt = userProfileService.rebuildAll();
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "message", rebuilt + " profiles rebuilt",
+                "rebuilt", rebuilt
+            ));
+
+        }
+        catch (Exception e) {
+            System.err.println("Error rebuilding user profiles: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                "success", false,
+                "message", "Error rebuilding user profiles"
+            ));
+        }
+    }
+
+    @GetMapping("/vector-collection")
+    public ResponseEntity<?> getVectorCollection(HttpServletRequest request) {
+        try {
+            // Verify admin access
+            if (!isAdminAuthenticated(request)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of(
+                    "success", false,
+                    "message", "Admin access required"
+                ));
+            }
+
+            if (vectorCollectionBootstrap.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                    "success", false,
+                    "message", "No Qdrant collection: the embedded vector store is in use"
+                ));
+            }
+
+            // Collection config as Qdrant reports it, next to the configured values
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "collection", vectorCollectionBootstrap.get().describe()
+            ));
+
+        }
+        catch (Exception e) {
+            System.err.println("Error fetching vector collection info: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                "success", false,
+                "message", "Error fetching vector collection info"
+            ));
+        }
+    }
+
+    @PostMapping("/vector-collection/bootstrap")
+    public ResponseEntity<?> bootstrapVectorCollection(HttpServletRequest request) {
+        try {
+            // Verify admin access
+            if (!isAdminAuthenticated(request)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of(
+                    "success", false,
+                    "message", "Admin access required"
+                ));
+            }
+
+            if (vectorCollectionBootstrap.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                    "success", false,
+                    "message", "No Qdrant collection: the embedded vector store is in use"
+                ));
+            }
+
+            // Re-apply the configured collection settings without a restart
+            return ResponseEntity.ok(vectorCollectionBootstrap.get().bootstrap());
+
+        }
+        catch (Exception e) {
+            System.err.println("Error bootstrapping vector collection: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                "success", false,
+                "message", "Error bootstrapping vector collection"
+            ));
+        }
+    }
+
+    @PostMapping("/vector-collection/migrate")
+    public ResponseEntity<?> migrateVectorCollection(@RequestParam String from, HttpServletRequest request) {
+        try {
+            // Verify admin access
+            if (!isAdminAuthenticated(request)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of(
+                    "success", false,
+                    "message", "Admin access required"
+                ));
+            }
+
+            if (vectorTenantMigration.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                    "success", false,
+                    "message", "No Qdrant collection: the embedded vector store is in use"
+                ));
+            }
+
+            // Copy the points of an older collection into the configured tenant-partitioned one
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "migration", vectorTenantMigration.get().migrateFrom(from)
+            ));
+
+        }
+        catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "success", false,
+                "message", e.getMessage()
+            ));
+        }
+        catch (Exception e) {
+            System.err.println("Error migrating vector collection: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                "success", false,
+                "message", "Error migrating vector collection"
+            ));
+        }
+    }
+
+    @GetMapping("/vector-sync")
+    public ResponseEntity<?> getVectorSync(HttpServletRequest request) {
+        try {
+            // Verify admin access
+            if (!isAdminAuthenticated(request)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of(
+                    "success", false,
+                    "message", "Admin access required"
+                ));
+            }
+
+            // Outbox backlog, events that ran out of attempts and the last reconciliation
+            Map<String, Object> body = new HashMap<>(vectorSyncService.describe());
+            body.put("success", true);
+            return ResponseEntity.ok(body);
+
+        }
+        catch (Exception e) {
+            System.err.println("Error fetching vector sync status: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                "success", false,
+                "message", "Error fetching vector sync status"
+            ));
+        }
+    }
+
+    @GetMapping("/indexing")
+    public ResponseEntity<?> getIndexing(HttpServletRequest request) {
+        try {
+            // Verify admin access
+            if (!isAdminAuthenticated(request)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of(
+                    "success", false,
+                    "message", "Admin access required"
+                ));
+            }
+
+            // Queue depths of the indexing pipeline and its outbox backlog
+            Map<String, Object> body = new HashMap<>(indexingPipeline.describe());
+            body.put("success", true);
+            return ResponseEntity.ok(body);
+
+        }
+        catch (Exception e) {
+            System.err.println("Error fetching indexing status: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                "success", false,
+                "message", "Error fetching indexing status"
+            ));
+        }
+    }
+
+    @PostMapping("/vector-sync/reconcile")
+    public ResponseEntity<?> reconcileVectors(HttpServletRequest request) {
+        try {
+            // Verify admin access
+            if (!isAdminAuthenticated(request)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of(
+                    "success", false,
+                    "message", "Admin access required"
+                ));
+            }
+
+            // Delete points whose user, post or PDF is gone, without waiting for the scheduled run
+            return ResponseEntity.ok(Map.of(
+                "success", true,
+                "report", vectorSyncService.reconcile()
+            ));
+
+        }
+        catch (Exception e) {
+            System.err.println("Error reconciling vectors: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of(
+                "success", false,
+                "message", "Error reconciling vectors"
+            ));
+        }
+    }
+
     private boolean isAdminAuthenticated(HttpServletRequest request) {
         try {
             String accessToken = null;
@@ -1,10 +1,16 @@
 package com.nxt.nxt.controller;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -20,8 +26,14 @@ import com.nxt.nxt.entity.ChatTopic;
 import com.nxt.nxt.repositories.ChatHistoryRepository;
 import com.nxt.nxt.repositories.ChatTopicRepository;
 import com.nxt.nxt.service.OpenAIService;
+import com.nxt.nxt.service.IndexingPipeline;
+import com.nxt.nxt.util.Embedding;
 import com.nxt.nxt.util.EmbeddingAPI;
-import com.nxt.nxt.util.VectorDB;
+import com.nxt.nxt.util.SearchHit;
+import com.nxt.nxt.util.SearchOptions;
+import com.nxt.nxt.util.VectorStore;
+
+import jakarta.annotation.PreDestroy;
 
 @RestController
 @RequestMapping("/api/llm")
@@ -30,20 +42,36 @@ public class LLMRouter {
     ChatTopicRepository ctRepository;
     ChatHistoryRepository chRepository;
     private final EmbeddingAPI embeddingAPI;
-    private final VectorDB vectorDB;
+    private final VectorStore vectorStore;
     private final OpenAIService openAIService;
+    private final IndexingPipeline indexingPipeline;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Value("${llm.context.deadline-ms:1500}")
+    private long contextDeadlineMs;
+
+    @Value("${llm.context.min-score:0.25}")
+    private float contextMinScore;
 
     @Autowired
     public LLMRouter(ChatTopicRepository ctRepository,
                      ChatHistoryRepository chRepository,
                      EmbeddingAPI embeddingAPI,
-                     VectorDB vectorDB,
-                     OpenAIService openAIService) {
+                     VectorStore vectorStore,
+                     OpenAIService openAIService,
+                     IndexingPipeline indexingPipeline) {
         this.ctRepository = ctRepository;
         this.chRepository = chRepository;
         this.embeddingAPI = embeddingAPI;
-        this.vectorDB = vectorDB;
+        this.vectorStore = vectorStore;
         this.openAIService = openAIService;
+        this.indexingPipeline = indexingPipeline;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
     }
 
     @PostMapping("/chat")
@@ -76,22 +104,7 @@ public class LLMRouter {
             }
 
             // Insert combined user message and response into VectorDB with "chat" as payload keyword
-            try {
-                long timestamp = System.currentTimeMillis();
-                String combinedText = "Request Msg: " + userMessage + "\nResponse Msg: " + msg;
-
-                List<Double> combinedEmbedding = embeddingAPI.getTextEmbedding(combinedText);
-
-                Map<String, String> combinedPayload = new HashMap<>();
-                combinedPayload.put("chat", "TRUE");
-                combinedPayload.put("text", combinedText);
-
-                vectorDB.upsertWithKeywords(timestamp, combinedEmbedding, username, combinedPayload);
-            }
-            catch (Exception ex) {
-                System.out.println("Error inserting chat texts into VectorDB: " + ex.getMessage());
-                ex.printStackTrace();
-            }
+            indexChat(username, userMessage, msg);
         } catch (Exception e) {
             System.out.println("Server error in /chat endpoint:");
             e.printStackTrace();
@@ -155,14 +168,16 @@ public class LLMRouter {
     }
 
     // New: context-aware chat endpoint
+    // Returns a future so no request thread is held while the embedding, the two context
+    // searches and the completion run; the response is written once the future completes.
     @PostMapping("/context-aware-chat")
-    public ResponseEntity<Map<String, String>> contextAwareChat(@RequestBody Map<String, Object> requestBody) {
+    public CompletableFuture<ResponseEntity<Map<String, String>>> contextAwareChat(@RequestBody Map<String, Object> requestBody) {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         String username = auth.getName();
 
         String userMessage = requestBody.getOrDefault("message", "").toString();
 
-        int chatTopicId = Integer.MIN_VALUE;
+        int chatTopicId;
 
         if (requestBody.get("ct_id") == null) {
             chatTopicId = logChatTopic(username, userMessage);
@@ -171,74 +186,97 @@ public class LLMRouter {
             chatTopicId = Integer.parseInt(requestBody.get("ct_id").toString());
         }
 
-        Map<String, String> result = new HashMap<>();
-        try {
-            List<Double> embedding = embeddingAPI.getTextEmbedding(userMessage);
-
-            // Always search for both "chat" and "pdfdata" similarity
-            List<String> chatContexts = vectorDB.getSimilar(embedding, username, "chat", 2);
-            List<String> pdfContexts = vectorDB.getSimilar(embedding, username, "pdfdata", 2);
-
-            StringBuilder contextBuilder = new StringBuilder();
-            int idx = 1;
-            if (chatContexts != null && !chatContexts.isEmpty()) {
-                contextBuilder.append("Contextual excerpts from your chat history:\n");
-                for (String ctx : chatContexts) {
-                    contextBuilder.append("Chat Excerpt ").append(idx++).append(": ").append(ctx).append("\n\n");
-                }
-            }
-            idx = 1;
-            if (pdfContexts != null && !pdfContexts.isEmpty()) {
-                contextBuilder.append("Contextual excerpts from your PDF documents:\n");
-                for (String ctx : pdfContexts) {
-                    contextBuilder.append("PDF Excerpt ").append(idx++).append(": ").append(ctx).append("\n\n");
-                }
-            }
-
-            String systemContent = contextBuilder.length() > 0
-                    ? contextBuilder.toString()
-                    : "No additional context available.";
-
-            // Compose prompt with context and user message
-            String prompt = systemContent + "\nUser Message: " + userMessage;
-            String msg = openAIService.getChatCompletion(prompt);
+        Duration deadline = Duration.ofMillis(contextDeadlineMs);
+
+        CompletableFuture<Embedding> embedding =
+                CompletableFuture.supplyAsync(() -> embeddingAPI.getTextEmbedding(userMessage), executor);
+
+        // Always search for both "chat" and "pdfdata" similarity, at the same time
+        CompletableFuture<List<String>> chatContexts = embedding.thenCompose(vector ->
+                contextSearch(vector, username, "chat", deadline));
+        CompletableFuture<List<String>> pdfContexts = embedding.thenCompose(vector ->
+                contextSearch(vector, username, "pdfdata", deadline));
+
+        return chatContexts.thenCombine(pdfContexts, LLMRouter::buildContext)
+                .thenApplyAsync(systemContent -> {
+                    // Compose prompt with context and user message
+                    String prompt = systemContent + "\nUser Message: " + userMessage;
+                    String msg = openAIService.getChatCompletion(prompt);
+
+                    Map<String, String> result = new HashMap<>();
+                    result.put("message", msg);
+
+                    if (chatTopicId != Integer.MIN_VALUE) {
+                        result.put("ct_id", Integer.toString(chatTopicId));
+                    }
+
+                    if (chatTopicId != Integer.MIN_VALUE && !msg.isEmpty()) {
+                        logChatHistory(username, chatTopicId, userMessage, msg);
+                    }
+
+                    // Insert combined user message and response into VectorDB with "chat" keyword
+                    indexChat(username, userMessage, msg);
+
+                    return ResponseEntity.ok(result);
+                }, executor)
+                .exceptionally(error -> {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    System.out.println("Server error in /context-aware-chat endpoint:");
+                    cause.printStackTrace();
+                    System.out.println("Request body: " + requestBody);
+
+                    Map<String, String> result = new HashMap<>();
+                    result.put("error", "Server error: " + cause.getMessage());
+                    return ResponseEntity.status(500).body(result);
+                });
+    }
 
-            result.put("message", msg);
+    // Excerpts below llm.context.min-score are left out; a failed or late search only drops that kind of context
+    private CompletableFuture<List<String>> contextSearch(Embedding embedding, String username, String keyword, Duration deadline) {
+        return vectorStore.searchAsync(embedding, username, keyword, SearchOptions.top(2).minScore(contextMinScore), deadline)
+                .thenApply(hits -> hits.stream()
+                        .map(SearchHit::text)
+                        .filter(text -> text != null)
+                        .toList())
+                .exceptionally(error -> {
+                    System.out.println("Error during " + keyword + " context search: " + error.getMessage());
+                    return List.of();
+                });
+    }
 
-            if (chatTopicId != Integer.MIN_VALUE) {
-                result.put("ct_id", Integer.toString(chatTopicId));
+    private static String buildContext(List<String> chatContexts, List<String> pdfContexts) {
+        StringBuilder contextBuilder = new StringBuilder();
+        int idx = 1;
+        if (chatContexts != null && !chatContexts.isEmpty()) {
+            contextBuilder.append("Contextual excerpts from your chat history:\n");
+            for (String ctx : chatContexts) {
+                contextBuilder.append("Chat Excerpt ").append(idx++).append(": ").append(ctx).append("\n\n");
             }
-
-            if (chatTopicId != Integer.MIN_VALUE && !msg.isEmpty()) {
-                logChatHistory(username, chatTopicId, userMessage, msg);
+        }
+        idx = 1;
+        if (pdfContexts != null && !pdfContexts.isEmpty()) {
+            contextBuilder.append("Contextual excerpts from your PDF documents:\n");
+            for (String ctx : pdfContexts) {
+                contextBuilder.append("PDF Excerpt ").append(idx++).append(": ").append(ctx).append("\n\n");
             }
+        }
 
-            // Insert combined user message and response into VectorDB with "chat" keyword
-            try {
-                long timestamp = System.currentTimeMillis();
-                String combinedText = "Request Msg: " + userMessage + "\nResponse Msg: " + msg;
-
-                List<Double> combinedEmbedding = embeddingAPI.getTextEmbedding(combinedText);
-
-                Map<String, String> combinedPayload = new HashMap<>();
-                combinedPayload.put("chat", "TRUE");
-                combinedPayload.put("text", combinedText);
+        return contextBuilder.length() > 0
+                ? contextBuilder.toString()
+                : "No additional context available.";
+    }
 
-                vectorDB.upsertWithKeywords(timestamp, combinedEmbedding, username, combinedPayload);
-            }
-            catch (Exception ex) {
-                System.out.println("Error inserting chat texts into VectorDB: " + ex.getMessage());
-                ex.printStackTrace();
-            }
-        }
-        catch (Exception e) {
-            System.out.println("Server error in /context-aware-chat endpoint:");
-            e.printStackTrace();
-            System.out.println("Request body: " + requestBody);
-            result.put("error", "Server error: " + e.getMessage());
-            return ResponseEntity.status(500).body(result);
+    /**
+     * Queue the exchange for indexing as a "chat" point; the response does not wait for the embedding.
+     * The point id is derived from the exchange, so an exchange that is already stored or queued is
+     * not queued again, and is neither embedded nor counted in the profile a second time.
+     */
+    private void indexChat(String username, String userMessage, String msg) {
+        String combinedText = "Request Msg: " + userMessage + "\nResponse Msg: " + msg;
+        try {
+            indexingPipeline.indexChat(username, combinedText);
+        } catch (Exception ex) {
+            System.out.println("Error queueing chat texts for VectorDB: " + ex.getMessage());
         }
-
-        return ResponseEntity.ok(result);
     }
-}
\ No newline at end of file
+}
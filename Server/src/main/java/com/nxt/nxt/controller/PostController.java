@@ -1,9 +1,7 @@
 package com.nxt.nxt.controller;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -24,9 +22,13 @@ import com.nxt.nxt.repositories.PostRepository;
 import com.nxt.nxt.repositories.PostVoteRepository;
 import com.nxt.nxt.repositories.CommentRepository;
 import com.nxt.nxt.repositories.StudentRepository;
-import com.nxt.nxt.util.EmbeddingAPI;
-import com.nxt.nxt.util.VectorDB;
-import com.nxt.nxt.util.PostRankScorer;
+import com.nxt.nxt.dto.PostStats;
+import com.nxt.nxt.dto.FeedPage;
+import com.nxt.nxt.service.FeedCacheService;
+import com.nxt.nxt.service.FeedPageService;
+import com.nxt.nxt.service.IndexingPipeline;
+import com.nxt.nxt.service.PostEmbeddingService;
+import com.nxt.nxt.service.VectorSyncService;
 
 @RestController
 @RequestMapping("/api/posts")
@@ -37,11 +39,26 @@ public class PostController {
     private final CommentRepository commentRepository;
     private final StudentRepository studentRepository;
 
+    // Upper bound on post ids per stats request
+    private static final int MAX_STATS_IDS = 100;
+
+    // Upper bound on posts per feed page
+    private static final int MAX_PAGE_SIZE = 50;
+
+    @Autowired
+    PostEmbeddingService postEmbeddingService;
+
     @Autowired
-    EmbeddingAPI embeddingAPI;
+    FeedCacheService feedCacheService;
 
     @Autowired
-    VectorDB vectorDB;
+    FeedPageService feedPageService;
+
+    @Autowired
+    VectorSyncService vectorSyncService;
+
+    @Autowired
+    IndexingPipeline indexingPipeline;
 
     // Remove circular dependency
     // @Autowired
@@ -84,29 +101,14 @@ public class PostController {
             // Log for debugging
             System.out.println("Creating post: " + post.toString());
 
-            postRepository.save(post);
+            // Embedding and indexing happen in the background, from an outbox event committed with the post
+            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+            indexingPipeline.savePost(post, auth.getName());
 
             System.out.println("Post created successfully with ID: " + post.getId());
 
-            // Insert post into VectorDB with "post" keyword TRUE and content in "text"
-            try {
-                // Get username from authentication context
-                Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-                String username = auth.getName();
-
-                Long pointId = System.currentTimeMillis();
-                String postText = post.getContent();
-                List<Double> postEmbedding = embeddingAPI.getTextEmbedding(postText);
-
-                Map<String, String> payload = new HashMap<>();
-                payload.put("post", "TRUE");
-                payload.put("text", postText);
-
-                vectorDB.upsertWithKeywords(pointId, postEmbedding, username, payload);
-            } catch (Exception ex) {
-                System.out.println("Error inserting post into VectorDB: " + ex.getMessage());
-                ex.printStackTrace();
-            }
+            // A new post is a candidate for every feed
+            feedCacheService.markAllDirty();
 
             return ResponseEntity.status(HttpStatus.CREATED).body(post);
         } catch (Exception e) {
@@ -117,212 +119,41 @@ public class PostController {
         }
     }
 
+    /**
+     * Personalized feed, one page at a time. Pass the returned nextCursor to get the following page;
+     * it is null on the last page.
+     */
     @GetMapping
-    public ResponseEntity<List<PostWithStudentName>> getAllPosts() {
+    public ResponseEntity<PostPage> getAllPosts(@RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
         try {
             Authentication auth = SecurityContextHolder.getContext().getAuthentication();
             String username = auth.getName();
 
             System.out.println("Getting personalized posts for user: " + username);
 
-            // Create dummy vector for getting all entries by keyword (Cohere
-            // embed-english-v3.0 is 1024-dimensional)
-            List<Double> dummyVector = new ArrayList<>();
-            for (int i = 0; i < 1024; i++) {
-                dummyVector.add(0.0);
-            }
-
-            // Step 1: Get all user's data from VectorDB and calculate average embedding
-            List<String> userPostTexts = new ArrayList<>();
-            List<String> userPdfTexts = new ArrayList<>();
-            List<String> userChatTexts = new ArrayList<>();
-
-            try {
-                userPostTexts = vectorDB.getSimilar(dummyVector, username, "post", 1000);
-                userPdfTexts = vectorDB.getSimilar(dummyVector, username, "pdfdata", 1000);
-                userChatTexts = vectorDB.getSimilar(dummyVector, username, "chat", 1000);
-            } catch (Exception e) {
-                System.out.println("Error retrieving user data from VectorDB: " + e.getMessage());
-            }
-
-            System.out.println("User Embedding Generation Done");
-
-            List<String> allUserTexts = new ArrayList<>();
-            allUserTexts.addAll(userPostTexts);
-            allUserTexts.addAll(userPdfTexts);
-            allUserTexts.addAll(userChatTexts);
-
-            // If no user data found, return all posts in chronological order
-            if (allUserTexts.isEmpty()) {
-                System.out.println("No user data found in VectorDB for user: " + username + ", returning all posts");
-                List<Post> posts = postRepository.findAll();
-                List<PostWithStudentName> postsWithNames = posts.stream()
-                        .map(post -> {
-                            Optional<Student> student = studentRepository.findById(post.getStudentId());
-                            String studentName = student.map(Student::getUsername).orElse("Unknown User");
-                            return new PostWithStudentName(post, studentName);
-                        })
-                        .toList();
-                return ResponseEntity.ok(postsWithNames);
-            }
-
-            // Calculate average embedding from all user's data
-            List<Double> userAverageEmbedding = calculateAverageEmbedding(allUserTexts);
+            // Ranked pages from a snapshot of the cached feed, then newest posts (keyset paginated)
+            FeedPage page = feedPageService.getPage(username, cursor, pageSize);
 
-            System.out.println("User Average Embedding Calculation Done, Length: " + userAverageEmbedding.size());
-
-            if (userAverageEmbedding.isEmpty()) {
-                System.out.println(
-                        "Failed to calculate average embedding for user: " + username + ", returning all posts");
-                List<Post> posts = postRepository.findAll();
-
-                List<PostWithStudentName> postsWithNames = posts.stream()
-                        .map(post -> {
-                            Optional<Student> student = studentRepository.findById(post.getStudentId());
-                            String studentName = student.map(Student::getUsername).orElse("Unknown User");
-                            return new PostWithStudentName(post, studentName);
-                        })
-                        .toList();
-                return ResponseEntity.ok(postsWithNames);
-            }
-
-            List<String> allPostTexts = new ArrayList<>();
-            try {
-                allPostTexts = vectorDB.getSimilarByKeyword(dummyVector, "post", 1000); // Use new function
-            } catch (Exception e) {
-                System.out.println("Error retrieving all posts from VectorDB: " + e.getMessage());
-            }
-
-            System.out.println("All Post Texts Retrieved: " + allPostTexts.size());
-            // Step 3: Score and rank posts
-            List<PostWithScore> scoredPosts = new ArrayList<>();
-            PostRankScorer scorer = new PostRankScorer();
-
-            for (String postText : allPostTexts) {
-                try {
-                    // Find matching posts from database
-                    List<Post> matchingPosts = postRepository.findByContentContaining(postText.trim());
-
-                    System.out.println("Found matching posts: " + matchingPosts.size());
-
-                    for (Post post : matchingPosts) {
-                        System.out.println("Processing post: " + post.getId());
-                        // Get post embedding
-                        List<Double> postEmbedding = embeddingAPI.getTextEmbedding(post.getContent());
-
-                        // Calculate post age in hours
-                        long hoursAgo = java.time.temporal.ChronoUnit.HOURS.between(post.getCreatedAt(),
-                                LocalDateTime.now());
-
-                        // Get vote count and comment count
-                        int voteCount = postVoteRepository.getVoteCountByPostId(post.getId());
-                        int commentCount = commentRepository.countByPostId(post.getId());
-
-                        // Calculate overall score using PostRankScorer
-                        double overallScore = scorer.overallScore(voteCount, commentCount, (int) hoursAgo,
-                                postEmbedding, userAverageEmbedding);
-
-                        // Get student name
-                        String studentName = studentRepository.findById(post.getStudentId())
-                                .map(Student::getUsername)
-                                .orElse("Unknown User");
-
-                        scoredPosts.add(new PostWithScore(post, studentName, overallScore));
-                    }
-                } catch (Exception e) {
-                    System.err.println("Error processing post text: " + postText + " - " + e.getMessage());
-                }
-            }
-
-            // If no posts found through VectorDB, return all posts
-            if (scoredPosts.isEmpty()) {
-                List<Post> posts = postRepository.findAll();
-                List<PostWithStudentName> postsWithNames = posts.stream()
-                        .map(post -> {
-                            Optional<Student> student = studentRepository.findById(post.getStudentId());
-                            String studentName = student.map(Student::getUsername).orElse("Unknown User");
-                            return new PostWithStudentName(post, studentName);
-                        })
-                        .toList();
-                return ResponseEntity.ok(postsWithNames);
-            }
-
-            // Sort by score descending (highest score first)
-            scoredPosts.sort((a, b) -> Double.compare(b.getScore(), a.getScore()));
-
-            // Convert to PostWithStudentName and limit to top 20 posts
-            List<PostWithStudentName> rankedPosts = scoredPosts.stream()
-                    .limit(20)
-                    .map(scoredPost -> new PostWithStudentName(scoredPost.getPost(), scoredPost.getStudentName()))
-                    .toList();
-
-            System.out.println("Returning " + rankedPosts.size() + " personalized posts for user: " + username);
-            return ResponseEntity.ok(rankedPosts);
+            System.out.println("Returning " + page.getPosts().size() + " posts for user: " + username);
+            return ResponseEntity.ok(toPostPage(page));
 
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             System.err.println("Error getting personalized posts: " + e.getMessage());
             e.printStackTrace();
-            // Fallback to regular posts
+            // Fallback to the newest posts, one bounded page
             try {
-                List<Post> posts = postRepository.findAll();
-                List<PostWithStudentName> postsWithNames = posts.stream()
-                        .map(post -> {
-                            Optional<Student> student = studentRepository.findById(post.getStudentId());
-                            String studentName = student.map(Student::getUsername).orElse("Unknown User");
-                            return new PostWithStudentName(post, studentName);
-                        })
-                        .toList();
-                return ResponseEntity.ok(postsWithNames);
+                return ResponseEntity.ok(toPostPage(feedPageService.getChronologicalPage(pageSize)));
             } catch (Exception fallbackError) {
                 return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
             }
         }
     }
 
-    private List<Double> calculateAverageEmbedding(List<String> texts) {
-        if (texts.isEmpty()) {
-            return new ArrayList<>();
-        }
-
-        try {
-            List<List<Double>> embeddings = new ArrayList<>();
-
-            // Get embeddings for all texts
-            for (String text : texts) {
-                if (text != null && !text.trim().isEmpty()) {
-                    List<Double> embedding = embeddingAPI.getTextEmbedding(text.trim());
-                    if (!embedding.isEmpty()) {
-                        embeddings.add(embedding);
-                    }
-                }
-            }
-
-            if (embeddings.isEmpty()) {
-                return new ArrayList<>();
-            }
-
-            // Calculate average
-            int embeddingSize = embeddings.get(0).size();
-            List<Double> averageEmbedding = new ArrayList<>(Collections.nCopies(embeddingSize, 0.0));
-
-            for (List<Double> embedding : embeddings) {
-                for (int i = 0; i < embeddingSize; i++) {
-                    averageEmbedding.set(i, averageEmbedding.get(i) + embedding.get(i));
-                }
-            }
-
-            // Divide by count to get average
-            for (int i = 0; i < embeddingSize; i++) {
-                averageEmbedding.set(i, averageEmbedding.get(i) / embeddings.size());
-            }
-
-            return averageEmbedding;
-        } catch (Exception e) {
-            System.err.println("Error calculating average embedding: " + e.getMessage());
-            return new ArrayList<>();
-        }
-    }
-
     @GetMapping("/{id}")
     public ResponseEntity<Post> getPostById(@PathVariable UUID id) {
         try {
@@ -353,6 +184,15 @@ public class PostController {
                 post.setId(id);
                 post.setUpdatedAt(LocalDateTime.now());
                 postRepository.update(post);
+
+                // Keep the stored embedding in step with the content
+                if (post.getContent() != null && !post.getContent().equals(existingPost.get().getContent())) {
+                    postEmbeddingService.embedAndStore(post);
+                    // The request body may omit the author, the stored post has it
+                    vectorSyncService.postUpdated(existingPost.get());
+                    feedCacheService.markPostChanged(id);
+                }
+
                 return ResponseEntity.ok(post);
             }
 
@@ -368,7 +208,8 @@ public class PostController {
             Optional<Post> post = postRepository.findById(id);
 
             if (post.isPresent()) {
-                postRepository.deleteById(id);
+                vectorSyncService.deletePost(post.get());
+                feedCacheService.markPostChanged(id);
                 return ResponseEntity.noContent().build();
             }
 
@@ -394,6 +235,7 @@ public class PostController {
     public ResponseEntity<String> removeVote(@PathVariable UUID postId, @RequestParam UUID studentId) {
         try {
             postVoteRepository.deleteByStudentIdAndPostId(studentId, postId);
+            feedCacheService.markPostChanged(postId);
             return ResponseEntity.ok("Vote removed successfully");
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error removing vote");
@@ -580,8 +422,48 @@ public class PostController {
         }
     }
 
+    /**
+     * Vote count, comment count and the student's own vote for a page of posts:
+     * one grouped query each instead of three requests per post.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<UUID, PostStats>> getPostStats(@RequestParam List<UUID> ids,
+            @RequestParam(required = false) UUID studentId) {
+        if (ids.size() > MAX_STATS_IDS) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        try {
+            Map<UUID, Integer> voteCounts = postVoteRepository.getVoteCountsByPostIds(ids);
+            Map<UUID, Integer> commentCounts = commentRepository.countByPostIds(ids);
+            Map<UUID, Integer> userVotes = studentId != null
+                    ? postVoteRepository.getVoteTypesByStudentId(studentId, ids)
+                    : Map.of();
+
+            Map<UUID, PostStats> stats = new LinkedHashMap<>();
+            for (UUID id : ids) {
+                stats.put(id, new PostStats(voteCounts.getOrDefault(id, 0),
+                        commentCounts.getOrDefault(id, 0), userVotes.getOrDefault(id, 0)));
+            }
+            return ResponseEntity.ok(stats);
+        } catch (Exception e) {
+            System.err.println("Error getting post stats: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     // HELPER METHODS
 
+    private PostPage toPostPage(FeedPage page) {
+        List<PostWithStudentName> posts = page.getPosts().stream()
+                .map(ranked -> new PostWithStudentName(ranked.getPost(),
+                        ranked.getAuthor() != null ? ranked.getAuthor().getUsername() : "Unknown User"))
+                .toList();
+        return new PostPage(posts, page.getNextCursor());
+    }
+
+    // Engagement changes the post's score in every feed that ranks it. The post is marked after the
+    // write, so a feed refresh that starts in between ends up stale instead of fresh with the old votes
     private ResponseEntity<String> handleVote(UUID postId, UUID studentId, short voteType) {
         try {
             Optional<PostVote> existingVote = postVoteRepository.findByStudentIdAndPostId(studentId, postId);
@@ -592,11 +474,13 @@ public class PostController {
                 if (vote.getVoteType().equals(voteType)) {
                     // Same vote type, remove the vote
                     postVoteRepository.deleteByStudentIdAndPostId(studentId, postId);
+                    feedCacheService.markPostChanged(postId);
                     return ResponseEntity.ok("Vote removed");
                 } else {
                     // Different vote type, update the vote
                     vote.setVoteType(voteType);
                     postVoteRepository.update(vote);
+                    feedCacheService.markPostChanged(postId);
                     return ResponseEntity.ok("Vote updated");
                 }
             } else {
@@ -604,6 +488,7 @@ public class PostController {
                 PostVote newVote = new PostVote(studentId, postId, voteType);
                 newVote.setId(UUID.randomUUID());
                 postVoteRepository.save(newVote);
+                feedCacheService.markPostChanged(postId);
                 return ResponseEntity.ok("Vote added");
             }
         } catch (Exception e) {
@@ -611,6 +496,25 @@ public class PostController {
         }
     }
 
+    // One page of the feed with the cursor for the next page
+    public static class PostPage {
+        private final List<PostWithStudentName> posts;
+        private final String nextCursor;
+
+        public PostPage(List<PostWithStudentName> posts, String nextCursor) {
+            this.posts = posts;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<PostWithStudentName> getPosts() {
+            return posts;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+
     // Helper class to include student name with post
     public static class PostWithStudentName {
         private final Post post;
@@ -692,29 +596,4 @@ public class PostController {
             return studentName;
         }
     }
-
-    // Helper class for scoring posts
-    private static class PostWithScore {
-        private final Post post;
-        private final String studentName;
-        private final double score;
-
-        public PostWithScore(Post post, String studentName, double score) {
-            this.post = post;
-            this.studentName = studentName;
-            this.score = score;
-        }
-
-        public Post getPost() {
-            return post;
-        }
-
-        public String getStudentName() {
-            return studentName;
-        }
-
-        public double getScore() {
-            return score;
-        }
-    }
-}
\ No newline at end of file
+}
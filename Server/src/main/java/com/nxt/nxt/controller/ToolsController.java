@@ -1,9 +1,13 @@
 package com.nxt.nxt.controller;
 
 import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,10 +25,18 @@ import org.springframework.web.multipart.MultipartFile;
 import com.nxt.nxt.entity.PageInfo;
 import com.nxt.nxt.entity.PdfData;
 import com.nxt.nxt.repositories.PDFDataRepository;
+import com.nxt.nxt.service.FeedCacheService;
+import com.nxt.nxt.service.UserProfileService;
+import com.nxt.nxt.service.VectorSyncService;
+import com.nxt.nxt.util.ContentHash;
+import com.nxt.nxt.util.Embedding;
 import com.nxt.nxt.util.EmbeddingAPI;
+import com.nxt.nxt.util.EmbeddingBatchResult;
 import com.nxt.nxt.util.PDFUtilities;
 import com.nxt.nxt.util.StringFormatter;
-import com.nxt.nxt.util.VectorDB;
+import com.nxt.nxt.util.UpsertResult;
+import com.nxt.nxt.util.VectorStore;
+import com.nxt.nxt.util.VectorPoint;
 import com.nxt.nxt.util.SummarizeTranscript;
 import com.itextpdf.text.Document;
 import com.itextpdf.text.pdf.PdfWriter;
@@ -47,7 +59,16 @@ public class ToolsController {
     EmbeddingAPI embeddingAPI;
 
     @Autowired
-    VectorDB vectorDB;
+    VectorStore vectorStore;
+
+    @Autowired
+    UserProfileService userProfileService;
+
+    @Autowired
+    FeedCacheService feedCacheService;
+
+    @Autowired
+    VectorSyncService vectorSyncService;
 
     private final SummarizeTranscript summarizeTranscript;
 
@@ -77,30 +98,73 @@ public class ToolsController {
             System.out.println("PDF Data: " + pdfData.getTitle() + ", Author: " + pdfData.getAuthor()
                     + ", Total Pages: " + pdfData.getTotalPages() + ", Username: " + pdfData.getUsername());
 
-            pdfDataRepository.insertPDFData(pdfData);
+            Long pdfId = pdfDataRepository.insertPDFData(pdfData);
 
             // Insert embeddings into vectorDB for each page
             List<PageInfo> pages = pdfData.getPages();
             if (pages != null) {
+                // Point ids come from the page content, so identical pages (within this PDF or from an
+                // earlier upload of it) map to one point; one existence check replaces their embedding calls
+                Map<String, String> pageTexts = new LinkedHashMap<>();
                 for (PageInfo page : pages) {
-                    // Debug: print the raw PageInfo and text length
-                    System.out.println("PageInfo: " + page);
                     System.out.println("Page " + page.getPageNumber() + " text length: " + (page.getText() != null ? page.getText().length() : 0));
-                    
-                    Long pointId = System.currentTimeMillis() + page.getPageNumber();
-                    List<Double> pageEmbedding = embeddingAPI.getTextEmbedding(page.getText());
-                    // Debug: print the text being inserted
-                    System.out.println("Inserting to VectorDB - page " + page.getPageNumber() + ": " + page.getText());
-                    Map<String, String> payload = new HashMap<>();
-                    payload.put("pdfdata", "TRUE");
-                    payload.put("text", page.getText());
-                    vectorDB.upsertWithKeywords(pointId, pageEmbedding, username, payload);
+                    if (page.getText() == null || page.getText().isBlank()) {
+                        continue;
+                    }
+                    pageTexts.putIfAbsent(ContentHash.pointId(username, "pdfdata", page.getText()).toString(), page.getText());
+                }
+
+                // Link before writing, so reconciliation never finds an unlinked page point
+                if (pdfId != null) {
+                    vectorSyncService.linkPdfPages(pdfId, pageTexts.keySet());
+                }
+
+                Set<String> existingIds = vectorStore.existingIds(new ArrayList<>(pageTexts.keySet()));
+                System.out.println("PDF " + pdfData.getTitle() + ": " + pageTexts.size() + " distinct pages, "
+                        + existingIds.size() + " already indexed");
+
+                List<String> missingTexts = new ArrayList<>();
+                for (Map.Entry<String, String> page : pageTexts.entrySet()) {
+                    if (!existingIds.contains(page.getKey())) {
+                        missingTexts.add(page.getValue());
+                    }
+                }
+
+                // Up to 96 pages per embedding request; a page that failed keeps an empty vector and
+                // is rejected (and reported) by the upsert below
+                EmbeddingBatchResult pageEmbeddingResult = embeddingAPI.embedBatch(missingTexts);
+                for (EmbeddingBatchResult.ItemFailure failure : pageEmbeddingResult.failures()) {
+                    System.out.println("Page text " + failure.index() + " not embedded: " + failure.error());
+                }
+
+                List<VectorPoint> pagePoints = new ArrayList<>();
+                for (int i = 0; i < missingTexts.size(); i++) {
+                    pagePoints.add(VectorPoint.forContent(username, "pdfdata", missingTexts.get(i), pageEmbeddingResult.get(i)));
+                }
+
+                // All pages in a few pipelined requests instead of one round trip per page
+                UpsertResult upsert = vectorStore.upsertBatch(pagePoints);
+
+                Set<String> failedIds = new HashSet<>();
+                for (UpsertResult.PointFailure failure : upsert.failures()) {
+                    failedIds.add(failure.pointId());
+                    System.out.println("Page point " + failure.pointId() + " not stored in VectorDB: " + failure.error());
+                }
+
+                // Profile only counts pages that made it into VectorDB, so a rebuild gives the same result
+                List<Embedding> pageEmbeddings = new ArrayList<>();
+                for (VectorPoint point : pagePoints) {
+                    if (!failedIds.contains(point.idString())) {
+                        pageEmbeddings.add(point.vector());
+                    }
                 }
+                userProfileService.addVectors(username, "pdfdata", pageEmbeddings);
+                feedCacheService.markDirty(username);
             }
 
             // Optionally, insert embedding for full PDF text
             // List<Double> embedding = embeddingAPI.getTextEmbedding(pdfData.getFullText());
-            // vectorDB.upsertData(System.currentTimeMillis(), embedding);
+            // vectorStore.upsertData(System.currentTimeMillis(), embedding);
 
             return ResponseEntity.ok(pdfData);
         }
@@ -4,7 +4,6 @@ package com.nxt.nxt.controller;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -26,16 +25,11 @@ import com.nxt.nxt.entity.PdfData;
 import com.nxt.nxt.entity.Post;
 import com.nxt.nxt.entity.Student;
 import com.nxt.nxt.repositories.ChatHistoryRepository;
-import com.nxt.nxt.repositories.CommentRepository;
 import com.nxt.nxt.repositories.ExamRepository;
 import com.nxt.nxt.repositories.PDFDataRepository;
-import com.nxt.nxt.repositories.PostRepository;
-import com.nxt.nxt.repositories.PostVoteRepository;
 import com.nxt.nxt.repositories.StudentBestScoreRepository;
 import com.nxt.nxt.repositories.StudentRepository;
-import com.nxt.nxt.util.EmbeddingAPI;
-import com.nxt.nxt.util.PostRankScorer;
-import com.nxt.nxt.util.VectorDB;
+import com.nxt.nxt.service.FeedCacheService;
 
 
 @RestController
@@ -47,28 +41,18 @@ public class UserController {
     private final StudentBestScoreRepository studentBestScoreRepo;
     private final ExamRepository examRepo;
     // private final ChatHistoryRepository chatHistoryRepo; // For future use
-    private final PostRepository postRepo;
-    private final PostVoteRepository postVoteRepo;
-    private final CommentRepository commentRepo;
 
     @Autowired
-    private EmbeddingAPI embeddingAPI;
-
-    @Autowired
-    private VectorDB vectorDB;
+    private FeedCacheService feedCacheService;
 
     public UserController(StudentRepository studentRepo, PDFDataRepository pdfDataRepo, 
                          StudentBestScoreRepository studentBestScoreRepo, ExamRepository examRepo,
-                         ChatHistoryRepository chatHistoryRepo,
-                         PostRepository postRepo, PostVoteRepository postVoteRepo, CommentRepository commentRepo) {
+                         ChatHistoryRepository chatHistoryRepo) {
         this.studentRepo = studentRepo;
         this.pdfDataRepo = pdfDataRepo;
         this.studentBestScoreRepo = studentBestScoreRepo;
         this.examRepo = examRepo;
         // this.chatHistoryRepo = chatHistoryRepo; // For future use
-        this.postRepo = postRepo;
-        this.postVoteRepo = postVoteRepo;
-        this.commentRepo = commentRepo;
     }
 
     // DTO for personalized post result
@@ -102,80 +86,12 @@ public class UserController {
 
             System.out.println("Getting personalized posts for user: " + username);
 
-            // Create dummy vector for getting all entries by keyword (Cohere embed-english-v3.0 is 1024-dimensional)
-            List<Double> dummyVector = new ArrayList<>();
-            for (int i = 0; i < 1024; i++) {
-                dummyVector.add(0.0);
-            }
-
-            // Step 1: Get all user's data from VectorDB and calculate average embedding
-            List<String> userPostTexts = vectorDB.getSimilar(dummyVector, username, "post", 1000);
-            List<String> userPdfTexts = vectorDB.getSimilar(dummyVector, username, "pdfdata", 1000);
-            List<String> userChatTexts = vectorDB.getSimilar(dummyVector, username, "chat", 1000);
-
-            List<String> allUserTexts = new ArrayList<>();
-            allUserTexts.addAll(userPostTexts);
-            allUserTexts.addAll(userPdfTexts);
-            allUserTexts.addAll(userChatTexts);
-
-            if (allUserTexts.isEmpty()) {
-                System.out.println("No user data found in VectorDB for user: " + username);
-                return ResponseEntity.ok(new ArrayList<>());
-            }
-
-            // Calculate average embedding from all user's data
-            List<Double> userAverageEmbedding = calculateAverageEmbedding(allUserTexts);
-
-            if (userAverageEmbedding.isEmpty()) {
-                System.out.println("Failed to calculate average embedding for user: " + username);
-                return ResponseEntity.ok(new ArrayList<>());
-            }
-
-            // Step 2: Get all posts from VectorDB with "post" = TRUE
-            List<String> allPostTexts = vectorDB.getSimilarByKeyword(dummyVector, "post", 1000); // Use new function for all posts
-
-            // Step 3: Score and rank posts
-            List<PersonalizedPostResult> rankedPosts = new ArrayList<>();
-            PostRankScorer scorer = new PostRankScorer();
-
-            for (String postText : allPostTexts) {
-                try {
-                    // Find matching posts from database
-                    List<Post> matchingPosts = postRepo.findByContentContaining(postText.trim());
-                    
-                    for (Post post : matchingPosts) {
-                        // Get post embedding
-                        List<Double> postEmbedding = embeddingAPI.getTextEmbedding(post.getContent());
-                        
-                        // Calculate post age in hours
-                        long hoursAgo = ChronoUnit.HOURS.between(post.getCreatedAt(), LocalDateTime.now());
-                        
-                        // Get vote count and comment count
-                        int voteCount = postVoteRepo.getVoteCountByPostId(post.getId());
-                        int commentCount = commentRepo.countByPostId(post.getId());
-                        
-                        // Calculate overall score using PostRankScorer
-                        double overallScore = scorer.overallScore(voteCount, commentCount, (int)hoursAgo, postEmbedding, userAverageEmbedding);
-                        
-                        // Get student name
-                        String studentName = studentRepo.findById(post.getStudentId())
-                                .map(Student::getFullName)
-                                .orElse("Unknown User");
-                        
-                        rankedPosts.add(new PersonalizedPostResult(post, studentName, overallScore, voteCount, commentCount));
-                    }
-                } catch (Exception e) {
-                    System.err.println("Error processing post text: " + postText + " - " + e.getMessage());
-                }
-            }
-
-            // Sort by score descending
-            rankedPosts.sort((a, b) -> Double.compare(b.getScore(), a.getScore()));
-
-            // Limit to top 20 posts
-            if (rankedPosts.size() > 20) {
-                rankedPosts = rankedPosts.subList(0, 20);
-            }
+            // Ranked feed from the per-user cache (recomputed in the background when stale)
+            List<PersonalizedPostResult> rankedPosts = feedCacheService.getFeed(username, 20).stream()
+                    .map(ranked -> new PersonalizedPostResult(ranked.getPost(),
+                            ranked.getAuthor() != null ? ranked.getAuthor().getFullName() : "Unknown User",
+                            ranked.getScore(), ranked.getVoteCount(), ranked.getCommentCount()))
+                    .collect(Collectors.toList());
 
             System.out.println("Returning " + rankedPosts.size() + " personalized posts for user: " + username);
             return ResponseEntity.ok(rankedPosts);
@@ -187,50 +103,6 @@ public class UserController {
         }
     }
 
-    private List<Double> calculateAverageEmbedding(List<String> texts) {
-        if (texts.isEmpty()) {
-            return new ArrayList<>();
-        }
-
-        try {
-            List<List<Double>> embeddings = new ArrayList<>();
-            
-            // Get embeddings for all texts
-            for (String text : texts) {
-                if (text != null && !text.trim().isEmpty()) {
-                    List<Double> embedding = embeddingAPI.getTextEmbedding(text.trim());
-                    if (!embedding.isEmpty()) {
-                        embeddings.add(embedding);
-                    }
-                }
-            }
-
-            if (embeddings.isEmpty()) {
-                return new ArrayList<>();
-            }
-
-            // Calculate average
-            int embeddingSize = embeddings.get(0).size();
-            List<Double> averageEmbedding = new ArrayList<>(Collections.nCopies(embeddingSize, 0.0));
-
-            for (List<Double> embedding : embeddings) {
-                for (int i = 0; i < embeddingSize; i++) {
-                    averageEmbedding.set(i, averageEmbedding.get(i) + embedding.get(i));
-                }
-            }
-
-            // Divide by count to get average
-            for (int i = 0; i < embeddingSize; i++) {
-                averageEmbedding.set(i, averageEmbedding.get(i) / embeddings.size());
-            }
-
-            return averageEmbedding;
-        } catch (Exception e) {
-            System.err.println("Error calculating average embedding: " + e.getMessage());
-            return new ArrayList<>();
-        }
-    }
-
     // DTO for dashboard response with percentage
     public static class DashboardStudent {
         private final String fullName;
@@ -0,0 +1,17 @@
+package com.nxt.nxt.dto;
+
+import java.util.List;
+
+// One page of the feed and the cursor for the next one (null on the last page)
+public class FeedPage {
+    private final List<RankedPost> posts;
+    private final String nextCursor;
+
+    public FeedPage(List<RankedPost> posts, String nextCursor) {
+        this.posts = posts;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<RankedPost> getPosts() { return posts; }
+    public String getNextCursor() { return nextCursor; }
+}
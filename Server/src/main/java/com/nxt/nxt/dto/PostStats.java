@@ -0,0 +1,18 @@
+package com.nxt.nxt.dto;
+
+// Engagement numbers for one post, as returned by the batch stats endpoint
+public class PostStats {
+    private final int voteCount;
+    private final int commentCount;
+    private final int userVote;
+
+    public PostStats(int voteCount, int commentCount, int userVote) {
+        this.voteCount = voteCount;
+        this.commentCount = commentCount;
+        this.userVote = userVote;
+    }
+
+    public int getVoteCount() { return voteCount; }
+    public int getCommentCount() { return commentCount; }
+    public int getUserVote() { return userVote; }
+}
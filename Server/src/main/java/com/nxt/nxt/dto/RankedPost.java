@@ -0,0 +1,27 @@
+package com.nxt.nxt.dto;
+
+import com.nxt.nxt.entity.Post;
+import com.nxt.nxt.entity.Student;
+
+// One post of a personalized feed with the score it was ranked by
+public class RankedPost {
+    private final Post post;
+    private final Student author;
+    private final double score;
+    private final int voteCount;
+    private final int commentCount;
+
+    public RankedPost(Post post, Student author, double score, int voteCount, int commentCount) {
+        this.post = post;
+        this.author = author;
+        this.score = score;
+        this.voteCount = voteCount;
+        this.commentCount = commentCount;
+    }
+
+    public Post getPost() { return post; }
+    public Student getAuthor() { return author; }
+    public double getScore() { return score; }
+    public int getVoteCount() { return voteCount; }
+    public int getCommentCount() { return commentCount; }
+}
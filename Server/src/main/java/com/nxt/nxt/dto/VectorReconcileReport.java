@@ -0,0 +1,22 @@
+package com.nxt.nxt.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Outcome of one reconciliation run: how many points were scanned, how many had no Postgres row
+ * behind them (by kind) and how many of those were deleted.
+ */
+public record VectorReconcileReport(
+        LocalDateTime finishedAt,
+        long scannedPoints,
+        int orphanedUserPoints,
+        int orphanedPostPoints,
+        int orphanedPdfPagePoints,
+        int removed,
+        int failed,
+        long durationMs) {
+
+    public int orphans() {
+        return orphanedUserPoints + orphanedPostPoints + orphanedPdfPagePoints;
+    }
+}
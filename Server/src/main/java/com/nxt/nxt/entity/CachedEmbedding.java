@@ -0,0 +1,94 @@
+package com.nxt.nxt.entity;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+
+/**
+ * Second tier of the embedding cache: the vector of a text, keyed by the text's SHA-256 and the
+ * model that embedded it, so the same text is never sent to the embedding API twice.
+ * The vector is packed as little-endian float32 bytes (see EmbeddingCodec).
+ */
+@Entity
+@Table(name = "embedding_cache")
+@IdClass(CachedEmbedding.Key.class)
+public class CachedEmbedding {
+    @Id
+    @Column(name = "sha256", nullable = false, length = 64)
+    private String sha256;
+
+    @Id
+    @Column(name = "model", nullable = false, length = 100)
+    private String model;
+
+    @Column(name = "vector", nullable = false, columnDefinition = "bytea")
+    private byte[] vector;
+
+    @Column(name = "dimension", nullable = false)
+    private Integer dimension;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    public CachedEmbedding() {}
+
+    public CachedEmbedding(String sha256, String model, byte[] vector, Integer dimension) {
+        this.sha256 = sha256;
+        this.model = model;
+        this.vector = vector;
+        this.dimension = dimension;
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    // Getters and setters
+    public String getSha256() { return sha256; }
+    public void setSha256(String sha256) { this.sha256 = sha256; }
+
+    public String getModel() { return model; }
+    public void setModel(String model) { this.model = model; }
+
+    public byte[] getVector() { return vector; }
+    public void setVector(byte[] vector) { this.vector = vector; }
+
+    public Integer getDimension() { return dimension; }
+    public void setDimension(Integer dimension) { this.dimension = dimension; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public static class Key implements Serializable {
+        private String sha256;
+        private String model;
+
+        public Key() {}
+
+        public Key(String sha256, String model) {
+            this.sha256 = sha256;
+            this.model = model;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return Objects.equals(sha256, other.sha256) && Objects.equals(model, other.model);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sha256, model);
+        }
+    }
+}
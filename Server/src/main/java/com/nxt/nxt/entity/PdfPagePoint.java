@@ -0,0 +1,66 @@
+package com.nxt.nxt.entity;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+
+/**
+ * Links a PDF to the vector point of one of its pages. Page points are keyed by content, so one
+ * point can belong to several uploads of the same PDF; it is only deleted with the last of them.
+ */
+@Entity
+@Table(name = "pdf_page_points")
+@IdClass(PdfPagePoint.Key.class)
+public class PdfPagePoint {
+    @Id
+    @Column(name = "pdf_id", nullable = false)
+    private Long pdfId;
+
+    @Id
+    @Column(name = "point_id", nullable = false, length = 36)
+    private String pointId;
+
+    public PdfPagePoint() {}
+
+    public PdfPagePoint(Long pdfId, String pointId) {
+        this.pdfId = pdfId;
+        this.pointId = pointId;
+    }
+
+    // Getters and setters
+    public Long getPdfId() { return pdfId; }
+    public void setPdfId(Long pdfId) { this.pdfId = pdfId; }
+
+    public String getPointId() { return pointId; }
+    public void setPointId(String pointId) { this.pointId = pointId; }
+
+    public static class Key implements Serializable {
+        private Long pdfId;
+        private String pointId;
+
+        public Key() {}
+
+        public Key(Long pdfId, String pointId) {
+            this.pdfId = pdfId;
+            this.pointId = pointId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return Objects.equals(pdfId, other.pdfId) && Objects.equals(pointId, other.pointId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(pdfId, pointId);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.nxt.nxt.entity;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+
+/**
+ * Stored embedding of a post's content, kept next to the posts row so the
+ * feed can rank candidates without calling the embedding API again.
+ * The vector is packed as little-endian float32 bytes (see EmbeddingCodec).
+ */
+@Entity
+@Table(name = "post_embeddings")
+public class PostEmbedding {
+    @Id
+    @Column(name = "post_id", nullable = false)
+    private UUID postId;
+
+    @Column(name = "vector", nullable = false, columnDefinition = "bytea")
+    private byte[] vector;
+
+    @Column(name = "dimension", nullable = false)
+    private Integer dimension;
+
+    @Column(name = "model", length = 100)
+    private String model;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public PostEmbedding() {}
+
+    public PostEmbedding(UUID postId, byte[] vector, Integer dimension, String model) {
+        this.postId = postId;
+        this.vector = vector;
+        this.dimension = dimension;
+        this.model = model;
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    // Getters and setters
+    public UUID getPostId() { return postId; }
+    public void setPostId(UUID postId) { this.postId = postId; }
+
+    public byte[] getVector() { return vector; }
+    public void setVector(byte[] vector) { this.vector = vector; }
+
+    public Integer getDimension() { return dimension; }
+    public void setDimension(Integer dimension) { this.dimension = dimension; }
+
+    public String getModel() { return model; }
+    public void setModel(String model) { this.model = model; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
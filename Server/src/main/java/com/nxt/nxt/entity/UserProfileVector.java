@@ -0,0 +1,96 @@
+package com.nxt.nxt.entity;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+
+/**
+ * Running sum of every vector a user has produced from one source
+ * (post, pdfdata, chat) plus how many vectors went into it.
+ * The user's interest vector is the summed rows divided by the summed counts.
+ */
+@Entity
+@Table(name = "user_profile_vectors")
+@IdClass(UserProfileVector.Key.class)
+public class UserProfileVector {
+    @Id
+    @Column(name = "username", nullable = false)
+    private String username;
+
+    @Id
+    @Column(name = "source", nullable = false, length = 20)
+    private String source;
+
+    @Column(name = "vector_sum", nullable = false, columnDefinition = "bytea")
+    private byte[] vectorSum;
+
+    @Column(name = "vector_count", nullable = false)
+    private Long vectorCount;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public UserProfileVector() {}
+
+    public UserProfileVector(String username, String source, byte[] vectorSum, Long vectorCount) {
+        this.username = username;
+        this.source = source;
+        this.vectorSum = vectorSum;
+        this.vectorCount = vectorCount;
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    // Getters and setters
+    public String getUsername() { return username; }
+    public void setUsername(String username) { this.username = username; }
+
+    public String getSource() { return source; }
+    public void setSource(String source) { this.source = source; }
+
+    public byte[] getVectorSum() { return vectorSum; }
+    public void setVectorSum(byte[] vectorSum) { this.vectorSum = vectorSum; }
+
+    public Long getVectorCount() { return vectorCount; }
+    public void setVectorCount(Long vectorCount) { this.vectorCount = vectorCount; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+
+    public static class Key implements Serializable {
+        private String username;
+        private String source;
+
+        public Key() {}
+
+        public Key(String username, String source) {
+            this.username = username;
+            this.source = source;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return Objects.equals(username, other.username) && Objects.equals(source, other.source);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(username, source);
+        }
+    }
+}
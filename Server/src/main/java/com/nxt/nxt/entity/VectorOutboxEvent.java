@@ -0,0 +1,113 @@
+package com.nxt.nxt.entity;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+
+/**
+ * A change to Postgres rows that the vector store still has to follow (a post created, edited or
+ * deleted, a chat exchange to index, a user deleted). Written in the same transaction as the
+ * change itself, so the vector store catches up even if the process dies right after the commit.
+ * Index events are applied by IndexingPipeline, the others by VectorSyncService.
+ * Rows are deleted once applied.
+ */
+@Entity
+@Table(name = "vector_outbox")
+public class VectorOutboxEvent {
+
+    public static final String DELETE_POST = "DELETE_POST";
+    public static final String REINDEX_POST = "REINDEX_POST";
+    public static final String DELETE_USER = "DELETE_USER";
+    public static final String INDEX_POST = "INDEX_POST";
+    public static final String INDEX_CHAT = "INDEX_CHAT";
+
+    public static final List<String> SYNC_OPERATIONS = List.of(DELETE_POST, REINDEX_POST, DELETE_USER);
+    public static final List<String> INDEX_OPERATIONS = List.of(INDEX_POST, INDEX_CHAT);
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "operation", nullable = false, length = 20)
+    private String operation;
+
+    // Post UUID, username or chat point id, depending on the operation
+    @Column(name = "target", nullable = false)
+    private String target;
+
+    // Owner of the target, whose interest profile is rebuilt once the vectors are gone
+    @Column(name = "username")
+    private String username;
+
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "last_error", columnDefinition = "text")
+    private String lastError;
+
+    // Text to embed when it lives in no other row (chat exchanges)
+    @Column(name = "payload", columnDefinition = "text")
+    private String payload;
+
+    // Earliest retry after a failed attempt; null means due now
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    // Index events: set once the point is written, so a retry only redoes the profile update
+    @Column(name = "point_stored_at")
+    private LocalDateTime pointStoredAt;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    public VectorOutboxEvent() {}
+
+    public VectorOutboxEvent(String operation, String target, String username) {
+        this.operation = operation;
+        this.target = target;
+        this.username = username;
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    // Getters and setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getOperation() { return operation; }
+    public void setOperation(String operation) { this.operation = operation; }
+
+    public String getTarget() { return target; }
+    public void setTarget(String target) { this.target = target; }
+
+    public String getUsername() { return username; }
+    public void setUsername(String username) { this.username = username; }
+
+    public Integer getAttempts() { return attempts; }
+    public void setAttempts(Integer attempts) { this.attempts = attempts; }
+
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+
+    public String getPayload() { return payload; }
+    public void setPayload(String payload) { this.payload = payload; }
+
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+
+    public LocalDateTime getPointStoredAt() { return pointStoredAt; }
+    public void setPointStoredAt(LocalDateTime pointStoredAt) { this.pointStoredAt = pointStoredAt; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
@@ -0,0 +1,15 @@
+package com.nxt.nxt.repositories;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.nxt.nxt.entity.CachedEmbedding;
+
+@Repository
+public interface CachedEmbeddingRepository extends JpaRepository<CachedEmbedding, CachedEmbedding.Key> {
+
+    List<CachedEmbedding> findByModelAndSha256In(String model, Collection<String> sha256s);
+}
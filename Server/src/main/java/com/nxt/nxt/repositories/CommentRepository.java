@@ -1,6 +1,10 @@
 package com.nxt.nxt.repositories;
 
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -86,4 +90,28 @@ public class CommentRepository {
         );
         return count != null ? count : 0;
     }
+
+    /**
+     * Comment counts for many posts in one grouped query.
+     * Posts without comments are absent from the map.
+     */
+    public Map<UUID, Integer> countByPostIds(Collection<UUID> postIds) {
+        Map<UUID, Integer> counts = new HashMap<>();
+        if (postIds.isEmpty()) {
+            return counts;
+        }
+
+        jdbc.query(
+            connection -> {
+                PreparedStatement ps = connection.prepareStatement(
+                    "SELECT post_id, COUNT(*) AS comment_count FROM comments WHERE post_id = ANY(?) GROUP BY post_id");
+                ps.setArray(1, connection.createArrayOf("uuid", postIds.toArray()));
+                return ps;
+            },
+            rs -> {
+                counts.put(rs.getObject("post_id", UUID.class), rs.getInt("comment_count"));
+            }
+        );
+        return counts;
+    }
 }
@@ -0,0 +1,22 @@
+package com.nxt.nxt.repositories;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.nxt.nxt.entity.PdfPagePoint;
+
+@Repository
+public interface PdfPagePointRepository extends JpaRepository<PdfPagePoint, PdfPagePoint.Key> {
+
+    /**
+     * The given page points that some PDF still in pdf_data links to
+     */
+    @Query(value = "SELECT DISTINCT p.point_id FROM pdf_page_points p JOIN pdf_data d ON d.id = p.pdf_id "
+            + "WHERE p.point_id IN (:pointIds)", nativeQuery = true)
+    List<String> findLinkedPointIds(@Param("pointIds") Collection<String> pointIds);
+}
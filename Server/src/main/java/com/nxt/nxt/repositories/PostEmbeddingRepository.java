@@ -0,0 +1,12 @@
+package com.nxt.nxt.repositories;
+
+import java.util.UUID;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.nxt.nxt.entity.PostEmbedding;
+
+@Repository
+public interface PostEmbeddingRepository extends JpaRepository<PostEmbedding, UUID> {
+}
@@ -1,5 +1,9 @@
 package com.nxt.nxt.repositories;
 
+import java.sql.PreparedStatement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -42,10 +46,23 @@ public class PostRepository {
         }
     }
 
-    public List<Post> findAll() {
+    /**
+     * Newest posts first, starting after the (createdAt, id) keyset of the last post already seen.
+     * Pass nulls for the first page. Served by idx_posts_created_at_id.
+     */
+    public List<Post> findPage(LocalDateTime createdBefore, UUID idBefore, int limit) {
+        if (createdBefore == null || idBefore == null) {
+            return jdbc.query(
+                "SELECT * FROM posts ORDER BY created_at DESC, id DESC LIMIT ?",
+                new BeanPropertyRowMapper<>(Post.class),
+                limit
+            );
+        }
+
         return jdbc.query(
-            "SELECT * FROM posts ORDER BY created_at DESC",
-            new BeanPropertyRowMapper<>(Post.class)
+            "SELECT * FROM posts WHERE (created_at, id) < (?, ?) ORDER BY created_at DESC, id DESC LIMIT ?",
+            new BeanPropertyRowMapper<>(Post.class),
+            createdBefore, idBefore, limit
         );
     }
 
@@ -68,11 +85,41 @@ public class PostRepository {
         jdbc.update("DELETE FROM posts WHERE id = ?", id);
     }
 
-    public List<Post> findByContentContaining(String contentPattern) {
+    public List<Post> findByIds(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        return jdbc.query(
+            connection -> {
+                PreparedStatement ps = connection.prepareStatement("SELECT * FROM posts WHERE id = ANY(?)");
+                ps.setArray(1, connection.createArrayOf("uuid", ids.toArray()));
+                return ps;
+            },
+            new BeanPropertyRowMapper<>(Post.class)
+        );
+    }
+
+    public List<UUID> findExistingIds(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        return jdbc.query(
+            connection -> {
+                PreparedStatement ps = connection.prepareStatement("SELECT id FROM posts WHERE id = ANY(?)");
+                ps.setArray(1, connection.createArrayOf("uuid", ids.toArray()));
+                return ps;
+            },
+            (rs, rowNum) -> rs.getObject("id", UUID.class)
+        );
+    }
+
+    public List<Post> findWithoutEmbedding(int limit) {
         return jdbc.query(
-            "SELECT * FROM posts WHERE content LIKE ?",
+            "SELECT p.* FROM posts p LEFT JOIN post_embeddings e ON e.post_id = p.id WHERE e.post_id IS NULL ORDER BY p.created_at DESC LIMIT ?",
             new BeanPropertyRowMapper<>(Post.class),
-            "%" + contentPattern + "%"
+            limit
         );
     }
 }
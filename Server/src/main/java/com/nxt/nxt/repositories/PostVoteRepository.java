@@ -1,5 +1,9 @@
 package com.nxt.nxt.repositories;
 
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -60,4 +64,52 @@ public class PostVoteRepository {
         );
         return count != null ? count : 0;
     }
+
+    /**
+     * Vote sums for many posts in one grouped query.
+     * Posts without votes are absent from the map.
+     */
+    public Map<UUID, Integer> getVoteCountsByPostIds(Collection<UUID> postIds) {
+        Map<UUID, Integer> counts = new HashMap<>();
+        if (postIds.isEmpty()) {
+            return counts;
+        }
+
+        jdbc.query(
+            connection -> {
+                PreparedStatement ps = connection.prepareStatement(
+                    "SELECT post_id, COALESCE(SUM(vote_type), 0) AS vote_count FROM post_votes WHERE post_id = ANY(?) GROUP BY post_id");
+                ps.setArray(1, connection.createArrayOf("uuid", postIds.toArray()));
+                return ps;
+            },
+            rs -> {
+                counts.put(rs.getObject("post_id", UUID.class), rs.getInt("vote_count"));
+            }
+        );
+        return counts;
+    }
+
+    /**
+     * The student's own vote (1 or -1) on each of the given posts they voted on, in one query.
+     */
+    public Map<UUID, Integer> getVoteTypesByStudentId(UUID studentId, Collection<UUID> postIds) {
+        Map<UUID, Integer> votes = new HashMap<>();
+        if (postIds.isEmpty()) {
+            return votes;
+        }
+
+        jdbc.query(
+            connection -> {
+                PreparedStatement ps = connection.prepareStatement(
+                    "SELECT post_id, vote_type FROM post_votes WHERE student_id = ? AND post_id = ANY(?)");
+                ps.setObject(1, studentId);
+                ps.setArray(2, connection.createArrayOf("uuid", postIds.toArray()));
+                return ps;
+            },
+            rs -> {
+                votes.put(rs.getObject("post_id", UUID.class), (int) rs.getShort("vote_type"));
+            }
+        );
+        return votes;
+    }
 }
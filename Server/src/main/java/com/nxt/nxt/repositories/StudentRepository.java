@@ -1,5 +1,9 @@
 package com.nxt.nxt.repositories;
 
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -75,6 +79,40 @@ public class StudentRepository {
         }
     }
 
+    public List<Student> findByIds(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        return jdbc.query(
+            connection -> {
+                PreparedStatement ps = connection.prepareStatement("SELECT * FROM students WHERE id = ANY(?)");
+                ps.setArray(1, connection.createArrayOf("uuid", ids.toArray()));
+                return ps;
+            },
+            new BeanPropertyRowMapper<>(Student.class)
+        );
+    }
+
+    public List<String> findAllUsernames() {
+        return jdbc.queryForList("SELECT username FROM students", String.class);
+    }
+
+    public List<String> findExistingUsernames(Collection<String> usernames) {
+        if (usernames.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        return jdbc.query(
+            connection -> {
+                PreparedStatement ps = connection.prepareStatement("SELECT username FROM students WHERE username = ANY(?)");
+                ps.setArray(1, connection.createArrayOf("varchar", usernames.toArray()));
+                return ps;
+            },
+            (rs, rowNum) -> rs.getString("username")
+        );
+    }
+
     public Optional<Student> findByUserId(UUID userId) {
         try {
             return Optional.ofNullable(
@@ -0,0 +1,37 @@
+package com.nxt.nxt.repositories;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.nxt.nxt.entity.UserProfileVector;
+
+import jakarta.persistence.LockModeType;
+
+@Repository
+public interface UserProfileVectorRepository extends JpaRepository<UserProfileVector, UserProfileVector.Key> {
+
+    List<UserProfileVector> findByUsername(String username);
+
+    /**
+     * Row lock so concurrent writes for the same user and source add up instead of overwriting each other
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT v FROM UserProfileVector v WHERE v.username = :username AND v.source = :source")
+    Optional<UserProfileVector> findForUpdate(@Param("username") String username, @Param("source") String source);
+
+    /**
+     * Create an empty row (count 0) unless one exists, so the first writers for a user and source
+     * can all lock it instead of each inserting their own
+     */
+    @Modifying
+    @Query(value = "INSERT INTO user_profile_vectors (username, source, vector_sum, vector_count, updated_at) "
+            + "VALUES (:username, :source, '', 0, now()) ON CONFLICT (username, source) DO NOTHING", nativeQuery = true)
+    void insertIfAbsent(@Param("username") String username, @Param("source") String source);
+}
@@ -1,9 +1,12 @@
 package com.nxt.nxt.repositories;
 
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -140,6 +143,21 @@ public class UserRepository {
         return jdbc.query(sql, new UserRowMapper());
     }
 
+    public List<String> findExistingUsernames(Collection<String> usernames) {
+        if (usernames.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        return jdbc.query(
+            connection -> {
+                PreparedStatement ps = connection.prepareStatement("SELECT username FROM users WHERE username = ANY(?)");
+                ps.setArray(1, connection.createArrayOf("varchar", usernames.toArray()));
+                return ps;
+            },
+            (rs, rowNum) -> rs.getString("username")
+        );
+    }
+
     public long countByRole(String role) {
         String sql = "SELECT COUNT(*) FROM users WHERE role = ?";
         Integer count = jdbc.queryForObject(sql, Integer.class, role);
@@ -0,0 +1,36 @@
+package com.nxt.nxt.repositories;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.nxt.nxt.entity.VectorOutboxEvent;
+
+@Repository
+public interface VectorOutboxRepository extends JpaRepository<VectorOutboxEvent, Long> {
+
+    /**
+     * Oldest events of the operations that have not used up their attempts, so changes are applied in commit order
+     */
+    List<VectorOutboxEvent> findByOperationInAndAttemptsLessThanOrderByIdAsc(Collection<String> operations, int maxAttempts, Pageable page);
+
+    /**
+     * Like findByOperationInAndAttemptsLessThanOrderByIdAsc, leaving out events still backing off after a failure
+     */
+    @Query("SELECT e FROM VectorOutboxEvent e WHERE e.operation IN :operations AND e.attempts < :maxAttempts "
+            + "AND (e.nextAttemptAt IS NULL OR e.nextAttemptAt <= :now) ORDER BY e.id")
+    List<VectorOutboxEvent> findDue(@Param("operations") Collection<String> operations, @Param("maxAttempts") int maxAttempts,
+                                    @Param("now") LocalDateTime now, Pageable page);
+
+    boolean existsByOperationAndTargetAndAttemptsLessThan(String operation, String target, int maxAttempts);
+
+    long countByOperationInAndAttemptsLessThan(Collection<String> operations, int maxAttempts);
+
+    long countByOperationIn(Collection<String> operations);
+}
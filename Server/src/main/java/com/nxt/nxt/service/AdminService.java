@@ -7,6 +7,7 @@ import java.util.UUID;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.nxt.nxt.dto.AdminSigninRequest;
 import com.nxt.nxt.dto.AdminSignupRequest;
@@ -18,13 +19,15 @@ public class AdminService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final VectorSyncService vectorSyncService;
     
     @Value("${admin.registration.key:NEXARA_ADMIN_2024}")
     private String adminRegistrationKey;
 
-    public AdminService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public AdminService(UserRepository userRepository, PasswordEncoder passwordEncoder, VectorSyncService vectorSyncService) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.vectorSyncService = vectorSyncService;
     }
 
     public User createAdmin(AdminSignupRequest request) throws Exception {
@@ -142,6 +145,7 @@ public class AdminService {
         return userRepository.findByUsername(username);
     }
 
+    @Transactional(rollbackFor = Exception.class)
     public void deleteUser(UUID id) throws Exception {
         Optional<User> userOpt = userRepository.findById(id);
         if (userOpt.isEmpty()) {
@@ -156,6 +160,7 @@ public class AdminService {
         }
 
         userRepository.deleteById(id);
+        vectorSyncService.userDeleted(user.getUsername());
         System.out.println("Successfully deleted user: " + user.getUsername());
     }
 
@@ -0,0 +1,243 @@
+package com.nxt.nxt.service;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.nxt.nxt.dto.RankedPost;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Per-user cache of ranked feed post ids in front of FeedRankingService.
+ * Entries are bounded by size and TTL. An entry that is due for refresh, or that was computed
+ * before a change it depends on, is still served while a background thread recomputes it.
+ * A vote, edit or deletion only outdates the entries that rank that post; new posts outdate every
+ * entry, but at most once per feed.cache.new-post-coalesce-seconds (posts in between are picked
+ * up by the next bump or the entry's own refresh).
+ * Posts and counts are loaded fresh on every read; only the ranking is cached.
+ * Paged reads pin the ranking in a snapshot so pages do not shift when an entry refreshes.
+ *
+ * Metrics (under /actuator/metrics): cache.gets / cache.evictions with cache=feed,
+ * feed.cache.hit.rate, feed.cache.stale and feed.cache.refresh (refresh latency).
+ */
+@Service
+public class FeedCacheService {
+
+    private final FeedRankingService feedRankingService;
+    private final MeterRegistry meterRegistry;
+
+    // Logical clock: entries remember the value they were computed at, changes the value they happened at
+    private final AtomicLong clock = new AtomicLong();
+    // Clock value of the last change that affects every feed (new posts)
+    private final AtomicLong allDirtyAt = new AtomicLong();
+    private final AtomicLong lastAllDirtyNanos = new AtomicLong(System.nanoTime());
+    // Clock value of the last vote, edit or deletion per post; older than an entry's TTL is irrelevant
+    private Cache<UUID, Long> postChangedAt;
+
+    private LoadingCache<String, FeedEntry> cache;
+    private Cache<String, FeedSnapshot> snapshots;
+    private ExecutorService refreshExecutor;
+    private Timer refreshTimer;
+    private Counter staleServed;
+
+    @Value("${feed.cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${feed.cache.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    @Value("${feed.cache.refresh-after-seconds:60}")
+    private long refreshAfterSeconds;
+
+    // Ranked ids kept per user; pages are served from this list
+    @Value("${feed.cache.depth:100}")
+    private int depth;
+
+    @Value("${feed.cache.refresh-threads:2}")
+    private int refreshThreads;
+
+    @Value("${feed.snapshot.ttl-minutes:15}")
+    private long snapshotTtlMinutes;
+
+    @Value("${feed.cache.new-post-coalesce-seconds:10}")
+    private long newPostCoalesceSeconds;
+
+    public FeedCacheService(FeedRankingService feedRankingService, MeterRegistry meterRegistry) {
+        this.feedRankingService = feedRankingService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        refreshExecutor = Executors.newFixedThreadPool(refreshThreads, runnable -> {
+            Thread thread = new Thread(runnable, "feed-cache-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .refreshAfterWrite(Duration.ofSeconds(refreshAfterSeconds))
+                .executor(refreshExecutor)
+                .recordStats()
+                .build(this::load);
+
+        postChangedAt = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .build();
+
+        snapshots = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(Duration.ofMinutes(snapshotTtlMinutes))
+                .build();
+
+        refreshTimer = Timer.builder("feed.cache.refresh")
+                .description("Time to recompute one user's ranked feed")
+                .register(meterRegistry);
+        staleServed = Counter.builder("feed.cache.stale")
+                .description("Feed reads served from an entry that was being refreshed")
+                .register(meterRegistry);
+        Gauge.builder("feed.cache.hit.rate", cache, c -> c.stats().hitRate())
+                .register(meterRegistry);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "feed");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * Top posts for the user, best first. Empty if the user has nothing to rank yet.
+     * Only the first read for a user (or after eviction) waits for ranking.
+     */
+    public List<RankedPost> getFeed(String username, int limit) {
+        Map<UUID, Double> scores = rankedScores(username);
+        return feedRankingService.hydrate(scores.keySet().stream().limit(limit).toList(), scores);
+    }
+
+    /**
+     * Ranked post ids with their scores, best first, from the cache.
+     */
+    public Map<UUID, Double> rankedScores(String username) {
+        FeedEntry entry = cache.get(username);
+
+        if (isStale(entry)) {
+            // Serve what we have; Caffeine runs at most one refresh per user at a time
+            staleServed.increment();
+            cache.refresh(username);
+        }
+
+        return entry.scores();
+    }
+
+    private boolean isStale(FeedEntry entry) {
+        if (entry.generation() < allDirtyAt.get()) {
+            return true;
+        }
+        for (UUID postId : entry.scores().keySet()) {
+            Long changedAt = postChangedAt.getIfPresent(postId);
+            if (changedAt != null && changedAt > entry.generation()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Pin a ranked list so later pages read the same order even if the feed is refreshed meanwhile.
+     * Returns the snapshot id to put in page cursors.
+     */
+    public String openSnapshot(String username, Map<UUID, Double> scores) {
+        String snapshotId = UUID.randomUUID().toString();
+        snapshots.put(snapshotId, new FeedSnapshot(username, List.copyOf(scores.keySet()), scores));
+        return snapshotId;
+    }
+
+    /**
+     * The ranked ids pinned by openSnapshot, or null once it expired or if it belongs to another user.
+     */
+    public FeedSnapshot getSnapshot(String snapshotId, String username) {
+        FeedSnapshot snapshot = snapshots.getIfPresent(snapshotId);
+        return snapshot != null && snapshot.username().equals(username) ? snapshot : null;
+    }
+
+    /**
+     * The user's own interests changed (new post, chat or PDF): recompute their feed in the background.
+     */
+    public void markDirty(String username) {
+        // Not getIfPresent, which would count as a hit or miss in the cache stats
+        if (cache.asMap().containsKey(username)) {
+            cache.refresh(username);
+        }
+    }
+
+    /**
+     * A new post, which every feed may rank. Outdates all entries, at most once per
+     * feed.cache.new-post-coalesce-seconds; entries are refreshed lazily on their next read.
+     */
+    public void markAllDirty() {
+        long now = System.nanoTime();
+        long last = lastAllDirtyNanos.get();
+        if (now - last >= TimeUnit.SECONDS.toNanos(newPostCoalesceSeconds) && lastAllDirtyNanos.compareAndSet(last, now)) {
+            allDirtyAt.set(clock.incrementAndGet());
+        }
+    }
+
+    /**
+     * The post was voted on, edited or deleted: entries that rank it are refreshed on their next read.
+     */
+    public void markPostChanged(UUID postId) {
+        postChangedAt.put(postId, clock.incrementAndGet());
+    }
+
+    public void invalidate(String username) {
+        cache.invalidate(username);
+    }
+
+    private FeedEntry load(String username) {
+        // Taken before ranking so a change during the computation leaves the entry stale
+        long entryGeneration = clock.get();
+        long start = System.nanoTime();
+
+        try {
+            Map<UUID, Double> scores = new LinkedHashMap<>();
+            for (RankedPost ranked : feedRankingService.rankForUser(username, depth)) {
+                scores.put(ranked.getPost().getId(), ranked.getScore());
+            }
+            return new FeedEntry(Collections.unmodifiableMap(scores), entryGeneration);
+        }
+        finally {
+            refreshTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Ranked post ids with their scores, best first
+    private record FeedEntry(Map<UUID, Double> scores, long generation) {
+    }
+
+    // A ranked list pinned for paging
+    public record FeedSnapshot(String username, List<UUID> postIds, Map<UUID, Double> scores) {
+    }
+}
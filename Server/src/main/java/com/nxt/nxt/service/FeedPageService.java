@@ -0,0 +1,119 @@
+package com.nxt.nxt.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.springframework.stereotype.Service;
+
+import com.nxt.nxt.dto.FeedPage;
+import com.nxt.nxt.entity.Post;
+import com.nxt.nxt.repositories.PostRepository;
+import com.nxt.nxt.service.FeedCacheService.FeedSnapshot;
+import com.nxt.nxt.util.FeedCursor;
+
+/**
+ * Cursor pagination over the feed. The first pages come from a snapshot of the user's ranked
+ * ids; after those (or when the user has no ranking yet) the feed continues newest first with
+ * keyset pagination on (created_at, id), skipping posts the ranked pages already showed.
+ * Every page reads a bounded number of rows.
+ */
+@Service
+public class FeedPageService {
+
+    private final FeedCacheService feedCacheService;
+    private final FeedRankingService feedRankingService;
+    private final PostRepository postRepository;
+
+    public FeedPageService(FeedCacheService feedCacheService, FeedRankingService feedRankingService,
+            PostRepository postRepository) {
+        this.feedCacheService = feedCacheService;
+        this.feedRankingService = feedRankingService;
+        this.postRepository = postRepository;
+    }
+
+    /**
+     * The page after the given cursor, or the first page if cursor is null.
+     * Throws IllegalArgumentException for a malformed cursor.
+     */
+    public FeedPage getPage(String username, String cursor, int limit) {
+        if (cursor == null || cursor.isBlank()) {
+            Map<UUID, Double> scores = feedCacheService.rankedScores(username);
+            if (scores.isEmpty()) {
+                return chronologicalPage(FeedCursor.chronological(null, null, null), Set.of(), limit);
+            }
+            String snapshotId = feedCacheService.openSnapshot(username, scores);
+            return rankedPage(feedCacheService.getSnapshot(snapshotId, username), snapshotId, 0, limit);
+        }
+
+        FeedCursor position = FeedCursor.decode(cursor);
+        FeedSnapshot snapshot = position.snapshotId() != null
+                ? feedCacheService.getSnapshot(position.snapshotId(), username)
+                : null;
+
+        if (position.ranked()) {
+            if (snapshot == null) {
+                // Snapshot expired: carry on with the newest posts
+                return chronologicalPage(FeedCursor.chronological(null, null, null), Set.of(), limit);
+            }
+            return rankedPage(snapshot, position.snapshotId(), position.offset(), limit);
+        }
+
+        Set<UUID> shown = snapshot != null ? new HashSet<>(snapshot.postIds()) : Set.of();
+        return chronologicalPage(position, shown, limit);
+    }
+
+    /**
+     * First page of the chronological feed, for when ranking is unavailable.
+     */
+    public FeedPage getChronologicalPage(int limit) {
+        return chronologicalPage(FeedCursor.chronological(null, null, null), Set.of(), limit);
+    }
+
+    private FeedPage rankedPage(FeedSnapshot snapshot, String snapshotId, int offset, int limit) {
+        List<UUID> ids = snapshot.postIds();
+        int from = Math.min(offset, ids.size());
+        int to = Math.min(from + limit, ids.size());
+
+        // Once the ranked list runs out, the next page starts the chronological feed
+        FeedCursor next = to < ids.size()
+                ? FeedCursor.ranked(snapshotId, to)
+                : FeedCursor.chronological(snapshotId, null, null);
+
+        return new FeedPage(feedRankingService.hydrate(ids.subList(from, to), snapshot.scores()), next.encode());
+    }
+
+    private FeedPage chronologicalPage(FeedCursor position, Set<UUID> shown, int limit) {
+        List<Post> page = new ArrayList<>();
+        LocalDateTime createdBefore = position.createdAt();
+        UUID idBefore = position.postId();
+        boolean more = true;
+
+        // Skipped posts are at most the snapshot size, so this reads at most limit + snapshot rows
+        while (page.size() < limit && more) {
+            List<Post> rows = postRepository.findPage(createdBefore, idBefore, limit);
+            more = rows.size() == limit;
+
+            for (Post post : rows) {
+                createdBefore = post.getCreatedAt();
+                idBefore = post.getId();
+                if (!shown.contains(post.getId())) {
+                    page.add(post);
+                    if (page.size() == limit) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        String next = page.size() == limit
+                ? FeedCursor.chronological(position.snapshotId(), createdBefore, idBefore).encode()
+                : null;
+
+        return new FeedPage(feedRankingService.withEngagement(page, Map.of()), next);
+    }
+}
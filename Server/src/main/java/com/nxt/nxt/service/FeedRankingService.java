@@ -0,0 +1,427 @@
+package com.nxt.nxt.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.nxt.nxt.dto.RankedPost;
+import com.nxt.nxt.entity.Post;
+import com.nxt.nxt.entity.Student;
+import com.nxt.nxt.repositories.CommentRepository;
+import com.nxt.nxt.repositories.PostRepository;
+import com.nxt.nxt.repositories.PostVoteRepository;
+import com.nxt.nxt.repositories.StudentRepository;
+import com.nxt.nxt.util.Embedding;
+import com.nxt.nxt.util.PostRankScorer;
+import com.nxt.nxt.util.SearchHit;
+import com.nxt.nxt.util.SearchOptions;
+import com.nxt.nxt.util.TopK;
+import com.nxt.nxt.util.VectorStore;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Personalized feed ranking in two stages:
+ * 1. recall the top-K posts nearest to the user's interest vector from Qdrant, limited to recent posts;
+ * 2. re-rank only those K with PostRankScorer (similarity, recency and engagement).
+ * The work per request is bounded by K, not by the number of posts. Re-ranking streams the
+ * candidates newest first into a top-N heap and stops once older posts can no longer get in.
+ *
+ * The two recall searches are non-blocking Qdrant calls issued together; the database lookups
+ * (posts, votes, comments and authors) run concurrently on virtual threads. Each stage has a deadline: a late or failed optional stage
+ * is replaced by an empty result (no counts, unknown author) instead of failing the feed.
+ * Stage timings are recorded as feed.ranking.stage{stage=...} and fallbacks as
+ * feed.ranking.fallback{stage=...}.
+ */
+@Service
+public class FeedRankingService {
+
+    private final VectorStore vectorStore;
+    private final UserProfileService userProfileService;
+    private final PostEmbeddingService postEmbeddingService;
+    private final PostRepository postRepository;
+    private final PostVoteRepository postVoteRepository;
+    private final CommentRepository commentRepository;
+    private final StudentRepository studentRepository;
+    private final MeterRegistry meterRegistry;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Candidates scored per batch between early-termination checks
+    private static final int SCORE_CHUNK_SIZE = 32;
+
+    @Value("${feed.recall.k:200}")
+    private int recallK;
+
+    @Value("${feed.recall.max-age-days:30}")
+    private int recallMaxAgeDays;
+
+    // Return the post vectors with the recall hits so scoring does not load them from Postgres
+    @Value("${feed.recall.with-vectors:true}")
+    private boolean recallWithVectors;
+
+    @Value("${feed.deadline.profile-ms:1000}")
+    private long profileDeadlineMs;
+
+    @Value("${feed.deadline.recall-ms:1500}")
+    private long recallDeadlineMs;
+
+    @Value("${feed.deadline.lookup-ms:1000}")
+    private long lookupDeadlineMs;
+
+    public FeedRankingService(VectorStore vectorStore, UserProfileService userProfileService,
+            PostEmbeddingService postEmbeddingService, PostRepository postRepository,
+            PostVoteRepository postVoteRepository, CommentRepository commentRepository,
+            StudentRepository studentRepository, MeterRegistry meterRegistry) {
+        this.vectorStore = vectorStore;
+        this.userProfileService = userProfileService;
+        this.postEmbeddingService = postEmbeddingService;
+        this.postRepository = postRepository;
+        this.postVoteRepository = postVoteRepository;
+        this.commentRepository = commentRepository;
+        this.studentRepository = studentRepository;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Top posts for the user, best first.
+     * Returns an empty list if the user has no interest vector yet, or if the profile or
+     * recall stage missed its deadline.
+     */
+    public List<RankedPost> rankForUser(String username, int limit) {
+        Embedding interestVector = await("profile",
+                async("profile", () -> userProfileService.getInterestVector(username)),
+                profileDeadlineMs, Embedding.EMPTY);
+
+        if (interestVector.isEmpty()) {
+            System.out.println("No interest vector for user: " + username);
+            return new ArrayList<>();
+        }
+
+        // Stage 1: ANN recall from Qdrant
+        List<SearchHit> hits = recall(interestVector, limit);
+
+        Set<UUID> candidateIds = new LinkedHashSet<>();
+        Map<UUID, float[]> recalledVectors = new HashMap<>();
+        for (SearchHit hit : hits) {
+            if (hit.postId() != null) {
+                candidateIds.add(hit.postId());
+                if (hit.vector() != null) {
+                    recalledVectors.put(hit.postId(), hit.vector());
+                }
+            }
+        }
+
+        if (candidateIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Posts, vote counts and comment counts only need the ids: fetch them together
+        CompletableFuture<List<Post>> postsFuture = async("posts", () -> postRepository.findByIds(candidateIds));
+        CompletableFuture<Map<UUID, Integer>> votesFuture =
+                async("votes", () -> postVoteRepository.getVoteCountsByPostIds(candidateIds));
+        CompletableFuture<Map<UUID, Integer>> commentsFuture =
+                async("comments", () -> commentRepository.countByPostIds(candidateIds));
+
+        List<Post> candidates = new ArrayList<>(await("posts", postsFuture, lookupDeadlineMs, List.of()));
+        if (candidates.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Authors resolve while the candidates are being scored
+        CompletableFuture<Map<UUID, Student>> authorsFuture = authorsOf(candidates);
+
+        Map<UUID, Integer> voteCounts = await("votes", votesFuture, lookupDeadlineMs, Map.of());
+        Map<UUID, Integer> commentCounts = await("comments", commentsFuture, lookupDeadlineMs, Map.of());
+
+        System.out.println("Feed recall for user " + username + ": " + hits.size() + " hits, " + candidates.size() + " posts");
+
+        // Stage 2: stream the candidates newest first through scoring into a top-K heap
+        List<ScoredPost> top = timed("score", () -> score(candidates, interestVector, recalledVectors, voteCounts, commentCounts, limit));
+
+        Map<UUID, Student> authors = await("authors", authorsFuture, lookupDeadlineMs, Map.of());
+
+        List<RankedPost> ranked = new ArrayList<>();
+        for (ScoredPost scored : top) {
+            Post post = scored.post();
+            ranked.add(new RankedPost(post, authors.get(post.getStudentId()), scored.score(),
+                    voteCounts.getOrDefault(post.getId(), 0), commentCounts.getOrDefault(post.getId(), 0)));
+        }
+        return ranked;
+    }
+
+    // A candidate and its score, before the author is attached
+    private record ScoredPost(Post post, double score) {
+    }
+
+    private List<ScoredPost> score(List<Post> candidates, Embedding interestVector, Map<UUID, float[]> recalledVectors,
+            Map<UUID, Integer> voteCounts, Map<UUID, Integer> commentCounts, int limit) {
+        // Posts without votes or comments are missing from the maps and count 0, so 0 is the floor
+        int maxLikes = Math.max(0, voteCounts.values().stream().mapToInt(Integer::intValue).max().orElse(0));
+        int maxComments = Math.max(0, commentCounts.values().stream().mapToInt(Integer::intValue).max().orElse(0));
+
+        candidates.sort((a, b) -> b.getCreatedAt().compareTo(a.getCreatedAt()));
+
+        PostRankScorer scorer = new PostRankScorer(interestVector.array());
+        TopK<ScoredPost> top = new TopK<>(limit);
+        LocalDateTime now = LocalDateTime.now();
+        int scored = 0;
+
+        for (int from = 0; from < candidates.size(); from += SCORE_CHUNK_SIZE) {
+            List<Post> chunk = candidates.subList(from, Math.min(from + SCORE_CHUNK_SIZE, candidates.size()));
+
+            // Every later post is at least this old, so none can beat the current K-th best
+            int newestAge = (int) ChronoUnit.HOURS.between(chunk.get(0).getCreatedAt(), now);
+            if (scorer.maxScore(newestAge, maxLikes, maxComments) <= top.threshold()) {
+                break;
+            }
+
+            scored += scoreChunk(chunk, scorer, interestVector.dimension(), recalledVectors, voteCounts, commentCounts, now, top);
+        }
+
+        System.out.println("Feed ranking scored " + scored + " of " + candidates.size() + " candidates");
+
+        return top.toSortedList();
+    }
+
+    /**
+     * Vectors returned with the recall hits are used as they are; the rest are loaded per chunk,
+     * so candidates cut off by early termination are never loaded.
+     * Returns how many posts of the chunk were scored.
+     */
+    private int scoreChunk(List<Post> chunk, PostRankScorer scorer, int dimension, Map<UUID, float[]> recalledVectors,
+            Map<UUID, Integer> voteCounts, Map<UUID, Integer> commentCounts, LocalDateTime now,
+            TopK<ScoredPost> top) {
+        Map<UUID, float[]> postVectors = new HashMap<>();
+        List<Post> missing = new ArrayList<>();
+        for (Post post : chunk) {
+            float[] recalled = recalledVectors.get(post.getId());
+            if (recalled != null) {
+                postVectors.put(post.getId(), recalled);
+            }
+            else {
+                missing.add(post);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            for (Map.Entry<UUID, Embedding> entry : postEmbeddingService.getEmbeddings(missing).entrySet()) {
+                postVectors.put(entry.getKey(), entry.getValue().array());
+            }
+        }
+
+        // Only candidates with a vector of the same dimension can be scored
+        List<Post> scorable = new ArrayList<>();
+        for (Post post : chunk) {
+            float[] postVector = postVectors.get(post.getId());
+            if (postVector != null && postVector.length == dimension) {
+                scorable.add(post);
+            }
+        }
+
+        float[][] vectors = new float[scorable.size()][];
+        int[] likes = new int[scorable.size()];
+        int[] comments = new int[scorable.size()];
+        int[] hoursAgo = new int[scorable.size()];
+
+        for (int i = 0; i < scorable.size(); i++) {
+            Post post = scorable.get(i);
+            vectors[i] = postVectors.get(post.getId());
+            likes[i] = voteCounts.getOrDefault(post.getId(), 0);
+            comments[i] = commentCounts.getOrDefault(post.getId(), 0);
+            hoursAgo[i] = (int) ChronoUnit.HOURS.between(post.getCreatedAt(), now);
+        }
+
+        double[] scores = scorer.scoreBatch(vectors, likes, comments, hoursAgo);
+
+        for (int i = 0; i < scorable.size(); i++) {
+            top.offer(new ScoredPost(scorable.get(i), scores[i]), scores[i]);
+        }
+
+        return scorable.size();
+    }
+
+    /**
+     * Load posts for an already ranked list of ids, keeping its order and scores.
+     * Vote and comment counts are read fresh; posts deleted since ranking are skipped.
+     */
+    public List<RankedPost> hydrate(List<UUID> ids, Map<UUID, Double> scores) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Counts only need the ids, so they load alongside the posts
+        CompletableFuture<Map<UUID, Integer>> votesFuture = async("votes", () -> postVoteRepository.getVoteCountsByPostIds(ids));
+        CompletableFuture<Map<UUID, Integer>> commentsFuture = async("comments", () -> commentRepository.countByPostIds(ids));
+
+        Map<UUID, Post> posts = new HashMap<>();
+        for (Post post : timed("posts", () -> postRepository.findByIds(ids))) {
+            posts.put(post.getId(), post);
+        }
+
+        List<Post> ordered = new ArrayList<>();
+        for (UUID id : ids) {
+            Post post = posts.get(id);
+            if (post != null) {
+                ordered.add(post);
+            }
+        }
+
+        return attach(ordered, scores, votesFuture, commentsFuture);
+    }
+
+    /**
+     * Attach authors and current vote and comment counts to posts in the given order.
+     * The three lookups run concurrently, one query each however many posts there are.
+     * Posts missing from scores get 0.
+     */
+    public List<RankedPost> withEngagement(List<Post> posts, Map<UUID, Double> scores) {
+        if (posts.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        List<UUID> ids = posts.stream().map(Post::getId).toList();
+        return attach(posts, scores,
+                async("votes", () -> postVoteRepository.getVoteCountsByPostIds(ids)),
+                async("comments", () -> commentRepository.countByPostIds(ids)));
+    }
+
+    private List<RankedPost> attach(List<Post> posts, Map<UUID, Double> scores,
+            CompletableFuture<Map<UUID, Integer>> votesFuture, CompletableFuture<Map<UUID, Integer>> commentsFuture) {
+        CompletableFuture<Map<UUID, Student>> authorsFuture = authorsOf(posts);
+
+        Map<UUID, Integer> voteCounts = await("votes", votesFuture, lookupDeadlineMs, Map.of());
+        Map<UUID, Integer> commentCounts = await("comments", commentsFuture, lookupDeadlineMs, Map.of());
+        Map<UUID, Student> authors = await("authors", authorsFuture, lookupDeadlineMs, Map.of());
+
+        List<RankedPost> ranked = new ArrayList<>();
+        for (Post post : posts) {
+            ranked.add(new RankedPost(post, authors.get(post.getStudentId()), scores.getOrDefault(post.getId(), 0.0),
+                    voteCounts.getOrDefault(post.getId(), 0), commentCounts.getOrDefault(post.getId(), 0)));
+        }
+
+        return ranked;
+    }
+
+    private CompletableFuture<Map<UUID, Student>> authorsOf(List<Post> posts) {
+        Set<UUID> studentIds = new HashSet<>();
+        for (Post post : posts) {
+            studentIds.add(post.getStudentId());
+        }
+
+        return async("authors", () -> {
+            Map<UUID, Student> authors = new HashMap<>();
+            for (Student student : studentRepository.findByIds(studentIds)) {
+                authors.put(student.getId(), student);
+            }
+            return authors;
+        });
+    }
+
+    /**
+     * Nearest recent posts first; if the recency window is too quiet to fill a page, recall from all posts.
+     * Both searches are issued at once so the fallback costs no extra latency; if one misses the
+     * deadline the other one's hits are used.
+     */
+    private List<SearchHit> recall(Embedding interestVector, int limit) {
+        long createdAfter = Instant.now().minus(Duration.ofDays(recallMaxAgeDays)).getEpochSecond();
+
+        // Non-blocking gRPC calls with the recall deadline; no thread waits on Qdrant
+        Duration deadline = Duration.ofMillis(recallDeadlineMs);
+        SearchOptions options = recallWithVectors ? SearchOptions.top(recallK).withVectors() : SearchOptions.top(recallK);
+        CompletableFuture<List<SearchHit>> recent =
+                timedAsync("recall", vectorStore.searchPostsAsync(interestVector, createdAfter, options, deadline));
+        CompletableFuture<List<SearchHit>> all =
+                timedAsync("recall_all", vectorStore.searchPostsAsync(interestVector, null, options, deadline));
+
+        List<SearchHit> hits = await("recall", recent, recallDeadlineMs, List.of());
+        if (hits.size() >= limit) {
+            all.cancel(true);
+            return hits;
+        }
+
+        List<SearchHit> allHits = await("recall_all", all, recallDeadlineMs, List.of());
+        return allHits.size() > hits.size() ? allHits : hits;
+    }
+
+    private <T> CompletableFuture<T> async(String stage, Supplier<T> task) {
+        return CompletableFuture.supplyAsync(() -> timed(stage, task), executor);
+    }
+
+    private <T> T timed(String stage, Supplier<T> task) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return task.get();
+        }
+        finally {
+            sample.stop(stageTimer(stage));
+        }
+    }
+
+    // Records the stage when an already-running async call completes; returns the same future so cancel reaches the call
+    private <T> CompletableFuture<T> timedAsync(String stage, CompletableFuture<T> future) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        future.whenComplete((result, error) -> sample.stop(stageTimer(stage)));
+        return future;
+    }
+
+    private Timer stageTimer(String stage) {
+        return Timer.builder("feed.ranking.stage")
+                .description("Time spent in one stage of feed ranking")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Result of the stage, or the fallback if it fails or is not done within the deadline.
+     * A late stage keeps running in the background; only its result is dropped.
+     */
+    private <T> T await(String stage, CompletableFuture<T> future, long deadlineMs, T fallback) {
+        try {
+            return future.get(deadlineMs, TimeUnit.MILLISECONDS);
+        }
+        catch (TimeoutException e) {
+            System.err.println("Feed ranking stage '" + stage + "' missed its " + deadlineMs + "ms deadline, using fallback");
+        }
+        catch (ExecutionException e) {
+            System.err.println("Feed ranking stage '" + stage + "' failed, using fallback: " + e.getCause().getMessage());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        Counter.builder("feed.ranking.fallback")
+                .description("Feed ranking stages replaced by their fallback")
+                .tag("stage", stage)
+                .register(meterRegistry)
+                .increment();
+        return fallback;
+    }
+}
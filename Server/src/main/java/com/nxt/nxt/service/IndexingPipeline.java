@@ -0,0 +1,607 @@
+package com.nxt.nxt.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.nxt.nxt.entity.Post;
+import com.nxt.nxt.entity.VectorOutboxEvent;
+import com.nxt.nxt.repositories.PostRepository;
+import com.nxt.nxt.repositories.VectorOutboxRepository;
+import com.nxt.nxt.util.ContentHash;
+import com.nxt.nxt.util.Embedding;
+import com.nxt.nxt.util.EmbeddingAPI;
+import com.nxt.nxt.util.EmbeddingBatchResult;
+import com.nxt.nxt.util.UpsertResult;
+import com.nxt.nxt.util.VectorPoint;
+import com.nxt.nxt.util.VectorStore;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Embeds and indexes new posts and chat exchanges off the request path.
+ *
+ * The write side commits the row together with an INDEX_POST or INDEX_CHAT event in vector_outbox
+ * and, after the commit, offers the event id to a bounded in-memory queue. Embedder threads drain
+ * the queue in batches of up to indexing.batch-size (waiting at most indexing.linger-ms to fill one)
+ * and embed each batch with one embedBatch call; upserter threads write the points in one upsert,
+ * mark the events as stored, add the vectors to the owners' interest profiles and delete the events.
+ *
+ * Backpressure: a request never blocks on the pipeline. When the queue is full the event simply
+ * stays in Postgres, and a poller feeds due events back in as room frees up; between the stages a
+ * small hand-off queue blocks the embedders while the upserters fall behind. The poller also picks
+ * up what a restart left behind.
+ *
+ * Failed events are retried with exponential backoff (indexing.retry.*) up to indexing.max-attempts
+ * times, then stay in vector_outbox for inspection. The point and the profile update are separate
+ * steps: an event whose point is stored but whose profile update failed is retried for the profile
+ * alone (its vector comes back from the embedding cache). A point that exists is no proof that its
+ * event reached the profile, so it is not skipped; only a crash between the profile update and the
+ * event's deletion can count a vector twice, until the next profile rebuild.
+ *
+ * Metrics: indexing.queue.depth by stage (embed, upsert), indexing.outbox.pending,
+ * indexing.events by outcome and indexing.queue.overflow.
+ */
+@Service
+public class IndexingPipeline {
+
+    private record Item(VectorOutboxEvent event, String source, VectorPoint point, boolean pointStored) {}
+
+    private record Batch(List<Item> items, Map<UUID, Embedding> postVectors) {}
+
+    private final VectorOutboxRepository outboxRepository;
+    private final PostRepository postRepository;
+    private final PostEmbeddingService postEmbeddingService;
+    private final UserProfileService userProfileService;
+    private final FeedCacheService feedCacheService;
+    private final EmbeddingAPI embeddingAPI;
+    private final VectorStore vectorStore;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${indexing.enabled:true}")
+    private boolean enabled;
+
+    @Value("${indexing.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${indexing.batch-size:64}")
+    private int batchSize;
+
+    @Value("${indexing.linger-ms:200}")
+    private long lingerMs;
+
+    @Value("${indexing.embedders:2}")
+    private int embedders;
+
+    @Value("${indexing.upserters:1}")
+    private int upserters;
+
+    @Value("${indexing.poll-interval-seconds:10}")
+    private long pollIntervalSeconds;
+
+    @Value("${indexing.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${indexing.retry.initial-backoff-seconds:5}")
+    private long initialBackoffSeconds;
+
+    @Value("${indexing.retry.max-backoff-seconds:600}")
+    private long maxBackoffSeconds;
+
+    private BlockingQueue<Long> queue;
+    private BlockingQueue<Batch> handoff;
+    // Event ids queued or being worked on, so the poller does not queue them twice
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final AtomicLong pending = new AtomicLong();
+
+    private volatile boolean running;
+    private ExecutorService workers;
+    private ScheduledExecutorService poller;
+
+    private Counter indexed;
+    private Counter skipped;
+    private Counter failed;
+    private Counter overflow;
+
+    public IndexingPipeline(VectorOutboxRepository outboxRepository, PostRepository postRepository,
+            PostEmbeddingService postEmbeddingService, UserProfileService userProfileService,
+            FeedCacheService feedCacheService, EmbeddingAPI embeddingAPI, VectorStore vectorStore,
+            MeterRegistry meterRegistry) {
+        this.outboxRepository = outboxRepository;
+        this.postRepository = postRepository;
+        this.postEmbeddingService = postEmbeddingService;
+        this.userProfileService = userProfileService;
+        this.feedCacheService = feedCacheService;
+        this.embeddingAPI = embeddingAPI;
+        this.vectorStore = vectorStore;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void start() {
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        // Enough for every upserter to hold a batch with one more waiting
+        handoff = new ArrayBlockingQueue<>(Math.max(1, upserters) * 2);
+
+        Gauge.builder("indexing.queue.depth", queue, BlockingQueue::size)
+                .description("Index events waiting to be embedded")
+                .tag("stage", "embed")
+                .register(meterRegistry);
+        Gauge.builder("indexing.queue.depth", handoff, batches -> batches.stream().mapToInt(batch -> batch.items().size()).sum())
+                .description("Embedded index events waiting to be upserted")
+                .tag("stage", "upsert")
+                .register(meterRegistry);
+        Gauge.builder("indexing.outbox.pending", pending, AtomicLong::get)
+                .description("Index events in vector_outbox that are still retried, as of the last poll")
+                .register(meterRegistry);
+        indexed = events("indexed");
+        skipped = events("skipped");
+        failed = events("failed");
+        overflow = Counter.builder("indexing.queue.overflow")
+                .description("Index events left to the poller because the queue was full")
+                .register(meterRegistry);
+
+        if (!enabled) {
+            return;
+        }
+
+        running = true;
+        AtomicInteger threads = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(Math.max(1, embedders) + Math.max(1, upserters), runnable -> {
+            Thread thread = new Thread(runnable, "indexing-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < Math.max(1, embedders); i++) {
+            workers.execute(this::embedLoop);
+        }
+        for (int i = 0; i < Math.max(1, upserters); i++) {
+            workers.execute(this::upsertLoop);
+        }
+
+        poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "indexing-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Starts right away, picking up whatever the last shutdown left in the outbox
+        poller.scheduleWithFixedDelay(this::pollSafely, 0, pollIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    private Counter events(String outcome) {
+        return Counter.builder("indexing.events")
+                .description("Index events handled, by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        // Unfinished events are still in the outbox and are picked up on the next start
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    // ------------ WRITE SIDE: row and outbox event in one transaction ----------------
+
+    /**
+     * Insert the post and queue its embedding and indexing. Returns once both rows are committed.
+     */
+    @Transactional
+    public void savePost(Post post, String username) {
+        postRepository.save(post);
+        enqueue(new VectorOutboxEvent(VectorOutboxEvent.INDEX_POST, post.getId().toString(), username));
+    }
+
+    /**
+     * Queue a chat exchange for indexing as a "chat" point. The text travels in the event, since
+     * the chat history row is not always written. An exchange already stored, or still queued,
+     * is skipped, so repeating it never counts it in the profile twice.
+     */
+    @Transactional
+    public void indexChat(String username, String text) {
+        String pointId = ContentHash.pointId(username, "chat", text).toString();
+        if (outboxRepository.existsByOperationAndTargetAndAttemptsLessThan(VectorOutboxEvent.INDEX_CHAT, pointId, maxAttempts)
+                || vectorStore.existingIds(List.of(pointId)).contains(pointId)) {
+            return;
+        }
+        VectorOutboxEvent event = new VectorOutboxEvent(VectorOutboxEvent.INDEX_CHAT, pointId, username);
+        event.setPayload(text);
+        enqueue(event);
+    }
+
+    private void enqueue(VectorOutboxEvent event) {
+        outboxRepository.save(event);
+        Long id = event.getId();
+
+        // Workers must not see the event before it is committed
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    offer(id);
+                }
+            });
+        }
+        else {
+            offer(id);
+        }
+    }
+
+    private void offer(Long id) {
+        if (!running || !inFlight.add(id)) {
+            return;
+        }
+        if (!queue.offer(id)) {
+            // Still in the outbox; the poller queues it again once there is room
+            inFlight.remove(id);
+            overflow.increment();
+        }
+    }
+
+    // ------------ POLLER ----------------
+
+    private void pollSafely() {
+        try {
+            int room = queue.remainingCapacity();
+            if (room > 0) {
+                for (VectorOutboxEvent event : outboxRepository.findDue(VectorOutboxEvent.INDEX_OPERATIONS, maxAttempts,
+                        LocalDateTime.now(), PageRequest.of(0, room))) {
+                    offer(event.getId());
+                }
+            }
+            pending.set(outboxRepository.countByOperationInAndAttemptsLessThan(VectorOutboxEvent.INDEX_OPERATIONS, maxAttempts));
+        }
+        catch (Exception e) {
+            // A failing run must not cancel the schedule
+            System.err.println("Indexing poll failed: " + e.getMessage());
+        }
+    }
+
+    // ------------ EMBED STAGE ----------------
+
+    private void embedLoop() {
+        while (running) {
+            List<Long> ids;
+            try {
+                ids = nextBatch();
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+
+            try {
+                Batch batch = embed(ids);
+                if (batch != null) {
+                    handoff.put(batch);
+                }
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+            catch (Exception e) {
+                System.err.println("Indexing embed stage failed for " + ids.size() + " events: " + e.getMessage());
+                failQuietly(ids, e);
+            }
+        }
+    }
+
+    // Blocks for the first id, then takes what arrives within the linger time, up to batch-size
+    private List<Long> nextBatch() throws InterruptedException {
+        List<Long> ids = new ArrayList<>(batchSize);
+        ids.add(queue.take());
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        while (ids.size() < batchSize) {
+            queue.drainTo(ids, batchSize - ids.size());
+            long remaining = deadline - System.nanoTime();
+            if (ids.size() >= batchSize || remaining <= 0) {
+                break;
+            }
+            Long id = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (id == null) {
+                break;
+            }
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    private Batch embed(List<Long> ids) {
+        List<VectorOutboxEvent> events = outboxRepository.findAllById(ids);
+        Set<Long> found = new HashSet<>();
+        for (VectorOutboxEvent event : events) {
+            found.add(event.getId());
+        }
+        // Already applied (by another instance, or before a restart)
+        for (Long id : ids) {
+            if (!found.contains(id)) {
+                inFlight.remove(id);
+            }
+        }
+
+        Map<UUID, Post> posts = new HashMap<>();
+        List<UUID> postIds = events.stream()
+                .filter(IndexingPipeline::isPost)
+                .map(event -> UUID.fromString(event.getTarget()))
+                .toList();
+        if (!postIds.isEmpty()) {
+            for (Post post : postRepository.findByIds(postIds)) {
+                posts.put(post.getId(), post);
+            }
+        }
+
+        // Events that need no vector: post deleted since, or a second event for the same point.
+        // Events whose point is stored still need it, for the profile update
+        List<VectorOutboxEvent> done = new ArrayList<>();
+        Map<String, VectorOutboxEvent> byPointId = new LinkedHashMap<>();
+        for (VectorOutboxEvent event : events) {
+            boolean postGone = isPost(event) && !posts.containsKey(UUID.fromString(event.getTarget()));
+            // The same exchange sent twice in one batch is one point, counted once
+            if (postGone || byPointId.putIfAbsent(event.getTarget(), event) != null) {
+                done.add(event);
+            }
+        }
+        List<VectorOutboxEvent> toEmbed = new ArrayList<>(byPointId.values());
+        if (!done.isEmpty()) {
+            complete(done);
+            skipped.increment(done.size());
+        }
+        if (toEmbed.isEmpty()) {
+            return null;
+        }
+
+        List<String> texts = new ArrayList<>(toEmbed.size());
+        for (VectorOutboxEvent event : toEmbed) {
+            texts.add(isPost(event) ? posts.get(UUID.fromString(event.getTarget())).getContent() : event.getPayload());
+        }
+        EmbeddingBatchResult result = embeddingAPI.embedBatch(texts);
+
+        Map<String, String> errors = new HashMap<>();
+        for (EmbeddingBatchResult.ItemFailure failure : result.failures()) {
+            errors.put(toEmbed.get(failure.index()).getTarget(), failure.error());
+        }
+
+        List<Item> items = new ArrayList<>();
+        Map<UUID, Embedding> postVectors = new HashMap<>();
+        List<VectorOutboxEvent> failedEvents = new ArrayList<>();
+        for (int i = 0; i < toEmbed.size(); i++) {
+            VectorOutboxEvent event = toEmbed.get(i);
+            Embedding vector = result.get(i);
+            if (vector.isEmpty()) {
+                failedEvents.add(event);
+                continue;
+            }
+            boolean pointStored = event.getPointStoredAt() != null;
+            if (isPost(event)) {
+                Post post = posts.get(UUID.fromString(event.getTarget()));
+                if (!pointStored) {
+                    postVectors.put(post.getId(), vector);
+                }
+                items.add(new Item(event, "post", PostEmbeddingService.pointOf(post, event.getUsername(), vector), pointStored));
+            }
+            else {
+                items.add(new Item(event, "chat", VectorPoint.forContent(event.getUsername(), "chat", event.getPayload(), vector), pointStored));
+            }
+        }
+        if (!failedEvents.isEmpty()) {
+            fail(failedEvents, errors);
+        }
+        return items.isEmpty() ? null : new Batch(items, postVectors);
+    }
+
+    private static boolean isPost(VectorOutboxEvent event) {
+        return VectorOutboxEvent.INDEX_POST.equals(event.getOperation());
+    }
+
+    // ------------ UPSERT STAGE ----------------
+
+    private void upsertLoop() {
+        while (running) {
+            Batch batch;
+            try {
+                batch = handoff.take();
+            }
+            catch (InterruptedException e) {
+                return;
+            }
+
+            try {
+                upsert(batch);
+            }
+            catch (Exception e) {
+                System.err.println("Indexing upsert stage failed for " + batch.items().size() + " events: " + e.getMessage());
+                failQuietly(batch.items().stream().map(item -> item.event().getId()).toList(), e);
+            }
+        }
+    }
+
+    private void upsert(Batch batch) {
+        // Stored next to the post so feed ranking never has to re-embed it, even if the upsert fails
+        if (!batch.postVectors().isEmpty()) {
+            postEmbeddingService.storeAll(batch.postVectors());
+        }
+
+        List<Item> toWrite = batch.items().stream().filter(item -> !item.pointStored()).toList();
+        Map<String, String> errors = new HashMap<>();
+        if (!toWrite.isEmpty()) {
+            try {
+                UpsertResult upsert = vectorStore.upsertBatch(toWrite.stream().map(Item::point).toList());
+                for (UpsertResult.PointFailure failure : upsert.failures()) {
+                    errors.put(failure.pointId(), failure.error());
+                }
+            }
+            catch (Exception e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                for (Item item : toWrite) {
+                    errors.put(item.point().idString(), String.valueOf(cause.getMessage()));
+                }
+            }
+        }
+
+        // Recorded before the profile update, so if that fails the retry skips the upsert
+        List<VectorOutboxEvent> written = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (Item item : toWrite) {
+            if (!errors.containsKey(item.point().idString())) {
+                item.event().setPointStoredAt(now);
+                written.add(item.event());
+            }
+        }
+        if (!written.isEmpty()) {
+            outboxRepository.saveAll(written);
+        }
+
+        List<VectorOutboxEvent> failedEvents = new ArrayList<>();
+        Map<String, String> errorsByTarget = new HashMap<>();
+        // The profile only takes vectors whose point is stored
+        Map<String, Map<String, List<Item>>> profileItems = new HashMap<>();
+        for (Item item : batch.items()) {
+            String error = errors.get(item.point().idString());
+            if (error != null) {
+                failedEvents.add(item.event());
+                errorsByTarget.put(item.event().getTarget(), error);
+                continue;
+            }
+            profileItems.computeIfAbsent(item.event().getUsername(), username -> new HashMap<>())
+                    .computeIfAbsent(item.source(), source -> new ArrayList<>())
+                    .add(item);
+        }
+
+        // One transaction per user and source; a failed one fails only its own events
+        List<VectorOutboxEvent> done = new ArrayList<>();
+        for (Map.Entry<String, Map<String, List<Item>>> user : profileItems.entrySet()) {
+            boolean changed = false;
+            for (Map.Entry<String, List<Item>> source : user.getValue().entrySet()) {
+                List<Item> items = source.getValue();
+                try {
+                    userProfileService.addVectors(user.getKey(), source.getKey(), items.stream().map(item -> item.point().vector()).toList());
+                    items.forEach(item -> done.add(item.event()));
+                    changed = true;
+                }
+                catch (Exception e) {
+                    for (Item item : items) {
+                        failedEvents.add(item.event());
+                        errorsByTarget.put(item.event().getTarget(), "profile update failed: " + e.getMessage());
+                    }
+                }
+            }
+            if (changed) {
+                feedCacheService.markDirty(user.getKey());
+            }
+        }
+
+        if (!done.isEmpty()) {
+            complete(done);
+            indexed.increment(done.size());
+        }
+        if (!failedEvents.isEmpty()) {
+            fail(failedEvents, errorsByTarget);
+        }
+    }
+
+    // ------------ OUTCOMES ----------------
+
+    private void complete(Collection<VectorOutboxEvent> events) {
+        try {
+            outboxRepository.deleteAllInBatch(events);
+        }
+        finally {
+            release(events);
+        }
+    }
+
+    // Counts the attempt and schedules the retry; errors are keyed by event target
+    private void fail(Collection<VectorOutboxEvent> events, Map<String, String> errors) {
+        LocalDateTime now = LocalDateTime.now();
+        for (VectorOutboxEvent event : events) {
+            event.setAttempts(event.getAttempts() + 1);
+            event.setLastError(errors.getOrDefault(event.getTarget(), "no embedding returned"));
+            event.setNextAttemptAt(now.plusSeconds(backoffSeconds(event.getAttempts())));
+            System.err.println("Indexing " + event.getOperation() + " " + event.getTarget()
+                    + " failed (attempt " + event.getAttempts() + "): " + event.getLastError());
+        }
+        failed.increment(events.size());
+        try {
+            outboxRepository.saveAll(events);
+        }
+        finally {
+            release(events);
+        }
+    }
+
+    // After an unexpected error, so a bad event backs off like any other failure instead of looping
+    private void failQuietly(List<Long> ids, Exception error) {
+        try {
+            Map<String, String> errors = new HashMap<>();
+            List<VectorOutboxEvent> events = outboxRepository.findAllById(ids);
+            for (VectorOutboxEvent event : events) {
+                errors.put(event.getTarget(), String.valueOf(error.getMessage()));
+            }
+            fail(events, errors);
+        }
+        catch (Exception e) {
+            System.err.println("Could not record indexing failure: " + e.getMessage());
+        }
+        finally {
+            inFlight.removeAll(ids);
+        }
+    }
+
+    private long backoffSeconds(int attempts) {
+        long backoff = initialBackoffSeconds << Math.min(attempts - 1, 20);
+        return Math.min(backoff, maxBackoffSeconds);
+    }
+
+    private void release(Collection<VectorOutboxEvent> events) {
+        for (VectorOutboxEvent event : events) {
+            inFlight.remove(event.getId());
+        }
+    }
+
+    /**
+     * Queue depths and outbox backlog, for the admin dashboard.
+     */
+    public Map<String, Object> describe() {
+        long pendingEvents = outboxRepository.countByOperationInAndAttemptsLessThan(VectorOutboxEvent.INDEX_OPERATIONS, maxAttempts);
+        Map<String, Object> status = new HashMap<>();
+        status.put("running", running);
+        status.put("queued", queue.size());
+        status.put("awaitingUpsert", handoff.stream().mapToInt(batch -> batch.items().size()).sum());
+        status.put("pendingEvents", pendingEvents);
+        status.put("failedEvents", outboxRepository.countByOperationIn(VectorOutboxEvent.INDEX_OPERATIONS) - pendingEvents);
+        return status;
+    }
+}
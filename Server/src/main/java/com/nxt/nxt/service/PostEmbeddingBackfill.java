@@ -0,0 +1,50 @@
+package com.nxt.nxt.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stores vectors for posts written before post embeddings were persisted, then
+ * re-indexes legacy Qdrant post points under their post UUID.
+ * Runs once on startup in a background thread so it never delays boot.
+ */
+@Component
+public class PostEmbeddingBackfill implements CommandLineRunner {
+
+    private final PostEmbeddingService postEmbeddingService;
+
+    @Value("${posts.embedding.backfill.enabled:true}")
+    private boolean enabled;
+
+    @Value("${posts.embedding.backfill.batch-size:100}")
+    private int batchSize;
+
+    public PostEmbeddingBackfill(PostEmbeddingService postEmbeddingService) {
+        this.postEmbeddingService = postEmbeddingService;
+    }
+
+    @Override
+    public void run(String... args) {
+        if (!enabled) {
+            return;
+        }
+
+        Thread worker = new Thread(() -> {
+            try {
+                int stored = postEmbeddingService.backfill(batchSize);
+                System.out.println("Post embedding backfill finished, stored " + stored + " vectors");
+
+                int reindexed = postEmbeddingService.reindexLegacyPostPoints();
+                if (reindexed > 0) {
+                    System.out.println("Re-indexed " + reindexed + " posts in VectorDB by post id");
+                }
+            }
+            catch (Exception e) {
+                System.err.println("Post embedding backfill failed: " + e.getMessage());
+            }
+        }, "post-embedding-backfill");
+        worker.setDaemon(true);
+        worker.start();
+    }
+}
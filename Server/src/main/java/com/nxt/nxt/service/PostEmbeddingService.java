@@ -0,0 +1,226 @@
+package com.nxt.nxt.service;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.stereotype.Service;
+
+import com.nxt.nxt.entity.Post;
+import com.nxt.nxt.entity.PostEmbedding;
+import com.nxt.nxt.entity.Student;
+import com.nxt.nxt.repositories.PostEmbeddingRepository;
+import com.nxt.nxt.repositories.PostRepository;
+import com.nxt.nxt.repositories.StudentRepository;
+import com.nxt.nxt.util.Embedding;
+import com.nxt.nxt.util.EmbeddingAPI;
+import com.nxt.nxt.util.EmbeddingBatchResult;
+import com.nxt.nxt.util.EmbeddingCodec;
+import com.nxt.nxt.util.UpsertResult;
+import com.nxt.nxt.util.VectorStore;
+import com.nxt.nxt.util.VectorPoint;
+
+@Service
+public class PostEmbeddingService {
+
+    private final PostEmbeddingRepository postEmbeddingRepository;
+    private final PostRepository postRepository;
+    private final StudentRepository studentRepository;
+    private final EmbeddingAPI embeddingAPI;
+    private final VectorStore vectorStore;
+
+    private static final int REINDEX_PAGE_SIZE = 200;
+
+    public PostEmbeddingService(PostEmbeddingRepository postEmbeddingRepository, PostRepository postRepository,
+            StudentRepository studentRepository, EmbeddingAPI embeddingAPI, VectorStore vectorStore) {
+        this.postEmbeddingRepository = postEmbeddingRepository;
+        this.postRepository = postRepository;
+        this.studentRepository = studentRepository;
+        this.embeddingAPI = embeddingAPI;
+        this.vectorStore = vectorStore;
+    }
+
+    /**
+     * Embed the post content and persist the vector.
+     * Returns the vector, or Embedding.EMPTY if the embedding call failed.
+     */
+    public Embedding embedAndStore(Post post) {
+        Embedding vector = embeddingAPI.getTextEmbedding(post.getContent());
+        if (!vector.isEmpty()) {
+            store(post.getId(), vector);
+        }
+        return vector;
+    }
+
+    /**
+     * Embed many posts in as few API requests as possible and persist the vectors.
+     * Returns the vectors that were stored; posts whose embedding failed are left out.
+     */
+    public Map<UUID, Embedding> embedAndStoreAll(List<Post> posts) {
+        Map<UUID, Embedding> vectors = new HashMap<>();
+        if (posts.isEmpty()) {
+            return vectors;
+        }
+
+        EmbeddingBatchResult result = embeddingAPI.embedBatch(posts.stream().map(Post::getContent).toList());
+        for (int i = 0; i < posts.size(); i++) {
+            Embedding vector = result.get(i);
+            if (!vector.isEmpty()) {
+                vectors.put(posts.get(i).getId(), vector);
+            }
+        }
+        storeAll(vectors);
+        return vectors;
+    }
+
+    public void store(UUID postId, Embedding vector) {
+        postEmbeddingRepository.save(
+                new PostEmbedding(postId, EmbeddingCodec.encode(vector), vector.dimension(), embeddingAPI.model()));
+    }
+
+    public void storeAll(Map<UUID, Embedding> vectors) {
+        List<PostEmbedding> rows = new ArrayList<>(vectors.size());
+        for (Map.Entry<UUID, Embedding> entry : vectors.entrySet()) {
+            Embedding vector = entry.getValue();
+            rows.add(new PostEmbedding(entry.getKey(), EmbeddingCodec.encode(vector), vector.dimension(), embeddingAPI.model()));
+        }
+        postEmbeddingRepository.saveAll(rows);
+    }
+
+    /**
+     * Load stored vectors for the given posts in one query.
+     * Posts that have no stored vector yet are embedded and stored on the way.
+     */
+    public Map<UUID, Embedding> getEmbeddings(Collection<Post> posts) {
+        Map<UUID, Embedding> vectors = new HashMap<>();
+        if (posts.isEmpty()) {
+            return vectors;
+        }
+
+        List<UUID> ids = posts.stream().map(Post::getId).toList();
+        for (PostEmbedding embedding : postEmbeddingRepository.findAllById(ids)) {
+            vectors.put(embedding.getPostId(), EmbeddingCodec.decode(embedding.getVector()));
+        }
+
+        List<Post> missing = new ArrayList<>();
+        for (Post post : posts) {
+            if (!vectors.containsKey(post.getId())) {
+                missing.add(post);
+            }
+        }
+        vectors.putAll(embedAndStoreAll(missing));
+
+        return vectors;
+    }
+
+    /**
+     * Write the post to Qdrant under its own UUID so search hits resolve to the posts row by id.
+     * Failures are logged and listed in the result.
+     */
+    public UpsertResult indexPost(Post post, String username, Embedding vector) {
+        UpsertResult upsert = vectorStore.upsertBatch(List.of(pointOf(post, username, vector)));
+        for (UpsertResult.PointFailure failure : upsert.failures()) {
+            System.out.println("Error during post upsert of point " + failure.pointId() + ": " + failure.error());
+        }
+        return upsert;
+    }
+
+    /**
+     * The post's point: keyed by the post UUID, with its owner, content and creation time.
+     */
+    public static VectorPoint pointOf(Post post, String username, Embedding vector) {
+        return VectorPoint.post(post.getId(), vector, username, post.getContent(), epochSeconds(post));
+    }
+
+    private static long epochSeconds(Post post) {
+        return post.getCreatedAt().atZone(ZoneId.systemDefault()).toEpochSecond();
+    }
+
+    /**
+     * Re-index every post by UUID while Qdrant still holds post points from before post ids and
+     * creation times were stored, then drop the points that are not keyed by post id.
+     * Uses stored vectors, so only posts without one hit the embedding API.
+     */
+    public int reindexLegacyPostPoints() {
+        if (!vectorStore.hasLegacyPostPoints()) {
+            return 0;
+        }
+
+        Map<UUID, String> usernames = new HashMap<>();
+        int indexed = 0;
+        boolean complete = true;
+
+        // Walk all posts newest first, one keyset page at a time
+        List<Post> posts = postRepository.findPage(null, null, REINDEX_PAGE_SIZE);
+        while (!posts.isEmpty()) {
+            Map<UUID, Embedding> vectors = getEmbeddings(posts);
+            List<VectorPoint> points = new ArrayList<>();
+
+            for (Post post : posts) {
+                Embedding vector = vectors.get(post.getId());
+                if (vector == null) {
+                    continue;
+                }
+
+                String username = usernames.computeIfAbsent(post.getStudentId(),
+                        studentId -> studentRepository.findById(studentId).map(Student::getUsername).orElse(null));
+                if (username == null) {
+                    continue;
+                }
+
+                points.add(pointOf(post, username, vector));
+            }
+
+            UpsertResult upsert = vectorStore.upsertBatch(points);
+            indexed += upsert.upserted();
+            complete &= upsert.isComplete();
+            for (UpsertResult.PointFailure failure : upsert.failures()) {
+                System.err.println("Re-index of post " + failure.pointId() + " failed: " + failure.error());
+            }
+
+            Post last = posts.get(posts.size() - 1);
+            posts = posts.size() < REINDEX_PAGE_SIZE
+                    ? List.of()
+                    : postRepository.findPage(last.getCreatedAt(), last.getId(), REINDEX_PAGE_SIZE);
+        }
+
+        // Keep the old points until every post has a replacement, so search never loses a post
+        if (complete) {
+            vectorStore.deleteLegacyPostPoints();
+        }
+        return indexed;
+    }
+
+    public void deleteByPostId(UUID postId) {
+        postEmbeddingRepository.deleteById(postId);
+    }
+
+    /**
+     * Embed existing posts that have no stored vector, newest first.
+     * Stops when a whole batch fails so an unreachable API does not loop forever.
+     */
+    public int backfill(int batchSize) {
+        int stored = 0;
+
+        while (true) {
+            List<Post> batch = postRepository.findWithoutEmbedding(batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            int storedInBatch = embedAndStoreAll(batch).size();
+
+            stored += storedInBatch;
+            if (storedInBatch == 0) {
+                System.err.println("Post embedding backfill stopped: no post in the last batch could be embedded");
+                break;
+            }
+        }
+
+        return stored;
+    }
+}
@@ -0,0 +1,228 @@
+package com.nxt.nxt.service;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.nxt.nxt.entity.UserProfileVector;
+import com.nxt.nxt.repositories.StudentRepository;
+import com.nxt.nxt.repositories.UserProfileVectorRepository;
+import com.nxt.nxt.util.Embedding;
+import com.nxt.nxt.util.EmbeddingCodec;
+import com.nxt.nxt.util.ScrolledPoint;
+import com.nxt.nxt.util.VectorStore;
+
+/**
+ * Keeps a persisted interest vector per user: a running sum and count for each
+ * source, updated in O(dim) whenever a new vector is written to VectorDB.
+ */
+@Service
+public class UserProfileService {
+
+    public static final List<String> SOURCES = List.of("post", "pdfdata", "chat");
+
+    private static final int SCROLL_PAGE_SIZE = 256;
+
+    private final UserProfileVectorRepository profileRepository;
+    private final StudentRepository studentRepository;
+    private final VectorStore vectorStore;
+    private final TransactionTemplate transactionTemplate;
+
+    public UserProfileService(UserProfileVectorRepository profileRepository, StudentRepository studentRepository,
+            VectorStore vectorStore, TransactionTemplate transactionTemplate) {
+        this.profileRepository = profileRepository;
+        this.studentRepository = studentRepository;
+        this.vectorStore = vectorStore;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Add one vector the user produced from the given source.
+     */
+    @Transactional
+    public void addVector(String username, String source, Embedding vector) {
+        if (vector == null || vector.isEmpty()) {
+            return;
+        }
+        double[] sum = new double[vector.dimension()];
+        for (int i = 0; i < sum.length; i++) {
+            sum[i] = vector.get(i);
+        }
+        addSum(username, source, sum, 1);
+    }
+
+    /**
+     * Add several vectors from the same source in a single row update (e.g. all pages of a PDF).
+     */
+    @Transactional
+    public void addVectors(String username, String source, List<Embedding> vectors) {
+        double[] sum = null;
+        long count = 0;
+
+        for (Embedding vector : vectors) {
+            if (vector == null || vector.isEmpty()) {
+                continue;
+            }
+            if (sum == null) {
+                sum = new double[vector.dimension()];
+            }
+            if (vector.dimension() != sum.length) {
+                continue;
+            }
+            for (int i = 0; i < sum.length; i++) {
+                sum[i] += vector.get(i);
+            }
+            count++;
+        }
+
+        if (sum != null && count > 0) {
+            addSum(username, source, sum, count);
+        }
+    }
+
+    /**
+     * Average of every vector the user has produced across all sources.
+     * Users without a stored profile are rebuilt from Qdrant once; a user with no vectors at all then
+     * has empty rows (count 0), so later calls do not scroll again. Returns Embedding.EMPTY if there
+     * is nothing to average.
+     */
+    public Embedding getInterestVector(String username) {
+        List<UserProfileVector> rows = profileRepository.findByUsername(username);
+
+        if (rows.isEmpty()) {
+            rebuild(username);
+            rows = profileRepository.findByUsername(username);
+        }
+
+        double[] sum = null;
+        long count = 0;
+
+        for (UserProfileVector row : rows) {
+            if (row.getVectorCount() == null || row.getVectorCount() == 0) {
+                continue;
+            }
+            Embedding rowSum = EmbeddingCodec.decode(row.getVectorSum());
+            if (sum == null) {
+                sum = new double[rowSum.dimension()];
+            }
+            if (rowSum.dimension() != sum.length) {
+                continue;
+            }
+            for (int i = 0; i < sum.length; i++) {
+                sum[i] += rowSum.get(i);
+            }
+            count += row.getVectorCount();
+        }
+
+        if (sum == null || count == 0) {
+            return Embedding.EMPTY;
+        }
+
+        float[] average = new float[sum.length];
+        for (int i = 0; i < sum.length; i++) {
+            average[i] = (float) (sum[i] / count);
+        }
+        return Embedding.of(average);
+    }
+
+    /**
+     * Recompute a user's profile from the vectors already stored in Qdrant, without calling the embedding API.
+     * Sources that fail to scroll keep their previous row.
+     */
+    public boolean rebuild(String username) {
+        boolean complete = true;
+        for (String source : SOURCES) {
+            complete &= Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                if (rebuildSource(username, source)) {
+                    return true;
+                }
+                status.setRollbackOnly();
+                return false;
+            }));
+        }
+        return complete;
+    }
+
+    // Holds the row lock from before the scroll until the new sum is committed, so an addSum that
+    // arrives meanwhile waits and adds on top instead of being overwritten. (A vector whose point the
+    // scroll already saw but whose addSum was still waiting is then counted twice, until the next rebuild.)
+    private boolean rebuildSource(String username, String source) {
+        profileRepository.insertIfAbsent(username, source);
+        UserProfileVector row = profileRepository.findForUpdate(username, source).orElseThrow();
+
+        double[][] sum = new double[1][];
+        long[] count = new long[1];
+
+        // Vectors only: payload text is not needed and can be large (PDF pages)
+        try (Stream<ScrolledPoint> points = vectorStore.scroll(VectorStore.sourceFilter(username, source), SCROLL_PAGE_SIZE, true, false)) {
+            points.forEach(point -> {
+                float[] vector = point.vector();
+                if (vector == null) {
+                    return;
+                }
+                if (sum[0] == null) {
+                    sum[0] = new double[vector.length];
+                }
+                if (vector.length != sum[0].length) {
+                    return;
+                }
+                for (int i = 0; i < vector.length; i++) {
+                    sum[0][i] += vector[i];
+                }
+                count[0]++;
+            });
+        }
+        catch (Exception e) {
+            System.err.println("Error rebuilding " + source + " profile for user " + username + ": " + e.getMessage());
+            return false;
+        }
+
+        // An empty row rather than none marks the source as rebuilt
+        row.setVectorSum(EmbeddingCodec.encode(count[0] == 0 ? new double[0] : sum[0]));
+        row.setVectorCount(count[0]);
+        profileRepository.save(row);
+        return true;
+    }
+
+    /**
+     * Rebuild every student's profile. Returns how many were rebuilt completely.
+     */
+    public int rebuildAll() {
+        int rebuilt = 0;
+        for (String username : studentRepository.findAllUsernames()) {
+            if (rebuild(username)) {
+                rebuilt++;
+            }
+        }
+        return rebuilt;
+    }
+
+    // Runs inside the caller's transaction; the row lock serialises writers for the same user and source
+    private void addSum(String username, String source, double[] sum, long count) {
+        profileRepository.insertIfAbsent(username, source);
+        UserProfileVector row = profileRepository.findForUpdate(username, source).orElseThrow();
+
+        Embedding current = EmbeddingCodec.decode(row.getVectorSum());
+        if (row.getVectorCount() == 0) {
+            // Empty row, left by rebuild or just inserted
+            current = Embedding.of(new float[sum.length]);
+        }
+        else if (current.dimension() != sum.length) {
+            System.err.println("Profile dimension mismatch for user " + username + " (" + source + "), resetting row");
+            current = Embedding.of(new float[sum.length]);
+            row.setVectorCount(0L);
+        }
+
+        double[] updated = new double[sum.length];
+        for (int i = 0; i < sum.length; i++) {
+            updated[i] = current.get(i) + sum[i];
+        }
+
+        row.setVectorSum(EmbeddingCodec.encode(updated));
+        row.setVectorCount(row.getVectorCount() + count);
+        profileRepository.save(row);
+    }
+}
@@ -0,0 +1,440 @@
+package com.nxt.nxt.service;
+
+import static io.qdrant.client.ConditionFactory.matchKeyword;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.nxt.nxt.dto.VectorReconcileReport;
+import com.nxt.nxt.entity.PdfPagePoint;
+import com.nxt.nxt.entity.Post;
+import com.nxt.nxt.entity.Student;
+import com.nxt.nxt.entity.VectorOutboxEvent;
+import com.nxt.nxt.repositories.PdfPagePointRepository;
+import com.nxt.nxt.repositories.PostRepository;
+import com.nxt.nxt.repositories.StudentRepository;
+import com.nxt.nxt.repositories.UserProfileVectorRepository;
+import com.nxt.nxt.repositories.UserRepository;
+import com.nxt.nxt.repositories.VectorOutboxRepository;
+import com.nxt.nxt.util.Embedding;
+import com.nxt.nxt.util.ScrolledPoint;
+import com.nxt.nxt.util.UpsertResult;
+import com.nxt.nxt.util.VectorStore;
+
+import io.qdrant.client.grpc.Points.Filter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Keeps the vector store in step with Postgres when posts are edited or deleted and when users
+ * are deleted.
+ *
+ * The row change and a vector_outbox event are committed in one transaction; a background relay
+ * then applies the events to the vector store in order, retrying failed ones up to
+ * vector.sync.max-attempts times, and rebuilds the owner's interest profile. Every operation is
+ * idempotent, so an event applied twice (crash before its row is deleted) does no harm.
+ *
+ * A periodic reconciliation catches whatever the outbox never saw (rows deleted by hand, PDFs,
+ * which have no delete path of their own, points written by older versions): it scrolls every
+ * point and deletes those whose user, post or PDF no longer exists.
+ */
+@Service
+public class VectorSyncService {
+
+    private static final int SCROLL_PAGE_SIZE = 256;
+
+    private final VectorOutboxRepository outboxRepository;
+    private final PdfPagePointRepository pagePointRepository;
+    private final PostRepository postRepository;
+    private final StudentRepository studentRepository;
+    private final UserRepository userRepository;
+    private final UserProfileVectorRepository profileRepository;
+    private final PostEmbeddingService postEmbeddingService;
+    private final UserProfileService userProfileService;
+    private final FeedCacheService feedCacheService;
+    private final VectorStore vectorStore;
+
+    @Value("${vector.sync.enabled:true}")
+    private boolean enabled;
+
+    @Value("${vector.sync.interval-seconds:5}")
+    private long intervalSeconds;
+
+    @Value("${vector.sync.batch-size:50}")
+    private int batchSize;
+
+    @Value("${vector.sync.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${vector.reconcile.interval-minutes:360}")
+    private long reconcileIntervalMinutes;
+
+    @Value("${vector.reconcile.batch-size:256}")
+    private int reconcileBatchSize;
+
+    private ScheduledExecutorService scheduler;
+    private volatile VectorReconcileReport lastReconcile;
+
+    public VectorSyncService(VectorOutboxRepository outboxRepository, PdfPagePointRepository pagePointRepository,
+            PostRepository postRepository, StudentRepository studentRepository,
+            UserRepository userRepository, UserProfileVectorRepository profileRepository,
+            PostEmbeddingService postEmbeddingService, UserProfileService userProfileService,
+            FeedCacheService feedCacheService, VectorStore vectorStore) {
+        this.outboxRepository = outboxRepository;
+        this.pagePointRepository = pagePointRepository;
+        this.postRepository = postRepository;
+        this.studentRepository = studentRepository;
+        this.userRepository = userRepository;
+        this.profileRepository = profileRepository;
+        this.postEmbeddingService = postEmbeddingService;
+        this.userProfileService = userProfileService;
+        this.feedCacheService = feedCacheService;
+        this.vectorStore = vectorStore;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "vector-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::relaySafely, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(this::reconcileSafely,
+                reconcileIntervalMinutes, reconcileIntervalMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    // ------------ WRITE SIDE: row change and outbox event in one transaction ----------------
+
+    /**
+     * Queue a re-index of the post's vector after its content changed. The stored embedding
+     * must already be updated (PostEmbeddingService.embedAndStore).
+     */
+    @Transactional
+    public void postUpdated(Post post) {
+        outboxRepository.save(new VectorOutboxEvent(VectorOutboxEvent.REINDEX_POST, post.getId().toString(), usernameOf(post)));
+    }
+
+    /**
+     * Delete the post row and its stored embedding, and queue the deletion of its vector.
+     */
+    @Transactional
+    public void deletePost(Post post) {
+        String username = usernameOf(post);
+        postRepository.deleteById(post.getId());
+        postEmbeddingService.deleteByPostId(post.getId());
+        outboxRepository.save(new VectorOutboxEvent(VectorOutboxEvent.DELETE_POST, post.getId().toString(), username));
+    }
+
+    /**
+     * Queue the deletion of every vector of the user. Call inside the transaction that deletes the user.
+     */
+    @Transactional
+    public void userDeleted(String username) {
+        outboxRepository.save(new VectorOutboxEvent(VectorOutboxEvent.DELETE_USER, username, username));
+    }
+
+    /**
+     * Record which page points belong to the PDF. Must run before the points are written, so
+     * reconciliation never sees a page point without its link.
+     */
+    public void linkPdfPages(Long pdfId, Collection<String> pointIds) {
+        List<PdfPagePoint> links = new ArrayList<>();
+        for (String pointId : pointIds) {
+            links.add(new PdfPagePoint(pdfId, pointId));
+        }
+        pagePointRepository.saveAll(links);
+    }
+
+    // ------------ RELAY ----------------
+
+    /**
+     * Apply pending outbox events, oldest first. Returns how many were applied.
+     * Index events are left to IndexingPipeline.
+     */
+    public synchronized int relay() {
+        int applied = 0;
+
+        while (true) {
+            List<VectorOutboxEvent> events = outboxRepository.findByOperationInAndAttemptsLessThanOrderByIdAsc(
+                    VectorOutboxEvent.SYNC_OPERATIONS, maxAttempts, PageRequest.of(0, batchSize));
+            if (events.isEmpty()) {
+                return applied;
+            }
+
+            int appliedInBatch = 0;
+            for (VectorOutboxEvent event : events) {
+                try {
+                    apply(event);
+                    outboxRepository.delete(event);
+                    appliedInBatch++;
+                }
+                catch (Exception e) {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    event.setAttempts(event.getAttempts() + 1);
+                    event.setLastError(cause.getMessage());
+                    outboxRepository.save(event);
+                    System.err.println("Vector sync " + event.getOperation() + " " + event.getTarget()
+                            + " failed (attempt " + event.getAttempts() + "): " + cause.getMessage());
+                }
+            }
+
+            applied += appliedInBatch;
+            // A batch with no progress means the store is unreachable; wait for the next run
+            if (appliedInBatch == 0) {
+                return applied;
+            }
+        }
+    }
+
+    private void apply(VectorOutboxEvent event) {
+        switch (event.getOperation()) {
+            case VectorOutboxEvent.REINDEX_POST -> reindexPost(UUID.fromString(event.getTarget()));
+            case VectorOutboxEvent.DELETE_POST -> deletePoints(List.of(event.getTarget()));
+            case VectorOutboxEvent.DELETE_USER -> {
+                Filter user = Filter.newBuilder().addMust(matchKeyword("username", event.getTarget())).build();
+                vectorStore.deleteAsync(user, vectorStore.defaultDeadline()).join();
+                profileRepository.deleteAll(profileRepository.findByUsername(event.getTarget()));
+                return;
+            }
+            default -> throw new IllegalStateException("Unknown vector outbox operation: " + event.getOperation());
+        }
+
+        // The profile sums still hold the old vectors; recompute them from what is stored now
+        if (event.getUsername() != null) {
+            userProfileService.rebuild(event.getUsername());
+            feedCacheService.markDirty(event.getUsername());
+        }
+    }
+
+    private void reindexPost(UUID postId) {
+        Optional<Post> post = postRepository.findById(postId);
+        if (post.isEmpty()) {
+            // Deleted since; a DELETE_POST event follows, deleting now is just as correct
+            deletePoints(List.of(postId.toString()));
+            return;
+        }
+
+        Embedding vector = postEmbeddingService.getEmbeddings(List.of(post.get())).get(postId);
+        if (vector == null) {
+            throw new IllegalStateException("post could not be embedded");
+        }
+
+        String username = usernameOf(post.get());
+        if (username == null) {
+            throw new IllegalStateException("post author not found");
+        }
+
+        UpsertResult upsert = postEmbeddingService.indexPost(post.get(), username, vector);
+        if (!upsert.isComplete()) {
+            throw new IllegalStateException(upsert.failures().get(0).error());
+        }
+    }
+
+    private void deletePoints(List<String> pointIds) {
+        if (!pointIds.isEmpty()) {
+            vectorStore.deleteAsync(pointIds, vectorStore.defaultDeadline()).join();
+        }
+    }
+
+    private String usernameOf(Post post) {
+        return studentRepository.findById(post.getStudentId()).map(Student::getUsername).orElse(null);
+    }
+
+    private void relaySafely() {
+        try {
+            relay();
+        }
+        catch (Exception e) {
+            System.err.println("Vector sync relay failed: " + e.getMessage());
+        }
+    }
+
+    // ------------ RECONCILIATION ----------------
+
+    // Scans of one reconciliation; the embedded store ends open scrolls when it compacts
+    private static final int MAX_RECONCILE_SCANS = 3;
+
+    // What reconciliation needs of a point; the payload text is dropped as soon as the page is read
+    private record PointRef(String id, String username, String postId, boolean contentAddressedPdfPage) {}
+
+    // Running totals of one reconciliation
+    private static final class ReconcileTally {
+        long scanned;
+        int orphanedUsers;
+        int orphanedPosts;
+        int orphanedPages;
+        int removed;
+        int failed;
+    }
+
+    /**
+     * Delete points whose user, post or (content-addressed) PDF page has no row in Postgres anymore.
+     * Points are checked and deleted vector.reconcile.batch-size at a time, so memory does not grow
+     * with the collection. Each batch is read before its ids are looked up, so a row and point
+     * created during the scan are never mistaken for an orphan: rows are always written before their points.
+     * Legacy post points without a post_id and PDF pages from before page links existed are left alone.
+     */
+    public synchronized VectorReconcileReport reconcile() {
+        long started = System.currentTimeMillis();
+        ReconcileTally tally = new ReconcileTally();
+
+        for (int scan = 1; ; scan++) {
+            try (Stream<ScrolledPoint> scrolled = vectorStore.scroll(Filter.getDefaultInstance(), SCROLL_PAGE_SIZE, false)) {
+                Iterator<ScrolledPoint> points = scrolled.iterator();
+                List<PointRef> batch = new ArrayList<>(reconcileBatchSize);
+                while (points.hasNext()) {
+                    batch.add(refOf(points.next()));
+                    if (batch.size() == reconcileBatchSize || !points.hasNext()) {
+                        reconcileBatch(batch, tally);
+                        batch.clear();
+                    }
+                }
+                break;
+            }
+            catch (IllegalStateException e) {
+                // Orphans deleted so far stay deleted, so scanning again from the start is safe
+                if (scan == MAX_RECONCILE_SCANS) {
+                    throw e;
+                }
+                System.out.println("Vector reconciliation scan interrupted, starting over: " + e.getMessage());
+            }
+        }
+
+        VectorReconcileReport report = new VectorReconcileReport(LocalDateTime.now(), tally.scanned,
+                tally.orphanedUsers, tally.orphanedPosts, tally.orphanedPages, tally.removed, tally.failed,
+                System.currentTimeMillis() - started);
+        lastReconcile = report;
+
+        System.out.println("Vector reconciliation scanned " + report.scannedPoints() + " points, removed "
+                + report.removed() + " of " + report.orphans() + " orphans (users " + report.orphanedUserPoints()
+                + ", posts " + report.orphanedPostPoints() + ", PDF pages " + report.orphanedPdfPagePoints() + ")");
+        return report;
+    }
+
+    private static PointRef refOf(ScrolledPoint point) {
+        Map<String, Object> payload = point.payload();
+        return new PointRef(
+                point.id(),
+                stringOrNull(payload.get("username")),
+                "TRUE".equals(payload.get("post")) ? stringOrNull(payload.get("post_id")) : null,
+                "TRUE".equals(payload.get("pdfdata")) && payload.containsKey("content_hash"));
+    }
+
+    private void reconcileBatch(List<PointRef> batch, ReconcileTally tally) {
+        Set<String> usernames = new HashSet<>();
+        Set<UUID> postIds = new HashSet<>();
+        List<String> pageIds = new ArrayList<>();
+        for (PointRef point : batch) {
+            if (point.username() != null) {
+                usernames.add(point.username());
+            }
+            if (point.postId() != null) {
+                try {
+                    postIds.add(UUID.fromString(point.postId()));
+                }
+                catch (IllegalArgumentException e) {
+                    // Not a post id at all; no row can match it
+                }
+            }
+            if (point.contentAddressedPdfPage()) {
+                pageIds.add(point.id());
+            }
+        }
+
+        // Accounts live in users, profiles in students; a name in either is still live
+        Set<String> liveUsers = new HashSet<>(userRepository.findExistingUsernames(usernames));
+        usernames.removeAll(liveUsers);
+        liveUsers.addAll(studentRepository.findExistingUsernames(usernames));
+        Set<String> livePosts = new HashSet<>();
+        for (UUID id : postRepository.findExistingIds(postIds)) {
+            livePosts.add(id.toString());
+        }
+        Set<String> linkedPages = pageIds.isEmpty() ? Set.of() : new HashSet<>(pagePointRepository.findLinkedPointIds(pageIds));
+
+        List<String> orphans = new ArrayList<>();
+        for (PointRef point : batch) {
+            if (point.username() != null && !liveUsers.contains(point.username())) {
+                tally.orphanedUsers++;
+            }
+            else if (point.postId() != null && !livePosts.contains(point.postId())) {
+                tally.orphanedPosts++;
+            }
+            else if (point.contentAddressedPdfPage() && !linkedPages.contains(point.id())) {
+                tally.orphanedPages++;
+            }
+            else {
+                continue;
+            }
+            orphans.add(point.id());
+        }
+        tally.scanned += batch.size();
+
+        if (orphans.isEmpty()) {
+            return;
+        }
+        try {
+            vectorStore.deleteAsync(orphans, vectorStore.defaultDeadline()).join();
+            tally.removed += orphans.size();
+        }
+        catch (Exception e) {
+            tally.failed += orphans.size();
+            System.err.println("Vector reconciliation could not delete " + orphans.size() + " orphans: " + e.getMessage());
+        }
+    }
+
+    private void reconcileSafely() {
+        try {
+            reconcile();
+        }
+        catch (Exception e) {
+            System.err.println("Vector reconciliation failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Outbox backlog and the last reconciliation, for the admin dashboard.
+     */
+    public Map<String, Object> describe() {
+        Map<String, Object> status = new HashMap<>();
+        long pending = outboxRepository.countByOperationInAndAttemptsLessThan(VectorOutboxEvent.SYNC_OPERATIONS, maxAttempts);
+        status.put("pendingEvents", pending);
+        status.put("failedEvents", outboxRepository.countByOperationIn(VectorOutboxEvent.SYNC_OPERATIONS) - pending);
+        status.put("lastReconcile", lastReconcile);
+        return status;
+    }
+
+    private static String stringOrNull(Object value) {
+        return value != null ? value.toString() : null;
+    }
+}
@@ -0,0 +1,80 @@
+package com.nxt.nxt.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.cohere.api.Cohere;
+import com.cohere.api.resources.v2.requests.V2EmbedRequest;
+import com.cohere.api.types.EmbedByTypeResponse;
+import com.cohere.api.types.EmbedInputType;
+import com.cohere.api.types.EmbeddingType;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Embeddings from Cohere's V2 embed endpoint (embed-english-v3.0, 1024 dimensions).
+ */
+@Component
+@ConditionalOnProperty(name = "embedding.provider", havingValue = "cohere", matchIfMissing = true)
+public class CohereEmbeddingProvider implements EmbeddingProvider {
+
+    public static final String MODEL = "embed-english-v3.0";
+
+    /**
+     * Most texts the V2 embed endpoint accepts in one request.
+     */
+    public static final int MAX_BATCH_SIZE = 96;
+
+    @Value("${cohere.api.key}")
+    private String cohereApiKey;
+
+    // One client for the application, so its HTTP connection pool is reused between calls
+    private Cohere cohere;
+
+    @PostConstruct
+    void init() {
+        cohere = Cohere.builder()
+                .token(cohereApiKey)
+                .clientName("Nexara")
+                .build();
+    }
+
+    @Override
+    public String model() {
+        return MODEL;
+    }
+
+    @Override
+    public int maxBatchSize() {
+        return MAX_BATCH_SIZE;
+    }
+
+    // One V2 embed request; the embeddings come back in the order of the texts
+    @Override
+    public List<Embedding> embed(List<String> texts) {
+        V2EmbedRequest request = V2EmbedRequest.builder()
+                .model(MODEL)
+                .inputType(EmbedInputType.SEARCH_DOCUMENT)
+                .texts(texts)
+                .embeddingTypes(List.of(EmbeddingType.FLOAT))
+                .build();
+
+        EmbedByTypeResponse response = cohere.v2().embed(request);
+
+        if (response == null || response.getEmbeddings() == null || response.getEmbeddings().getFloat().isEmpty()) {
+            return List.of();
+        }
+
+        // The SDK hands back boxed Doubles; convert once here so nothing downstream holds them
+        List<List<Double>> vectors = response.getEmbeddings().getFloat().get();
+        List<Embedding> embeddings = new ArrayList<>(vectors.size());
+        for (List<Double> vector : vectors) {
+            embeddings.add(Embedding.of(vector));
+        }
+        return embeddings;
+    }
+}
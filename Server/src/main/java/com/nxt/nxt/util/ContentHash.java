@@ -0,0 +1,45 @@
+package com.nxt.nxt.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * SHA-256 content hashes, and the point ids derived from them so the same content from the
+ * same user and source always lands on the same vector point.
+ */
+public final class ContentHash {
+
+    private ContentHash() {}
+
+    public static String sha256Hex(String text) {
+        return HexFormat.of().formatHex(sha256(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Deterministic point id for (username, source, text): the first 128 bits of
+     * SHA-256(username NUL source NUL text) as a version 8 (custom) UUID.
+     */
+    public static UUID pointId(String username, String source, String text) {
+        byte[] hash = sha256((username + '\0' + source + '\0' + text).getBytes(StandardCharsets.UTF_8));
+
+        hash[6] = (byte) ((hash[6] & 0x0f) | 0x80); // version 8
+        hash[8] = (byte) ((hash[8] & 0x3f) | 0x80); // IETF variant
+
+        ByteBuffer buffer = ByteBuffer.wrap(hash);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    private static byte[] sha256(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(bytes);
+        }
+        catch (NoSuchAlgorithmException e) {
+            // Every JRE must provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
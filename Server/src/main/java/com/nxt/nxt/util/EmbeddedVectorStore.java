@@ -0,0 +1,846 @@
+package com.nxt.nxt.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import io.qdrant.client.grpc.Points.Filter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * In-process VectorStore (vector.store=embedded) for small deployments, load tests and
+ * benchmarks that should run without Qdrant or a network.
+ *
+ * Vectors live unit-length in off-heap buffers of up to 1 GB each (OffHeapVectors); payloads and ids
+ * stay on the heap. A search whose filter leaves at most vector.embedded.hnsw.threshold candidates
+ * (typically one user's chats or PDFs) is an exact brute-force scan with the SIMD kernel. Larger
+ * candidate sets use an HNSW graph that a background thread builds once the store passes the
+ * threshold and keeps up to date; points not yet in the graph are scanned exactly.
+ * With vector.embedded.binary-prefilter, an exact scan first ranks the candidates by the Hamming
+ * distance of their binary codes (VectorQuantization) and only rescores the closest
+ * k * vector.embedded.binary-oversampling with the float vectors.
+ * Filters are evaluated with Qdrant's semantics (PayloadFilter).
+ *
+ * Deletes leave tombstones that the background thread compacts away. With
+ * vector.embedded.snapshot.path set, the store is written to a snapshot file (vectors through
+ * memory-mapped windows of up to 1 GB) periodically and on shutdown, and loaded from it on startup;
+ * the graph is rebuilt after loading. Off-heap memory in total is bounded by -XX:MaxDirectMemorySize
+ * (defaults to the max heap size); a point that does not fit is reported as a failed upsert.
+ */
+@Component
+@ConditionalOnProperty(name = "vector.store", havingValue = "embedded")
+public class EmbeddedVectorStore implements VectorStore {
+
+    private static final int SNAPSHOT_MAGIC = 0x4E585653; // "NXVS"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int SNAPSHOT_HEADER_BYTES = 5 * Integer.BYTES;
+    // One mapping is capped at 2 GB; vectors are written and read through windows of this size
+    private static final long SNAPSHOT_WINDOW_BYTES = 1L << 30;
+
+    // Slots added to the graph per write-lock hold, so searches are not blocked for long
+    private static final int INDEX_BATCH = 256;
+
+    @Value("${vector.embedded.dimension:1024}")
+    private int dimension;
+
+    @Value("${vector.embedded.initial-capacity:4096}")
+    private int initialCapacity;
+
+    @Value("${vector.embedded.hnsw.threshold:20000}")
+    private int hnswThreshold;
+
+    @Value("${vector.embedded.hnsw.m:16}")
+    private int hnswM;
+
+    @Value("${vector.embedded.hnsw.ef-construct:100}")
+    private int hnswEfConstruct;
+
+    @Value("${vector.embedded.hnsw.ef-search:128}")
+    private int hnswEfSearch;
+
+    @Value("${vector.embedded.binary-prefilter:false}")
+    private boolean binaryPrefilter;
+
+    @Value("${vector.embedded.binary-oversampling:8}")
+    private int binaryOversampling;
+
+    @Value("${vector.embedded.snapshot.path:}")
+    private String snapshotPath;
+
+    @Value("${vector.embedded.snapshot.interval-seconds:300}")
+    private long snapshotIntervalSeconds;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Everything below is guarded by lock; index i of each list describes slot i
+    private OffHeapVectors vectors;
+    private final List<String> ids = new ArrayList<>();
+    private final List<Map<String, Object>> payloads = new ArrayList<>();
+    private final BitSet deleted = new BitSet();
+    private int deletedCount;
+    private final Map<String, Integer> slotsById = new HashMap<>();
+    private final Map<String, IntList> slotsByUser = new HashMap<>();
+    private HnswIndex graph;
+    // Bumped by compaction, which renumbers slots under open scrolls
+    private long generation;
+    private long modifications;
+
+    private long snapshotModifications;
+    private final AtomicBoolean maintenanceScheduled = new AtomicBoolean();
+    private ExecutorService maintenance;
+    private ScheduledExecutorService snapshots;
+
+    @PostConstruct
+    void init() {
+        vectors = new OffHeapVectors(dimension, initialCapacity, binaryPrefilter);
+
+        maintenance = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "embedded-vector-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (!snapshotPath.isBlank()) {
+            loadSnapshot(Path.of(snapshotPath));
+
+            snapshots = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "embedded-vector-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshots.scheduleWithFixedDelay(this::snapshotIfChanged,
+                    snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+        }
+
+        scheduleMaintenance();
+        System.out.println("Embedded vector store ready with " + liveCount() + " points");
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (snapshots != null) {
+            snapshots.shutdownNow();
+            snapshotIfChanged();
+        }
+        maintenance.shutdownNow();
+    }
+
+    @Override
+    public CompletableFuture<UpsertResult> upsertBatchAsync(List<VectorPoint> points, Duration deadline) {
+        List<UpsertResult.PointFailure> failures = new ArrayList<>();
+        int upserted = 0;
+
+        lock.writeLock().lock();
+        try {
+            for (VectorPoint point : points) {
+                if (point.vector() == null || point.vector().isEmpty()) {
+                    failures.add(new UpsertResult.PointFailure(point.idString(), "empty vector"));
+                    continue;
+                }
+                if (point.vector().dimension() != dimension) {
+                    failures.add(new UpsertResult.PointFailure(point.idString(),
+                            "vector dimension " + point.vector().dimension() + ", store dimension " + dimension));
+                    continue;
+                }
+
+                String id = point.idString();
+                int slot;
+                try {
+                    slot = vectors.add(point.vector().array());
+                }
+                catch (RuntimeException | OutOfMemoryError e) {
+                    // Direct memory exhausted or the store full; the previous version of the point stays
+                    failures.add(new UpsertResult.PointFailure(id, "vector store full: " + e.getMessage()));
+                    continue;
+                }
+
+                Integer previous = slotsById.get(id);
+                if (previous != null) {
+                    tombstone(previous);
+                }
+                append(id, VectorPayloads.toPayloadMap(point.payload()), slot);
+                upserted++;
+            }
+            modifications++;
+        }
+        catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+
+        scheduleMaintenance();
+        return CompletableFuture.completedFuture(new UpsertResult(upserted, List.copyOf(failures)));
+    }
+
+    @Override
+    public CompletableFuture<List<SearchHit>> searchAsync(Embedding queryVector, Filter filter,
+                                                          SearchOptions options, Duration deadline) {
+        try {
+            return CompletableFuture.completedFuture(search(queryVector, filter, options));
+        }
+        catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private List<SearchHit> search(Embedding queryVector, Filter filter, SearchOptions options) {
+        if (queryVector.dimension() != dimension) {
+            throw new IllegalArgumentException("Query dimension " + queryVector.dimension() + ", store dimension " + dimension);
+        }
+
+        float[] unitQuery = OffHeapVectors.normalize(queryVector.array());
+        float minScore = options.scoreThreshold() != null ? options.scoreThreshold() : Float.NEGATIVE_INFINITY;
+
+        lock.readLock().lock();
+        try {
+            IntList userSlots = userSlots(filter);
+            int candidates = userSlots != null ? userSlots.size : vectors.size();
+            IntPredicate accept = slot -> !deleted.get(slot) && PayloadFilter.matches(filter, ids.get(slot), payloads.get(slot));
+
+            TopK<HnswIndex.Candidate> top = new TopK<>(options.k());
+            float[] scratch = new float[dimension];
+            int exactFrom = 0;
+
+            if (graph != null && candidates > hnswThreshold) {
+                for (HnswIndex.Candidate candidate : graph.search(unitQuery, options.k(), hnswEfSearch, accept)) {
+                    top.offer(candidate, candidate.similarity());
+                }
+                // Slots the background thread has not indexed yet are scanned exactly
+                exactFrom = graph.size();
+            }
+
+            int shortlistSize = options.k() * binaryOversampling;
+            if (vectors.hasBinaryCodes() && exactFrom == 0 && candidates > shortlistSize) {
+                // Rank by Hamming distance first; only the shortlist is scored with the float vectors
+                long[] queryCode = VectorQuantization.binary(unitQuery);
+                TopK<HnswIndex.Candidate> shortlist = new TopK<>(shortlistSize);
+                forEachExactSlot(userSlots, exactFrom, slot -> {
+                    int distance = vectors.hamming(slot, queryCode);
+                    if (-distance > shortlist.threshold() && accept.test(slot)) {
+                        shortlist.offer(new HnswIndex.Candidate(slot, -distance), -distance);
+                    }
+                });
+                for (HnswIndex.Candidate candidate : shortlist.toSortedList()) {
+                    float similarity = vectors.similarity(candidate.node(), unitQuery, scratch);
+                    top.offer(new HnswIndex.Candidate(candidate.node(), similarity), similarity);
+                }
+            }
+            else {
+                forEachExactSlot(userSlots, exactFrom, slot -> offerExact(slot, unitQuery, scratch, accept, top));
+            }
+
+            List<SearchHit> hits = new ArrayList<>();
+            for (HnswIndex.Candidate candidate : top.toSortedList()) {
+                if (candidate.similarity() < minScore) {
+                    continue;
+                }
+                int slot = candidate.node();
+                float[] vector = options.includeVectors() ? vectors.get(slot, new float[dimension]) : null;
+                hits.add(new SearchHit(ids.get(slot), candidate.similarity(), payloads.get(slot), vector));
+            }
+            return hits;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The slots an exact scan covers: the user's slots, or every slot, from exactFrom on
+    private void forEachExactSlot(IntList userSlots, int exactFrom, IntConsumer action) {
+        if (userSlots != null) {
+            for (int i = 0; i < userSlots.size; i++) {
+                if (userSlots.values[i] >= exactFrom) {
+                    action.accept(userSlots.values[i]);
+                }
+            }
+        }
+        else {
+            for (int slot = exactFrom; slot < vectors.size(); slot++) {
+                action.accept(slot);
+            }
+        }
+    }
+
+    private void offerExact(int slot, float[] unitQuery, float[] scratch, IntPredicate accept, TopK<HnswIndex.Candidate> top) {
+        if (accept.test(slot)) {
+            float similarity = vectors.similarity(slot, unitQuery, scratch);
+            top.offer(new HnswIndex.Candidate(slot, similarity), similarity);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Long> countAsync(Filter filter, Duration deadline) {
+        try {
+            lock.readLock().lock();
+            try {
+                long[] count = new long[1];
+                forEachMatch(filter, slot -> count[0]++);
+                return CompletableFuture.completedFuture(count[0]);
+            }
+            finally {
+                lock.readLock().unlock();
+            }
+        }
+        catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteAsync(Filter filter, Duration deadline) {
+        try {
+            lock.writeLock().lock();
+            try {
+                List<Integer> matches = new ArrayList<>();
+                forEachMatch(filter, matches::add);
+                for (int slot : matches) {
+                    tombstone(slot);
+                }
+                modifications++;
+            }
+            finally {
+                lock.writeLock().unlock();
+            }
+        }
+        catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        scheduleMaintenance();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteAsync(List<String> pointIds, Duration deadline) {
+        lock.writeLock().lock();
+        try {
+            for (String id : pointIds) {
+                Integer slot = slotsById.get(id);
+                if (slot != null) {
+                    tombstone(slot);
+                }
+            }
+            modifications++;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+
+        scheduleMaintenance();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Set<String>> existingIdsAsync(List<String> pointIds, Duration deadline) {
+        lock.readLock().lock();
+        try {
+            Set<String> existing = new HashSet<>();
+            for (String id : pointIds) {
+                if (slotsById.containsKey(id)) {
+                    existing.add(id);
+                }
+            }
+            return CompletableFuture.completedFuture(existing);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Matching points in insertion order, read a page at a time under the read lock.
+     * Fails with IllegalStateException if the store is compacted while the stream is open.
+     */
+    @Override
+    public Stream<ScrolledPoint> scroll(Filter filter, int pageSize, boolean withVectors, boolean withPayload) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+                new ScrollIterator(filter, pageSize, withVectors, withPayload),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public Duration defaultDeadline() {
+        return Duration.ZERO;
+    }
+
+    private final class ScrollIterator implements Iterator<ScrolledPoint> {
+
+        private final Filter filter;
+        private final int pageSize;
+        private final boolean withVectors;
+        private final boolean withPayload;
+        private final long startGeneration;
+
+        // Position in the user's slot list, or the next slot when the filter pins no user
+        private int cursor;
+        private boolean exhausted;
+        private Iterator<ScrolledPoint> page = Collections.emptyIterator();
+
+        ScrollIterator(Filter filter, int pageSize, boolean withVectors, boolean withPayload) {
+            this.filter = filter;
+            this.pageSize = pageSize;
+            this.withVectors = withVectors;
+            this.withPayload = withPayload;
+
+            lock.readLock().lock();
+            try {
+                this.startGeneration = generation;
+            }
+            finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!page.hasNext() && !exhausted) {
+                page = nextPage().iterator();
+            }
+            return page.hasNext();
+        }
+
+        @Override
+        public ScrolledPoint next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.next();
+        }
+
+        private List<ScrolledPoint> nextPage() {
+            List<ScrolledPoint> points = new ArrayList<>(pageSize);
+
+            lock.readLock().lock();
+            try {
+                if (generation != startGeneration) {
+                    throw new IllegalStateException("Scroll failed: the embedded vector store was compacted");
+                }
+
+                IntList userSlots = userSlots(filter);
+                int end = userSlots != null ? userSlots.size : vectors.size();
+
+                while (cursor < end && points.size() < pageSize) {
+                    int slot = userSlots != null ? userSlots.values[cursor] : cursor;
+                    cursor++;
+
+                    if (!deleted.get(slot) && PayloadFilter.matches(filter, ids.get(slot), payloads.get(slot))) {
+                        points.add(new ScrolledPoint(ids.get(slot),
+                                withPayload ? payloads.get(slot) : Map.of(),
+                                withVectors ? vectors.get(slot, new float[dimension]) : null));
+                    }
+                }
+                exhausted = cursor >= end;
+            }
+            finally {
+                lock.readLock().unlock();
+            }
+            return points;
+        }
+    }
+
+    // Caller holds the read or write lock
+    private void forEachMatch(Filter filter, IntConsumer action) {
+        IntList userSlots = userSlots(filter);
+        int end = userSlots != null ? userSlots.size : vectors.size();
+        for (int i = 0; i < end; i++) {
+            int slot = userSlots != null ? userSlots.values[i] : i;
+            if (!deleted.get(slot) && PayloadFilter.matches(filter, ids.get(slot), payloads.get(slot))) {
+                action.accept(slot);
+            }
+        }
+    }
+
+    // The slots of the user the filter is limited to, empty for an unknown user; null if no user is pinned
+    private IntList userSlots(Filter filter) {
+        String username = PayloadFilter.requiredUsername(filter);
+        if (username == null) {
+            return null;
+        }
+        return slotsByUser.getOrDefault(username, IntList.EMPTY);
+    }
+
+    // Caller holds the write lock
+    private void append(String id, Map<String, Object> payload, int slot) {
+        ids.add(id);
+        payloads.add(Collections.unmodifiableMap(payload));
+        slotsById.put(id, slot);
+
+        Object username = payload.get("username");
+        if (username != null) {
+            slotsByUser.computeIfAbsent(username.toString(), key -> new IntList()).add(slot);
+        }
+    }
+
+    // Caller holds the write lock
+    private void tombstone(int slot) {
+        if (!deleted.get(slot)) {
+            deleted.set(slot);
+            deletedCount++;
+            slotsById.remove(ids.get(slot), slot);
+        }
+    }
+
+    private int liveCount() {
+        lock.readLock().lock();
+        try {
+            return vectors.size() - deletedCount;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void scheduleMaintenance() {
+        if (maintenanceScheduled.compareAndSet(false, true)) {
+            maintenance.execute(this::maintain);
+        }
+    }
+
+    /**
+     * Compact once a quarter of the slots are tombstones, then bring the graph up to date.
+     */
+    private void maintain() {
+        maintenanceScheduled.set(false);
+
+        try {
+            lock.writeLock().lock();
+            try {
+                if (deletedCount > 1024 && deletedCount * 4 > vectors.size()) {
+                    compact();
+                }
+            }
+            finally {
+                lock.writeLock().unlock();
+            }
+
+            while (!Thread.currentThread().isInterrupted()) {
+                lock.writeLock().lock();
+                try {
+                    if (graph == null) {
+                        if (vectors.size() - deletedCount < hnswThreshold) {
+                            return;
+                        }
+                        graph = new HnswIndex(vectors, hnswM, hnswEfConstruct);
+                        System.out.println("Embedded vector store passed " + hnswThreshold + " points, building HNSW graph");
+                    }
+
+                    int end = Math.min(vectors.size(), graph.size() + INDEX_BATCH);
+                    for (int slot = graph.size(); slot < end; slot++) {
+                        graph.add(slot);
+                    }
+                    if (graph.size() >= vectors.size()) {
+                        return;
+                    }
+                }
+                finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+        catch (Exception e) {
+            System.err.println("Embedded vector store maintenance failed: " + e.getMessage());
+        }
+    }
+
+    // Caller holds the write lock. Drops tombstones and renumbers slots; the graph is rebuilt afterwards.
+    private void compact() {
+        OffHeapVectors compacted = new OffHeapVectors(dimension, Math.max(initialCapacity, vectors.size() - deletedCount), binaryPrefilter);
+        List<String> oldIds = new ArrayList<>(ids);
+        List<Map<String, Object>> oldPayloads = new ArrayList<>(payloads);
+        float[] scratch = new float[dimension];
+
+        ids.clear();
+        payloads.clear();
+        slotsById.clear();
+        slotsByUser.clear();
+
+        for (int slot = 0; slot < oldIds.size(); slot++) {
+            if (!deleted.get(slot)) {
+                append(oldIds.get(slot), oldPayloads.get(slot), compacted.addUnit(vectors.get(slot, scratch)));
+            }
+        }
+
+        System.out.println("Embedded vector store compacted " + deletedCount + " deleted points");
+        vectors = compacted;
+        deleted.clear();
+        deletedCount = 0;
+        graph = null;
+        generation++;
+    }
+
+    private void snapshotIfChanged() {
+        try {
+            snapshot();
+        }
+        catch (Exception e) {
+            System.err.println("Embedded vector store snapshot failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Write every live point to vector.embedded.snapshot.path, the vectors through memory-mapped windows.
+     * Written to a temporary file first and moved into place, so a crash never leaves a torn snapshot.
+     * Skipped if nothing changed since the last snapshot.
+     */
+    public synchronized void snapshot() throws IOException {
+        if (snapshotPath.isBlank()) {
+            return;
+        }
+
+        Path path = Path.of(snapshotPath);
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+
+        lock.readLock().lock();
+        try {
+            if (modifications == snapshotModifications) {
+                return;
+            }
+
+            ByteArrayOutputStream metadataBytes = new ByteArrayOutputStream();
+            DataOutputStream metadata = new DataOutputStream(metadataBytes);
+            int count = 0;
+            for (int slot = 0; slot < vectors.size(); slot++) {
+                if (!deleted.get(slot)) {
+                    writeString(metadata, ids.get(slot));
+                    writePayload(metadata, payloads.get(slot));
+                    count++;
+                }
+            }
+            metadata.flush();
+            byte[] meta = metadataBytes.toByteArray();
+
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer head = ByteBuffer.allocate(SNAPSHOT_HEADER_BYTES + meta.length).order(ByteOrder.LITTLE_ENDIAN);
+                head.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putInt(dimension).putInt(count).putInt(meta.length);
+                head.put(meta).flip();
+                while (head.hasRemaining()) {
+                    channel.write(head, head.position());
+                }
+
+                long vectorBytes = (long) dimension * Float.BYTES;
+                int windowSlots = snapshotWindowSlots();
+                float[] scratch = new float[dimension];
+                MappedByteBuffer mapped = null;
+                FloatBuffer window = null;
+                int written = 0;
+                for (int slot = 0; slot < vectors.size(); slot++) {
+                    if (deleted.get(slot)) {
+                        continue;
+                    }
+                    if (window == null || !window.hasRemaining()) {
+                        if (mapped != null) {
+                            mapped.force();
+                        }
+                        int slots = Math.min(windowSlots, count - written);
+                        mapped = channel.map(FileChannel.MapMode.READ_WRITE,
+                                SNAPSHOT_HEADER_BYTES + meta.length + written * vectorBytes, slots * vectorBytes);
+                        window = mapped.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+                    }
+                    window.put(vectors.get(slot, scratch));
+                    written++;
+                }
+                if (mapped != null) {
+                    mapped.force();
+                }
+                channel.force(true);
+            }
+
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            snapshotModifications = modifications;
+            System.out.println("Embedded vector store snapshot written: " + count + " points to " + path);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void loadSnapshot(Path path) {
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer head = readFully(channel, 0, SNAPSHOT_HEADER_BYTES);
+            int magic = head.getInt();
+            int version = head.getInt();
+            int snapshotDimension = head.getInt();
+            int count = head.getInt();
+            int metaLength = head.getInt();
+
+            if (magic != SNAPSHOT_MAGIC || version != SNAPSHOT_VERSION || snapshotDimension != dimension) {
+                System.err.println("Ignoring embedded vector snapshot " + path + ": unsupported format or dimension " + snapshotDimension);
+                return;
+            }
+            long vectorBytes = (long) dimension * Float.BYTES;
+            long vectorsAt = SNAPSHOT_HEADER_BYTES + (long) metaLength;
+            if (count < 0 || metaLength < 0 || channel.size() != vectorsAt + count * vectorBytes) {
+                System.err.println("Ignoring embedded vector snapshot " + path + ": truncated or corrupt");
+                return;
+            }
+
+            // Parsed in full first, so a corrupt file adds nothing rather than vectors without ids
+            DataInputStream metadata = new DataInputStream(new ByteArrayInputStream(readFully(channel, SNAPSHOT_HEADER_BYTES, metaLength).array()));
+            List<String> snapshotIds = new ArrayList<>(count);
+            List<Map<String, Object>> snapshotPayloads = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                snapshotIds.add(readString(metadata));
+                snapshotPayloads.add(readPayload(metadata));
+            }
+            int windowSlots = snapshotWindowSlots();
+
+            lock.writeLock().lock();
+            try {
+                int first = vectors.size();
+                for (int loaded = 0; loaded < count; ) {
+                    int slots = Math.min(windowSlots, count - loaded);
+                    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, vectorsAt + loaded * vectorBytes, slots * vectorBytes);
+                    vectors.addUnit(mapped.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer(), slots);
+                    loaded += slots;
+                }
+                for (int i = 0; i < count; i++) {
+                    append(snapshotIds.get(i), snapshotPayloads.get(i), first + i);
+                }
+                snapshotModifications = modifications;
+            }
+            finally {
+                lock.writeLock().unlock();
+            }
+
+            System.out.println("Embedded vector store loaded " + count + " points from " + path);
+        }
+        catch (Exception e) {
+            System.err.println("Could not load embedded vector snapshot " + path + ": " + e.getMessage());
+        }
+    }
+
+    private int snapshotWindowSlots() {
+        return (int) Math.max(1, SNAPSHOT_WINDOW_BYTES / ((long) dimension * Float.BYTES));
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+        return buffer.flip();
+    }
+
+    // Length-prefixed UTF-8; DataOutput.writeUTF caps strings at 64 KB, shorter than some PDF pages
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writePayload(DataOutputStream out, Map<String, Object> payload) throws IOException {
+        out.writeInt(payload.size());
+        for (Map.Entry<String, Object> entry : payload.entrySet()) {
+            writeString(out, entry.getKey());
+            Object value = entry.getValue();
+            if (value instanceof Long || value instanceof Integer) {
+                out.writeByte('L');
+                out.writeLong(((Number) value).longValue());
+            }
+            else if (value instanceof Double || value instanceof Float) {
+                out.writeByte('D');
+                out.writeDouble(((Number) value).doubleValue());
+            }
+            else if (value instanceof Boolean bool) {
+                out.writeByte('B');
+                out.writeBoolean(bool);
+            }
+            else {
+                out.writeByte('S');
+                writeString(out, String.valueOf(value));
+            }
+        }
+    }
+
+    private static Map<String, Object> readPayload(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        Map<String, Object> payload = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            String key = readString(in);
+            switch (in.readByte()) {
+                case 'L' -> payload.put(key, in.readLong());
+                case 'D' -> payload.put(key, in.readDouble());
+                case 'B' -> payload.put(key, in.readBoolean());
+                default -> payload.put(key, readString(in));
+            }
+        }
+        return payload;
+    }
+
+    // Growable int array, so per-user slot lists do not box every slot
+    private static final class IntList {
+
+        static final IntList EMPTY = new IntList();
+
+        int[] values = new int[8];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
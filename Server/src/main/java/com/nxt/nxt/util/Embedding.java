@@ -0,0 +1,75 @@
+package com.nxt.nxt.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One embedding vector, held as a primitive float[] (4 bytes per dimension instead of a boxed
+ * Double and a list slot each). Treated as immutable: the backing array is shared, never copied,
+ * between the embedding API, the vector store, the codec and ranking, so nothing may write to it.
+ */
+public final class Embedding {
+
+    /**
+     * Returned when embedding fails; callers check isEmpty().
+     */
+    public static final Embedding EMPTY = new Embedding(new float[0]);
+
+    private final float[] values;
+
+    private Embedding(float[] values) {
+        this.values = values;
+    }
+
+    /**
+     * Wrap the array without copying. The caller hands it over and must not modify it afterwards.
+     */
+    public static Embedding of(float[] values) {
+        return values.length == 0 ? EMPTY : new Embedding(values);
+    }
+
+    /**
+     * Convert a boxed vector (as the Cohere SDK returns it) in one pass.
+     */
+    public static Embedding of(List<? extends Number> values) {
+        float[] array = new float[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i).floatValue();
+        }
+        return of(array);
+    }
+
+    public int dimension() {
+        return values.length;
+    }
+
+    public boolean isEmpty() {
+        return values.length == 0;
+    }
+
+    public float get(int index) {
+        return values[index];
+    }
+
+    /**
+     * The backing array itself, for kernels and encoders that read it in place. Do not modify.
+     */
+    public float[] array() {
+        return values;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Embedding embedding && Arrays.equals(values, embedding.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return "Embedding[dimension=" + values.length + "]";
+    }
+}
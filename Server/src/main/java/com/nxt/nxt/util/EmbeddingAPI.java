@@ -1,58 +1,160 @@
 package com.nxt.nxt.util;
 
-import com.cohere.api.Cohere;
-import com.cohere.api.resources.v2.requests.V2EmbedRequest;
-import com.cohere.api.types.EmbedByTypeResponse;
-import com.cohere.api.types.EmbedInputType;
-import com.cohere.api.types.EmbeddingType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Entry point for embedding texts: caching, batching and the concurrency limit, in front of the
+ * configured EmbeddingProvider.
+ */
 @Component
 public class EmbeddingAPI {
 
-    @Value("${cohere.api.key}")
-    private String cohereApiKey;
+    // Batch requests in flight at once, across all callers
+    @Value("${cohere.embed.max-concurrency:4}")
+    private int maxConcurrency;
 
-    public List<Double> getTextEmbedding(String text) {
-        try {
-            Cohere cohere = Cohere.builder()
-                    .token(cohereApiKey)
-                    .clientName("Nexara")
-                    .build();
-
-            V2EmbedRequest request = V2EmbedRequest.builder()
-                    .model("embed-english-v3.0")
-                    .inputType(EmbedInputType.SEARCH_DOCUMENT)
-                    .texts(List.of(text))
-                    .embeddingTypes(List.of(EmbeddingType.FLOAT))
-                    .build();
-
-            EmbedByTypeResponse response = cohere.v2().embed(request);
-
-            if (response != null && 
-                response.getEmbeddings() != null && 
-                response.getEmbeddings().getFloat().isPresent() &&
-                !response.getEmbeddings().getFloat().get().isEmpty()) {
-                
-                return response.getEmbeddings().getFloat().get().get(0);
-            }
-            
+    private final EmbeddingCache cache;
+    private final EmbeddingProvider provider;
+
+    private ExecutorService batchExecutor;
+
+    public EmbeddingAPI(EmbeddingCache cache, EmbeddingProvider provider) {
+        this.cache = cache;
+        this.provider = provider;
+    }
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threads = new AtomicInteger();
+        batchExecutor = Executors.newFixedThreadPool(Math.max(1, maxConcurrency), runnable -> {
+            Thread thread = new Thread(runnable, "embed-batch-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Model of the configured provider, recorded with every stored vector.
+     */
+    public String model() {
+        return provider.model();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        batchExecutor.shutdownNow();
+    }
+
+    /**
+     * Embedding of the text, or Embedding.EMPTY if it could not be embedded.
+     * Served from the embedding cache when the same text was embedded before.
+     */
+    public Embedding getTextEmbedding(String text) {
+        EmbeddingBatchResult result = embedBatch(List.of(text));
+        for (EmbeddingBatchResult.ItemFailure failure : result.failures()) {
+            System.err.println("Error calling embedding API: " + failure.error());
+        }
+        return result.get(0);
+    }
+
+    /**
+     * Embed many texts with as few requests as possible. Texts already in the embedding cache
+     * are not sent; the rest are split into batches of the provider's maxBatchSize, sent at most
+     * cohere.embed.max-concurrency at a time. Never throws; the result holds one embedding per
+     * text in input order, and texts that were blank or whose batch failed are Embedding.EMPTY
+     * and listed as failures.
+     */
+    public EmbeddingBatchResult embedBatch(List<String> texts) {
+        return cache.getAll(texts, provider.model(), this::embedUncached);
+    }
+
+    private EmbeddingBatchResult embedUncached(List<String> texts) {
+        Embedding[] embeddings = new Embedding[texts.size()];
+        Arrays.fill(embeddings, Embedding.EMPTY);
+        List<EmbeddingBatchResult.ItemFailure> failures = Collections.synchronizedList(new ArrayList<>());
+
+        // The API rejects a whole request for one empty text, so leave those out up front
+        List<Integer> indexes = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            String text = texts.get(i);
+            if (text == null || text.isBlank()) {
+                failures.add(new EmbeddingBatchResult.ItemFailure(i, "empty text"));
+            }
             else {
-                System.err.println("Invalid response from Cohere API");
-                return new ArrayList<>();
+                indexes.add(i);
             }
-            
         }
-        
+
+        // A single batch is sent from the calling thread, as a lone text always was
+        int batchSize = Math.max(1, provider.maxBatchSize());
+        if (indexes.size() <= batchSize) {
+            if (!indexes.isEmpty()) {
+                embedInto(texts, indexes, embeddings, failures);
+            }
+        }
+        else {
+            List<CompletableFuture<Void>> batches = new ArrayList<>();
+            for (int from = 0; from < indexes.size(); from += batchSize) {
+                List<Integer> batch = indexes.subList(from, Math.min(from + batchSize, indexes.size()));
+                batches.add(CompletableFuture.runAsync(() -> embedInto(texts, batch, embeddings, failures), batchExecutor));
+            }
+
+            for (CompletableFuture<Void> batch : batches) {
+                try {
+                    batch.join();
+                }
+                catch (CompletionException e) {
+                    // embedInto records its own failures; this only happens if the executor rejected it
+                    System.err.println("Embedding batch did not run: " + e.getMessage());
+                }
+            }
+        }
+
+        List<EmbeddingBatchResult.ItemFailure> sorted = new ArrayList<>(failures);
+        sorted.sort((a, b) -> Integer.compare(a.index(), b.index()));
+        return new EmbeddingBatchResult(Arrays.asList(embeddings), sorted);
+    }
+
+    private void embedInto(List<String> texts, List<Integer> batch, Embedding[] embeddings,
+                           List<EmbeddingBatchResult.ItemFailure> failures) {
+        List<String> batchTexts = new ArrayList<>(batch.size());
+        for (int index : batch) {
+            batchTexts.add(texts.get(index));
+        }
+
+        List<Embedding> batchEmbeddings;
+        try {
+            batchEmbeddings = provider.embed(batchTexts);
+        }
         catch (Exception e) {
-            System.err.println("Error calling Cohere API: " + e.getMessage());
+            System.err.println("Error calling embedding API for " + batch.size() + " texts: " + e.getMessage());
+            for (int index : batch) {
+                failures.add(new EmbeddingBatchResult.ItemFailure(index, String.valueOf(e.getMessage())));
+            }
+            return;
+        }
 
-            return new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (i < batchEmbeddings.size() && !batchEmbeddings.get(i).isEmpty()) {
+                embeddings[batch.get(i)] = batchEmbeddings.get(i);
+            }
+            else {
+                failures.add(new EmbeddingBatchResult.ItemFailure(batch.get(i), "no embedding in the response"));
+            }
         }
     }
-}
\ No newline at end of file
+}
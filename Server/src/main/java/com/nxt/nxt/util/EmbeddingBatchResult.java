@@ -0,0 +1,21 @@
+package com.nxt.nxt.util;
+
+import java.util.List;
+
+/**
+ * Outcome of EmbeddingAPI.embedBatch: one embedding per input text, in input order
+ * (Embedding.EMPTY where the text could not be embedded), and which texts failed, with why.
+ */
+public record EmbeddingBatchResult(List<Embedding> embeddings, List<ItemFailure> failures) {
+
+    public record ItemFailure(int index, String error) {
+    }
+
+    public Embedding get(int index) {
+        return embeddings.get(index);
+    }
+
+    public boolean isComplete() {
+        return failures.isEmpty();
+    }
+}
@@ -0,0 +1,247 @@
+package com.nxt.nxt.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nxt.nxt.entity.CachedEmbedding;
+import com.nxt.nxt.repositories.CachedEmbeddingRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Two-tier cache of embeddings keyed by (SHA-256 of the text, model), in front of the embedding API.
+ * The first tier is a size-bounded Caffeine cache (W-TinyLFU eviction) on the heap; the second is
+ * the embedding_cache table, which survives restarts and is shared by every instance.
+ *
+ * Lookups are single-flighted: a text that a concurrent call is already loading is awaited, not
+ * loaded again. Failed loads are never cached, so the next request retries them.
+ *
+ * Metrics (under /actuator/metrics): cache.gets / cache.evictions with cache=embedding,
+ * embedding.cache.lookups by tier (memory, database, api, and coalesced for texts served by a
+ * concurrent call's load), embedding.cache.hit.rate and embedding.api.calls.saved (texts served
+ * without calling the API). Each distinct text of a call counts once.
+ */
+@Component
+public class EmbeddingCache {
+
+    private record Key(String sha256, String model) {}
+
+    private final CachedEmbeddingRepository repository;
+    private final MeterRegistry meterRegistry;
+
+    // About 4 KB per 1024-dimension entry
+    @Value("${embedding.cache.max-size:20000}")
+    private long maxSize;
+
+    @Value("${embedding.cache.database.enabled:true}")
+    private boolean databaseEnabled;
+
+    private AsyncCache<Key, Embedding> memory;
+    private Counter memoryHits;
+    private Counter databaseHits;
+    private Counter apiLoads;
+    private Counter coalescedLoads;
+
+    public EmbeddingCache(CachedEmbeddingRepository repository, MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        memory = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .buildAsync();
+
+        memoryHits = lookups("memory");
+        databaseHits = lookups("database");
+        apiLoads = lookups("api");
+        coalescedLoads = lookups("coalesced");
+
+        Gauge.builder("embedding.cache.hit.rate", this, cache -> cache.hitRate())
+                .description("Share of texts served from either cache tier")
+                .register(meterRegistry);
+        FunctionCounter.builder("embedding.api.calls.saved", this,
+                        cache -> cache.memoryHits.count() + cache.databaseHits.count() + cache.coalescedLoads.count())
+                .description("Texts that did not have to be sent to the embedding API")
+                .register(meterRegistry);
+        CaffeineCacheMetrics.monitor(meterRegistry, memory.synchronous(), "embedding");
+    }
+
+    private Counter lookups(String tier) {
+        return Counter.builder("embedding.cache.lookups")
+                .description("Texts looked up, by the tier that served them")
+                .tag("tier", tier)
+                .register(meterRegistry);
+    }
+
+    private double hitRate() {
+        double hits = memoryHits.count() + databaseHits.count();
+        double total = hits + apiLoads.count() + coalescedLoads.count();
+        return total == 0 ? 0 : hits / total;
+    }
+
+    /**
+     * Embeddings of the texts under the model, in input order. Texts found in neither tier are
+     * passed to loader in one call (in first-seen order, without duplicates); what it returns is
+     * stored in both tiers, what it fails on is reported as failed here and not cached.
+     */
+    public EmbeddingBatchResult getAll(List<String> texts, String model, Function<List<String>, EmbeddingBatchResult> loader) {
+        Map<Key, String> unique = new LinkedHashMap<>();
+        Key[] keys = new Key[texts.size()];
+        for (int i = 0; i < texts.size(); i++) {
+            String text = texts.get(i) != null ? texts.get(i) : "";
+            keys[i] = new Key(ContentHash.sha256Hex(text), model);
+            unique.putIfAbsent(keys[i], text);
+        }
+
+        // Claim the keys nobody holds or is loading; the rest are joined as they are
+        Map<Key, CompletableFuture<Embedding>> claimed = new LinkedHashMap<>();
+        Map<Key, CompletableFuture<Embedding>> futures = new HashMap<>();
+        List<Key> joined = new ArrayList<>();
+        int hits = 0;
+        for (Key key : unique.keySet()) {
+            CompletableFuture<Embedding> future = memory.get(key, (k, executor) -> {
+                CompletableFuture<Embedding> claim = new CompletableFuture<>();
+                claimed.put(k, claim);
+                return claim;
+            });
+            futures.put(key, future);
+            if (claimed.containsKey(key)) {
+                continue;
+            }
+            // Only a finished load is a hit; one still in flight may yet fail
+            if (future.isDone() && !future.join().isEmpty()) {
+                hits++;
+            }
+            else {
+                joined.add(key);
+            }
+        }
+        memoryHits.increment(hits);
+
+        Map<Key, String> errors = claimed.isEmpty() ? Map.of() : load(claimed, unique, model, loader);
+
+        Embedding[] embeddings = new Embedding[texts.size()];
+        Arrays.fill(embeddings, Embedding.EMPTY);
+        List<EmbeddingBatchResult.ItemFailure> failures = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            embeddings[i] = futures.get(keys[i]).join();
+            if (embeddings[i].isEmpty()) {
+                failures.add(new EmbeddingBatchResult.ItemFailure(i,
+                        errors.getOrDefault(keys[i], "embedding failed in a concurrent request")));
+            }
+        }
+
+        int coalesced = 0;
+        for (Key key : joined) {
+            if (!futures.get(key).join().isEmpty()) {
+                coalesced++;
+            }
+        }
+        coalescedLoads.increment(coalesced);
+        return new EmbeddingBatchResult(Arrays.asList(embeddings), failures);
+    }
+
+    // Completes every claimed future, whatever fails, so no concurrent caller waits forever.
+    // Failures complete with Embedding.EMPTY and are dropped from the cache; returns their errors.
+    private Map<Key, String> load(Map<Key, CompletableFuture<Embedding>> claimed, Map<Key, String> texts, String model,
+                                  Function<List<String>, EmbeddingBatchResult> loader) {
+        Map<Key, String> failed = new HashMap<>();
+        try {
+            Map<Key, CompletableFuture<Embedding>> missing = new LinkedHashMap<>(claimed);
+
+            if (databaseEnabled) {
+                List<String> hashes = missing.keySet().stream().map(Key::sha256).toList();
+                for (CachedEmbedding row : findStored(model, hashes)) {
+                    CompletableFuture<Embedding> future = missing.remove(new Key(row.getSha256(), model));
+                    if (future != null) {
+                        future.complete(EmbeddingCodec.decode(row.getVector()));
+                        databaseHits.increment();
+                    }
+                }
+            }
+
+            if (missing.isEmpty()) {
+                return failed;
+            }
+
+            List<Key> keys = new ArrayList<>(missing.keySet());
+            EmbeddingBatchResult loaded = loader.apply(keys.stream().map(texts::get).toList());
+            apiLoads.increment(keys.size());
+
+            Map<Integer, String> errors = new HashMap<>();
+            for (EmbeddingBatchResult.ItemFailure failure : loaded.failures()) {
+                errors.put(failure.index(), failure.error());
+            }
+
+            List<CachedEmbedding> rows = new ArrayList<>();
+            for (int i = 0; i < keys.size(); i++) {
+                Embedding vector = loaded.get(i);
+                if (vector.isEmpty()) {
+                    fail(keys.get(i), missing.get(keys.get(i)), errors.getOrDefault(i, "no embedding returned"), failed);
+                    continue;
+                }
+                missing.get(keys.get(i)).complete(vector);
+                rows.add(new CachedEmbedding(keys.get(i).sha256(), model, EmbeddingCodec.encode(vector), vector.dimension()));
+            }
+
+            if (databaseEnabled) {
+                store(rows);
+            }
+        }
+        catch (RuntimeException e) {
+            for (Map.Entry<Key, CompletableFuture<Embedding>> entry : claimed.entrySet()) {
+                if (!entry.getValue().isDone()) {
+                    fail(entry.getKey(), entry.getValue(), String.valueOf(e.getMessage()), failed);
+                }
+            }
+        }
+        return failed;
+    }
+
+    private void fail(Key key, CompletableFuture<Embedding> future, String error, Map<Key, String> failed) {
+        failed.put(key, error);
+        future.complete(Embedding.EMPTY);
+        // Never keep a failure: the next lookup of the text tries again
+        memory.asMap().remove(key, future);
+    }
+
+    private List<CachedEmbedding> findStored(String model, List<String> hashes) {
+        try {
+            return repository.findByModelAndSha256In(model, hashes);
+        }
+        catch (Exception e) {
+            // The database tier is an optimisation; without it the texts are embedded again
+            System.err.println("Embedding cache lookup failed: " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    private void store(List<CachedEmbedding> rows) {
+        try {
+            repository.saveAll(rows);
+        }
+        catch (Exception e) {
+            // Typically another instance stored the same text first
+            System.err.println("Embedding cache write failed: " + e.getMessage());
+        }
+    }
+}
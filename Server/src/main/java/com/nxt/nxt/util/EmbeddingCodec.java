@@ -0,0 +1,36 @@
+package com.nxt.nxt.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Packs embedding vectors into little-endian float32 bytes for bytea columns
+ * and unpacks them again.
+ */
+public final class EmbeddingCodec {
+
+    private EmbeddingCodec() {}
+
+    public static byte[] encode(Embedding vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.dimension() * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector.array());
+        return buffer.array();
+    }
+
+    /**
+     * Encode running sums (profile vectors), narrowing each value to float32.
+     */
+    public static byte[] encode(double[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (double value : vector) {
+            buffer.putFloat((float) value);
+        }
+        return buffer.array();
+    }
+
+    public static Embedding decode(byte[] bytes) {
+        float[] vector = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return Embedding.of(vector);
+    }
+}
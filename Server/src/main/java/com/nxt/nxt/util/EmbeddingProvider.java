@@ -0,0 +1,27 @@
+package com.nxt.nxt.util;
+
+import java.util.List;
+
+/**
+ * Turns texts into embedding vectors, one request at a time; EmbeddingAPI adds the batching,
+ * concurrency limit and cache on top. Selected with embedding.provider: "cohere"
+ * (CohereEmbeddingProvider, the default) or "local" (LocalEmbeddingProvider, no key or network).
+ */
+public interface EmbeddingProvider {
+
+    /**
+     * Name of the model, stored with every cached and persisted vector so vectors of different
+     * providers are never mixed.
+     */
+    String model();
+
+    /**
+     * Most texts one embed call accepts.
+     */
+    int maxBatchSize();
+
+    /**
+     * Embeddings of the texts, in their order; none is blank. May throw, failing the whole call.
+     */
+    List<Embedding> embed(List<String> texts) throws Exception;
+}
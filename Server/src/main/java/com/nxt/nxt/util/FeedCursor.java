@@ -0,0 +1,71 @@
+package com.nxt.nxt.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Opaque page token for GET /api/posts.
+ * A ranked cursor points at an offset in a ranked-feed snapshot. A chronological cursor holds
+ * the (created_at, id) keyset of the last post returned, plus the snapshot whose posts were
+ * already shown so they are not repeated. A null keyset means the chronological feed's first page.
+ */
+public record FeedCursor(boolean ranked, String snapshotId, int offset, LocalDateTime createdAt, UUID postId) {
+
+    private static final String SEPARATOR = "|";
+
+    public static FeedCursor ranked(String snapshotId, int offset) {
+        return new FeedCursor(true, snapshotId, offset, null, null);
+    }
+
+    public static FeedCursor chronological(String snapshotId, LocalDateTime createdAt, UUID postId) {
+        return new FeedCursor(false, snapshotId, 0, createdAt, postId);
+    }
+
+    public String encode() {
+        String raw = ranked
+                ? String.join(SEPARATOR, "R", snapshotId, Integer.toString(offset))
+                : String.join(SEPARATOR, "C", orEmpty(snapshotId),
+                        createdAt != null ? createdAt.toString() : "",
+                        postId != null ? postId.toString() : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Parse a token produced by encode().
+     * Throws IllegalArgumentException for anything else.
+     */
+    public static FeedCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", -1);
+
+            if (parts.length == 3 && parts[0].equals("R") && !parts[1].isEmpty()) {
+                int offset = Integer.parseInt(parts[2]);
+                if (offset < 0) {
+                    throw new IllegalArgumentException("negative offset");
+                }
+                return ranked(parts[1], offset);
+            }
+
+            if (parts.length == 4 && parts[0].equals("C")) {
+                String snapshotId = parts[1].isEmpty() ? null : parts[1];
+                if (parts[2].isEmpty() || parts[3].isEmpty()) {
+                    return chronological(snapshotId, null, null);
+                }
+                return chronological(snapshotId, LocalDateTime.parse(parts[2]), UUID.fromString(parts[3]));
+            }
+        }
+        catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+
+        throw new IllegalArgumentException("Invalid cursor");
+    }
+
+    private static String orEmpty(String value) {
+        return value != null ? value : "";
+    }
+}
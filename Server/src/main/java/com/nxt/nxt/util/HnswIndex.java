@@ -0,0 +1,248 @@
+package com.nxt.nxt.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.function.IntPredicate;
+
+/**
+ * Hierarchical navigable small world graph over the slots of an OffHeapVectors, for approximate
+ * nearest-neighbour search by cosine similarity. Nodes are inserted in slot order; slots are never
+ * removed, callers skip deleted ones through the accept predicate.
+ *
+ * Filtered search walks the graph as usual but only collects nodes the predicate accepts, which
+ * works well when the filter matches a large share of the nodes; EmbeddedVectorStore brute-forces
+ * smaller candidate sets instead. Searches may run concurrently with each other (each uses its own
+ * scratch buffer), but not with add; the store's read/write lock ensures that.
+ */
+final class HnswIndex {
+
+    record Candidate(int node, float similarity) {}
+
+    private final OffHeapVectors vectors;
+    private final int m;
+    private final int maxLinksLevel0;
+    private final int efConstruct;
+    private final double levelMultiplier;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    // links[node][level] = neighbour slots of node at that level
+    private int[][][] links = new int[1024][][];
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    HnswIndex(OffHeapVectors vectors, int m, int efConstruct) {
+        this.vectors = vectors;
+        this.m = m;
+        this.maxLinksLevel0 = 2 * m;
+        this.efConstruct = efConstruct;
+        this.levelMultiplier = 1 / Math.log(m);
+    }
+
+    /**
+     * Number of slots indexed so far; they are exactly the slots below this value.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Index the next slot (slot == size()).
+     */
+    void add(int slot) {
+        if (slot != size) {
+            throw new IllegalArgumentException("Slots must be added in order: expected " + size + ", got " + slot);
+        }
+        if (slot >= links.length) {
+            links = Arrays.copyOf(links, links.length * 2);
+        }
+
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+        links[slot] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[slot][l] = new int[0];
+        }
+        size++;
+
+        if (entryPoint < 0) {
+            entryPoint = slot;
+            maxLevel = level;
+            return;
+        }
+
+        float[] query = vectors.get(slot, new float[vectors.dimension()]);
+        float[] scratch = new float[vectors.dimension()];
+        int current = entryPoint;
+
+        // Greedy descent through the levels above the new node's
+        for (int l = maxLevel; l > level; l--) {
+            current = greedyClosest(query, current, l, scratch);
+        }
+
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Candidate> nearest = searchLevel(query, current, efConstruct, l, node -> true, scratch);
+            int maxLinks = l == 0 ? maxLinksLevel0 : m;
+
+            int[] neighbours = selectNeighbours(nearest, slot, m, scratch);
+            links[slot][l] = neighbours;
+
+            for (int neighbour : neighbours) {
+                connect(neighbour, slot, l, maxLinks, scratch);
+            }
+
+            current = nearest.get(0).node();
+        }
+
+        if (level > maxLevel) {
+            entryPoint = slot;
+            maxLevel = level;
+        }
+    }
+
+    /**
+     * Up to k accepted nodes nearest to the unit-length query, best first. ef (at least k)
+     * trades recall for time.
+     */
+    List<Candidate> search(float[] unitQuery, int k, int ef, IntPredicate accept) {
+        if (entryPoint < 0) {
+            return List.of();
+        }
+
+        float[] scratch = new float[vectors.dimension()];
+        int current = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            current = greedyClosest(unitQuery, current, l, scratch);
+        }
+
+        List<Candidate> nearest = searchLevel(unitQuery, current, Math.max(ef, k), 0, accept, scratch);
+        return nearest.size() > k ? nearest.subList(0, k) : nearest;
+    }
+
+    private int greedyClosest(float[] query, int start, int level, float[] scratch) {
+        int current = start;
+        float best = vectors.similarity(current, query, scratch);
+
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbour : links[current][level]) {
+                float similarity = vectors.similarity(neighbour, query, scratch);
+                if (similarity > best) {
+                    best = similarity;
+                    current = neighbour;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search of one level from the entry node. Every node is traversed, but only
+     * accepted ones are kept in the ef-sized result set. Returns the results, best first.
+     */
+    private List<Candidate> searchLevel(float[] query, int start, int ef, int level, IntPredicate accept, float[] scratch) {
+        BitSet visited = new BitSet(size);
+        PriorityQueue<Candidate> frontier = new PriorityQueue<>((a, b) -> Float.compare(b.similarity(), a.similarity()));
+        PriorityQueue<Candidate> results = new PriorityQueue<>((a, b) -> Float.compare(a.similarity(), b.similarity()));
+
+        Candidate first = new Candidate(start, vectors.similarity(start, query, scratch));
+        visited.set(start);
+        frontier.add(first);
+        if (accept.test(start)) {
+            results.add(first);
+        }
+
+        while (!frontier.isEmpty()) {
+            Candidate closest = frontier.poll();
+            if (results.size() >= ef && closest.similarity() < results.peek().similarity()) {
+                break;
+            }
+
+            for (int neighbour : links[closest.node()][level]) {
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+
+                float similarity = vectors.similarity(neighbour, query, scratch);
+                if (results.size() < ef || similarity > results.peek().similarity()) {
+                    Candidate candidate = new Candidate(neighbour, similarity);
+                    frontier.add(candidate);
+                    if (accept.test(neighbour)) {
+                        results.add(candidate);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Candidate> sorted = new ArrayList<>(results);
+        sorted.sort((a, b) -> Float.compare(b.similarity(), a.similarity()));
+        return sorted;
+    }
+
+    // Add target to node's links at the level, re-selecting them with the heuristic when over maxLinks
+    private void connect(int node, int target, int level, int maxLinks, float[] scratch) {
+        int[] current = links[node][level];
+        int[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = target;
+
+        if (grown.length <= maxLinks) {
+            links[node][level] = grown;
+            return;
+        }
+
+        float[] base = vectors.get(node, new float[vectors.dimension()]);
+        List<Candidate> candidates = new ArrayList<>(grown.length);
+        for (int neighbour : grown) {
+            candidates.add(new Candidate(neighbour, vectors.similarity(neighbour, base, scratch)));
+        }
+        candidates.sort((a, b) -> Float.compare(b.similarity(), a.similarity()));
+        links[node][level] = selectNeighbours(candidates, node, maxLinks, scratch);
+    }
+
+    /**
+     * Up to count of the candidates (best first) to link to node, by the paper's heuristic: a
+     * candidate is kept only if it is closer to node than to every neighbour kept so far. Plain
+     * top-count selection links a node only into its own cluster, which leaves clustered data
+     * (such as embeddings of related texts) badly connected. Places left over are filled with the
+     * nearest skipped candidates, so sparse regions keep their degree.
+     */
+    private int[] selectNeighbours(List<Candidate> candidates, int node, int count, float[] scratch) {
+        int[] selected = new int[count];
+        int size = 0;
+        List<Candidate> skipped = new ArrayList<>();
+        float[] candidateVector = new float[vectors.dimension()];
+
+        for (Candidate candidate : candidates) {
+            if (size == count) {
+                break;
+            }
+            if (candidate.node() == node) {
+                continue;
+            }
+            vectors.get(candidate.node(), candidateVector);
+            boolean diverse = true;
+            for (int i = 0; i < size && diverse; i++) {
+                diverse = vectors.similarity(selected[i], candidateVector, scratch) < candidate.similarity();
+            }
+            if (diverse) {
+                selected[size++] = candidate.node();
+            }
+            else {
+                skipped.add(candidate);
+            }
+        }
+        for (int i = 0; i < skipped.size() && size < count; i++) {
+            selected[size++] = skipped.get(i).node();
+        }
+        return size == count ? selected : Arrays.copyOf(selected, size);
+    }
+}
@@ -0,0 +1,161 @@
+package com.nxt.nxt.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Embeddings computed in-process by feature hashing, for running without a Cohere key or network
+ * (load tests, benchmarks, offline development). Not a language model: texts come out similar when
+ * they share words, word pairs and character n-grams, which is enough to exercise ranking and
+ * retrieval end to end.
+ *
+ * Each feature (lower-cased word, adjacent word pair, character n-gram of a word) is hashed to one
+ * of embedding.local.dimension slots with a hashed sign, weighted by kind, and the vector is scaled
+ * to unit length. The same text always gives the same vector, on every machine.
+ *
+ * embedding.local.latency-ms (plus up to latency-jitter-ms) is slept per call, to stand in for the
+ * round trip of a remote API.
+ */
+@Component
+@ConditionalOnProperty(name = "embedding.provider", havingValue = "local")
+public class LocalEmbeddingProvider implements EmbeddingProvider {
+
+    private static final long WORD = 0x9E3779B97F4A7C15L;
+    private static final long PAIR = 0xC2B2AE3D27D4EB4FL;
+    private static final long NGRAM = 0x165667B19E3779F9L;
+
+    private static final float WORD_WEIGHT = 1.0f;
+    private static final float PAIR_WEIGHT = 0.5f;
+    private static final float NGRAM_WEIGHT = 0.25f;
+
+    @Value("${embedding.local.dimension:1024}")
+    private int dimension;
+
+    @Value("${embedding.local.ngram-min:3}")
+    private int ngramMin;
+
+    @Value("${embedding.local.ngram-max:4}")
+    private int ngramMax;
+
+    @Value("${embedding.local.max-batch-size:96}")
+    private int maxBatchSize;
+
+    @Value("${embedding.local.latency-ms:0}")
+    private long latencyMs;
+
+    @Value("${embedding.local.latency-jitter-ms:0}")
+    private long latencyJitterMs;
+
+    @Override
+    public String model() {
+        // Part of the cache key, so vectors of another dimension or n-gram range are never reused
+        return "local-hash-" + dimension + "-" + ngramMin + "-" + ngramMax;
+    }
+
+    @Override
+    public int maxBatchSize() {
+        return maxBatchSize;
+    }
+
+    @Override
+    public List<Embedding> embed(List<String> texts) throws InterruptedException {
+        long delay = latencyMs + (latencyJitterMs > 0 ? ThreadLocalRandom.current().nextLong(latencyJitterMs + 1) : 0);
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            embeddings.add(Embedding.of(vectorOf(text)));
+        }
+        return embeddings;
+    }
+
+    float[] vectorOf(String text) {
+        float[] vector = new float[dimension];
+        String lower = text.toLowerCase(Locale.ROOT);
+
+        long previousWord = 0;
+        int start = -1;
+        for (int i = 0; i <= lower.length(); i++) {
+            boolean wordChar = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            }
+            else if (!wordChar && start >= 0) {
+                long word = hash(WORD, lower, start, i);
+                add(vector, word, WORD_WEIGHT);
+                if (previousWord != 0) {
+                    add(vector, mix(previousWord * 31 + word + PAIR), PAIR_WEIGHT);
+                }
+                addNgrams(vector, lower, start, i);
+                previousWord = word;
+                start = -1;
+            }
+        }
+
+        if (!normalize(vector)) {
+            // Only punctuation or symbols: one feature for the whole text, so it still has a direction
+            add(vector, hash(WORD, lower, 0, lower.length()), WORD_WEIGHT);
+            normalize(vector);
+        }
+        return vector;
+    }
+
+    // Character n-grams of the word padded with one boundary mark on each side, hashed in place
+    private void addNgrams(float[] vector, String text, int start, int end) {
+        int padded = end - start + 2;
+        for (int n = ngramMin; n <= ngramMax && n <= padded; n++) {
+            for (int from = 0; from + n <= padded; from++) {
+                long h = NGRAM ^ n;
+                for (int k = from; k < from + n; k++) {
+                    char c = k == 0 || k == padded - 1 ? '\u0001' : text.charAt(start + k - 1);
+                    h = (h ^ c) * 0x100000001B3L;
+                }
+                add(vector, mix(h), NGRAM_WEIGHT);
+            }
+        }
+    }
+
+    private void add(float[] vector, long hash, float weight) {
+        int slot = (int) ((hash >>> 1) % dimension);
+        vector[slot] += (hash & 1) == 0 ? weight : -weight;
+    }
+
+    // FNV-1a over the chars, finished with a mixer so every bit depends on the whole feature
+    private static long hash(long seed, String text, int start, int end) {
+        long h = seed ^ 0xCBF29CE484222325L;
+        for (int i = start; i < end; i++) {
+            h = (h ^ text.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long h) {
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    private static boolean normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm == 0) {
+            return false;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,212 @@
+package com.nxt.nxt.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-dimension float vectors in direct buffers, outside the Java heap. One ByteBuffer holds at
+ * most 2 GB, so slots are split into chunks of up to 1 GB (262,144 slots at 1024 dims): slot i is
+ * at floats [(i % chunkSlots) * dimension, ...) of chunk i / chunkSlots. The first chunk doubles
+ * when full until it reaches chunkSlots; after that whole chunks are added. The total is bounded
+ * by -XX:MaxDirectMemorySize. Vectors are stored unit-length, so the dot product of two slots is
+ * their cosine similarity.
+ * Optionally keeps the binary code (VectorQuantization.binary) of every slot on the heap as well,
+ * 128 bytes per 1024-dimension vector, for a Hamming prefilter before float scoring.
+ * Not thread-safe; EmbeddedVectorStore guards it with its lock.
+ */
+final class OffHeapVectors {
+
+    private static final boolean SIMD = VectorKernels.isAvailable();
+
+    private static final long MAX_CHUNK_BYTES = 1L << 30;
+
+    private final int dimension;
+    private final int codeWords;
+    private final int chunkSlots;
+    private final List<FloatBuffer> chunks = new ArrayList<>();
+    private long capacity;
+    // Binary code of slot i at words [i * codeWords, (i + 1) * codeWords); null when not kept
+    private long[] codes;
+    private int size;
+
+    OffHeapVectors(int dimension, int initialCapacity) {
+        this(dimension, initialCapacity, false);
+    }
+
+    OffHeapVectors(int dimension, int initialCapacity, boolean binaryCodes) {
+        this(dimension, initialCapacity, binaryCodes, (int) Math.max(1, MAX_CHUNK_BYTES / ((long) dimension * Float.BYTES)));
+    }
+
+    // chunkSlots is only set directly by tests, to cross chunk boundaries without gigabytes of vectors
+    OffHeapVectors(int dimension, int initialCapacity, boolean binaryCodes, int chunkSlots) {
+        this.dimension = dimension;
+        this.codeWords = VectorQuantization.binaryWords(dimension);
+        this.chunkSlots = chunkSlots;
+        int initial = Math.min(Math.max(1, initialCapacity), chunkSlots);
+        this.chunks.add(allocate(initial));
+        this.capacity = initial;
+        this.codes = binaryCodes ? new long[Math.multiplyExact(initial, codeWords)] : null;
+    }
+
+    boolean hasBinaryCodes() {
+        return codes != null;
+    }
+
+    int dimension() {
+        return dimension;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Append the vector, normalized to unit length. Returns its slot.
+     */
+    int add(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Vector dimension " + vector.length + ", store dimension " + dimension);
+        }
+        ensureCapacity(size + 1);
+        float[] unit = normalize(vector);
+        chunk(size).put(offset(size), unit);
+        encode(size, unit);
+        return size++;
+    }
+
+    /**
+     * Append a vector that is already unit-length (copied from another store). Returns its slot.
+     */
+    int addUnit(float[] unit) {
+        ensureCapacity(size + 1);
+        chunk(size).put(offset(size), unit);
+        encode(size, unit);
+        return size++;
+    }
+
+    /**
+     * Append vectors that are already unit-length (a snapshot being loaded), copied in bulk.
+     */
+    void addUnit(FloatBuffer vectors, int count) {
+        ensureCapacity(size + count);
+        int from = vectors.position();
+        // One bulk copy per chunk the slots fall into
+        for (int copied = 0; copied < count; ) {
+            int slot = size + copied;
+            int run = Math.min(count - copied, chunkSlots - slot % chunkSlots);
+            chunk(slot).put(offset(slot), vectors, from + copied * dimension, run * dimension);
+            copied += run;
+        }
+        if (codes != null) {
+            float[] scratch = new float[dimension];
+            for (int slot = size; slot < size + count; slot++) {
+                encode(slot, get(slot, scratch));
+            }
+        }
+        size += count;
+    }
+
+    /**
+     * Copy a slot into the given array (of length dimension) and return it.
+     */
+    float[] get(int slot, float[] into) {
+        chunk(slot).get(offset(slot), into);
+        return into;
+    }
+
+    /**
+     * Cosine similarity of a slot with a unit-length query. scratch is a dimension-length array
+     * the slot is copied into so the dot product runs on the SIMD kernel.
+     */
+    float similarity(int slot, float[] unitQuery, float[] scratch) {
+        chunk(slot).get(offset(slot), scratch);
+        return SIMD ? VectorKernels.dot(scratch, unitQuery) : scalarDot(scratch, unitQuery);
+    }
+
+    /**
+     * Hamming distance between a slot's binary code and the query's. Only with binary codes kept.
+     */
+    int hamming(int slot, long[] queryCode) {
+        return VectorQuantization.hamming(queryCode, codes, slot * codeWords);
+    }
+
+    static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+
+        float[] unit = new float[vector.length];
+        if (norm == 0) {
+            return unit;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            unit[i] = (float) (vector[i] / norm);
+        }
+        return unit;
+    }
+
+    private static float scalarDot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private FloatBuffer chunk(int slot) {
+        return chunks.get(slot / chunkSlots);
+    }
+
+    private int offset(int slot) {
+        return slot % chunkSlots * dimension;
+    }
+
+    private void ensureCapacity(int slots) {
+        if (slots < 0) {
+            throw new IllegalStateException("Vector store is full at " + size + " slots");
+        }
+        if (slots <= capacity) {
+            return;
+        }
+
+        if (chunks.size() == 1 && capacity < chunkSlots) {
+            // Still one partial chunk: grow it by doubling, up to a full chunk
+            long grown = capacity;
+            while (grown < slots && grown < chunkSlots) {
+                grown = Math.max(grown * 2, grown + 1);
+            }
+            int first = (int) Math.min(grown, chunkSlots);
+            FloatBuffer larger = allocate(first);
+            larger.put(0, chunks.get(0), 0, size * dimension);
+            chunks.set(0, larger);
+            capacity = first;
+        }
+        while (capacity < slots) {
+            chunks.add(allocate(chunkSlots));
+            capacity += chunkSlots;
+        }
+
+        if (codes != null && (long) codes.length < capacity * codeWords) {
+            long[] largerCodes = new long[Math.toIntExact(Math.multiplyExact(capacity, (long) codeWords))];
+            System.arraycopy(codes, 0, largerCodes, 0, size * codeWords);
+            codes = largerCodes;
+        }
+    }
+
+    private void encode(int slot, float[] unit) {
+        if (codes != null) {
+            VectorQuantization.binaryInto(unit, codes, slot * codeWords);
+        }
+    }
+
+    private FloatBuffer allocate(int slots) {
+        return ByteBuffer.allocateDirect(Math.multiplyExact(Math.multiplyExact(slots, dimension), Float.BYTES))
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+    }
+}
@@ -0,0 +1,109 @@
+package com.nxt.nxt.util;
+
+import java.util.Map;
+
+import io.qdrant.client.grpc.Points.Condition;
+import io.qdrant.client.grpc.Points.FieldCondition;
+import io.qdrant.client.grpc.Points.Filter;
+import io.qdrant.client.grpc.Points.Match;
+import io.qdrant.client.grpc.Points.Range;
+
+/**
+ * Evaluates a Qdrant Filter against a payload map in process, with Qdrant's semantics:
+ * every must, at least one should (if any), no must_not. Supports the conditions the app
+ * builds (keyword/integer/bool match, any/except lists, range, is_empty, is_null, has_id and
+ * nested filters); anything else is rejected rather than silently matching.
+ */
+final class PayloadFilter {
+
+    private PayloadFilter() {}
+
+    static boolean matches(Filter filter, String pointId, Map<String, Object> payload) {
+        for (Condition condition : filter.getMustList()) {
+            if (!matches(condition, pointId, payload)) {
+                return false;
+            }
+        }
+        for (Condition condition : filter.getMustNotList()) {
+            if (matches(condition, pointId, payload)) {
+                return false;
+            }
+        }
+        if (filter.getShouldCount() == 0) {
+            return true;
+        }
+        for (Condition condition : filter.getShouldList()) {
+            if (matches(condition, pointId, payload)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The username every matching point must have, if the filter pins one with a top-level must.
+     */
+    static String requiredUsername(Filter filter) {
+        for (Condition condition : filter.getMustList()) {
+            if (condition.hasField() && condition.getField().getKey().equals("username")
+                    && condition.getField().getMatch().getMatchValueCase() == Match.MatchValueCase.KEYWORD) {
+                return condition.getField().getMatch().getKeyword();
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(Condition condition, String pointId, Map<String, Object> payload) {
+        return switch (condition.getConditionOneOfCase()) {
+            case FIELD -> matches(condition.getField(), payload.get(condition.getField().getKey()));
+            case IS_EMPTY -> isEmpty(payload.get(condition.getIsEmpty().getKey()));
+            case IS_NULL -> payload.containsKey(condition.getIsNull().getKey()) && payload.get(condition.getIsNull().getKey()) == null;
+            case HAS_ID -> condition.getHasId().getHasIdList().stream()
+                    .map(VectorPayloads::pointIdToString)
+                    .anyMatch(pointId::equals);
+            case FILTER -> matches(condition.getFilter(), pointId, payload);
+            default -> throw new UnsupportedOperationException(
+                    "Condition not supported by the embedded vector store: " + condition.getConditionOneOfCase());
+        };
+    }
+
+    private static boolean matches(FieldCondition field, Object value) {
+        if (field.hasMatch()) {
+            return matches(field.getMatch(), value);
+        }
+        if (field.hasRange()) {
+            return value instanceof Number number && inRange(field.getRange(), number.doubleValue());
+        }
+        throw new UnsupportedOperationException("Field condition not supported by the embedded vector store: " + field);
+    }
+
+    private static boolean matches(Match match, Object value) {
+        return switch (match.getMatchValueCase()) {
+            case KEYWORD -> value instanceof String string && string.equals(match.getKeyword());
+            case INTEGER -> isInteger(value) && ((Number) value).longValue() == match.getInteger();
+            case BOOLEAN -> value instanceof Boolean bool && bool == match.getBoolean();
+            case KEYWORDS -> value instanceof String string && match.getKeywords().getStringsList().contains(string);
+            case INTEGERS -> isInteger(value) && match.getIntegers().getIntegersList().contains(((Number) value).longValue());
+            case EXCEPT_KEYWORDS -> !(value instanceof String string) || !match.getExceptKeywords().getStringsList().contains(string);
+            case EXCEPT_INTEGERS -> !isInteger(value) || !match.getExceptIntegers().getIntegersList().contains(((Number) value).longValue());
+            default -> throw new UnsupportedOperationException(
+                    "Match not supported by the embedded vector store: " + match.getMatchValueCase());
+        };
+    }
+
+    private static boolean inRange(Range range, double value) {
+        return (!range.hasGt() || value > range.getGt())
+                && (!range.hasGte() || value >= range.getGte())
+                && (!range.hasLt() || value < range.getLt())
+                && (!range.hasLte() || value <= range.getLte());
+    }
+
+    // Qdrant treats a missing key, null and an empty array as empty; "" is a value
+    private static boolean isEmpty(Object value) {
+        return value == null;
+    }
+
+    private static boolean isInteger(Object value) {
+        return value instanceof Long || value instanceof Integer;
+    }
+}
@@ -1,17 +1,34 @@
 package com.nxt.nxt.util;
 
-import java.util.List;
-
+/**
+ * Scores posts for one user from similarity, recency and engagement.
+ * The user vector is normalized once in the constructor, so scoring a post is a single
+ * pass over its vector. Similarity uses the JDK Vector API when the jdk.incubator.vector
+ * module is present (--add-modules jdk.incubator.vector) and plain loops otherwise.
+ */
 public class PostRankScorer {
     double likeCoefficient = 0.3;
     double commentCoefficient = 0.7;
 
     double timeCoefficient = 0.01;
-    
+
     double similarityCoefficient = 0.8;
     double recencyCoefficient = 0.195;
     double engagementCoefficient = 0.00005;
 
+    private static final boolean SIMD = VectorKernels.isAvailable();
+
+    // Unit-length user vector; all zeros if the user vector was zero
+    private final float[] userUnit;
+
+    public PostRankScorer(float[] userVector) {
+        this.userUnit = normalize(userVector);
+    }
+
+    public static boolean isVectorized() {
+        return SIMD;
+    }
+
     public double engagementScore(int likes, int comments){
         return (likes * likeCoefficient) + (comments * commentCoefficient);
     }
@@ -20,37 +37,80 @@ public class PostRankScorer {
         return Math.exp(-timeCoefficient * postAgeInHours);
     }
 
-    public double similarityScore(List<Double> postVector, List<Double> userVector){
-        double score = 0;
-        double normA = 0;
-        double normB = 0;
-
-        for (int i = 0; i < postVector.size(); i++) {
-            score += postVector.get(i) * userVector.get(i);
-            normA += Math.pow(postVector.get(i), 2);
-            normB += Math.pow(userVector.get(i), 2);
+    /**
+     * Cosine similarity between the post vector and the user vector.
+     * Returns 0 for a zero post vector. Clamped to [-1, 1], which float rounding can overshoot
+     * slightly, so maxScore stays a true upper bound.
+     */
+    public double similarityScore(float[] postVector) {
+        if (postVector.length != userUnit.length) {
+            throw new IllegalArgumentException(
+                    "Vector dimension mismatch: post " + postVector.length + ", user " + userUnit.length);
         }
 
-        normA = Math.sqrt(normA);
-        normB = Math.sqrt(normB);
-        
-        if (normA != 0 && normB != 0) {
-            score /= (normA * normB);
-        }
-
-        return score;
+        double cosine = SIMD ? VectorKernels.cosineToUnit(postVector, userUnit) : scalarCosineToUnit(postVector, userUnit);
+        return Math.max(-1, Math.min(1, cosine));
     }
 
-    public double overallScore(int likes, int comments, int postAgeInHours, List<Double> postVector, List<Double> userVector) {
+    public double overallScore(int likes, int comments, int postAgeInHours, float[] postVector) {
         double engagement = engagementScore(likes, comments);
         double recency = recencyScore(postAgeInHours);
-        double similarity = similarityScore(postVector, userVector);
+        double similarity = similarityScore(postVector);
+
+        return (engagement * engagementCoefficient) + (recency * recencyCoefficient) + (similarity * similarityCoefficient);
+    }
+
+    /**
+     * Highest overall score a post of this age could reach, given the largest engagement in the
+     * candidate set. Similarity is a cosine, so it contributes at most similarityCoefficient.
+     * Recency only falls with age, so once this drops below the K-th best score no older post can rank.
+     * Each count is taken as at least 0, the count of a post nobody voted on or commented on.
+     */
+    public double maxScore(int postAgeInHours, int maxLikes, int maxComments) {
+        double engagement = engagementScore(Math.max(0, maxLikes), Math.max(0, maxComments));
+        return (engagement * engagementCoefficient) + (recencyScore(postAgeInHours) * recencyCoefficient) + similarityCoefficient;
+    }
 
-        double score = (engagement * engagementCoefficient) + (recency * recencyCoefficient) + (similarity * similarityCoefficient);
+    /**
+     * Overall scores for many posts at once; index i of every array describes the same post.
+     */
+    public double[] scoreBatch(float[][] posts, int[] likes, int[] comments, int[] postAgeInHours) {
+        if (likes.length != posts.length || comments.length != posts.length || postAgeInHours.length != posts.length) {
+            throw new IllegalArgumentException("All batch arrays must have one entry per post");
+        }
 
-        System.out.println("\nEngagement Score: " + engagement + "\nRecency Score: " + recency + "\nSimilarity Score: " + similarity + "\nOverall score: " + score);
+        double[] scores = new double[posts.length];
+        for (int i = 0; i < posts.length; i++) {
+            scores[i] = overallScore(likes[i], comments[i], postAgeInHours[i], posts[i]);
+        }
+        return scores;
+    }
 
-        return score;
+    // Cosine of a against an already unit-length vector: dot and |a| in one pass
+    static double scalarCosineToUnit(float[] a, float[] unit) {
+        float dot = 0;
+        float norm = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * unit[i];
+            norm += a[i] * a[i];
+        }
+        return norm > 0 ? dot / Math.sqrt(norm) : 0;
     }
 
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+
+        float[] unit = new float[vector.length];
+        if (norm == 0) {
+            return unit;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            unit[i] = (float) (vector[i] / norm);
+        }
+        return unit;
+    }
 }
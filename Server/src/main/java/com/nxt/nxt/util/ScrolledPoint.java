@@ -0,0 +1,15 @@
+package com.nxt.nxt.util;
+
+import java.util.Map;
+
+/**
+ * One point returned by VectorDB.scroll: point id, payload (empty if not requested)
+ * and the stored "text" vector (null if not requested).
+ */
+public record ScrolledPoint(String id, Map<String, Object> payload, float[] vector) {
+
+    public String text() {
+        Object text = payload.get("text");
+        return text != null ? text.toString() : null;
+    }
+}
@@ -0,0 +1,36 @@
+package com.nxt.nxt.util;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * One point returned by a VectorDB search: point id, similarity score, payload and,
+ * when the search asked for it (SearchOptions.withVectors), the stored "text" vector; null otherwise.
+ */
+public record SearchHit(String id, float score, Map<String, Object> payload, float[] vector) {
+
+    public SearchHit(String id, float score, Map<String, Object> payload) {
+        this(id, score, payload, null);
+    }
+
+    public String text() {
+        Object text = payload.get("text");
+        return text != null ? text.toString() : null;
+    }
+
+    /**
+     * The post this point belongs to, or null for non-post points and legacy points without a post_id.
+     */
+    public UUID postId() {
+        Object postId = payload.get("post_id");
+        if (postId == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(postId.toString());
+        }
+        catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
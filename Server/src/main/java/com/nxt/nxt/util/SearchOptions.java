@@ -0,0 +1,21 @@
+package com.nxt.nxt.util;
+
+/**
+ * How many hits a VectorDB search returns and what they carry.
+ * scoreThreshold drops hits less similar than it (null keeps all); includeVectors returns
+ * each hit's stored vector so callers can reuse it instead of re-embedding.
+ */
+public record SearchOptions(int k, Float scoreThreshold, boolean includeVectors) {
+
+    public static SearchOptions top(int k) {
+        return new SearchOptions(k, null, false);
+    }
+
+    public SearchOptions minScore(float scoreThreshold) {
+        return new SearchOptions(k, scoreThreshold, includeVectors);
+    }
+
+    public SearchOptions withVectors() {
+        return new SearchOptions(k, scoreThreshold, true);
+    }
+}
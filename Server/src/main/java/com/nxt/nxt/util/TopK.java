@@ -0,0 +1,70 @@
+package com.nxt.nxt.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the K highest-scoring items seen so far in a min-heap, so memory stays O(K)
+ * however many items are offered.
+ */
+public class TopK<T> {
+
+    private record Entry<T>(T item, double score) {}
+
+    private final int k;
+    private final PriorityQueue<Entry<T>> heap;
+
+    public TopK(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive: " + k);
+        }
+        this.k = k;
+        this.heap = new PriorityQueue<>(k, (a, b) -> Double.compare(a.score(), b.score()));
+    }
+
+    /**
+     * Add the item if it beats the current K-th best. Returns whether it was kept.
+     */
+    public boolean offer(T item, double score) {
+        if (heap.size() < k) {
+            heap.add(new Entry<>(item, score));
+            return true;
+        }
+        if (score <= heap.peek().score()) {
+            return false;
+        }
+        heap.poll();
+        heap.add(new Entry<>(item, score));
+        return true;
+    }
+
+    public boolean isFull() {
+        return heap.size() == k;
+    }
+
+    /**
+     * Score an item must beat to get in; negative infinity until K items are held.
+     */
+    public double threshold() {
+        return isFull() ? heap.peek().score() : Double.NEGATIVE_INFINITY;
+    }
+
+    public int size() {
+        return heap.size();
+    }
+
+    /**
+     * Held items, best first.
+     */
+    public List<T> toSortedList() {
+        List<Entry<T>> entries = new ArrayList<>(heap);
+        entries.sort((a, b) -> Double.compare(b.score(), a.score()));
+
+        List<T> items = new ArrayList<>(entries.size());
+        for (Entry<T> entry : entries) {
+            items.add(entry.item());
+        }
+        return items;
+    }
+}
@@ -0,0 +1,16 @@
+package com.nxt.nxt.util;
+
+import java.util.List;
+
+/**
+ * Outcome of VectorDB.upsertBatch: how many points were written and which ones were not, with why.
+ */
+public record UpsertResult(int upserted, List<PointFailure> failures) {
+
+    public record PointFailure(String pointId, String error) {
+    }
+
+    public boolean isComplete() {
+        return failures.isEmpty();
+    }
+}
@@ -0,0 +1,381 @@
+package com.nxt.nxt.util;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import io.qdrant.client.QdrantClient;
+import io.qdrant.client.grpc.Collections.BinaryQuantization;
+import io.qdrant.client.grpc.Collections.CollectionInfo;
+import io.qdrant.client.grpc.Collections.CreateCollection;
+import io.qdrant.client.grpc.Collections.Distance;
+import io.qdrant.client.grpc.Collections.HnswConfigDiff;
+import io.qdrant.client.grpc.Collections.KeywordIndexParams;
+import io.qdrant.client.grpc.Collections.PayloadIndexParams;
+import io.qdrant.client.grpc.Collections.PayloadSchemaInfo;
+import io.qdrant.client.grpc.Collections.PayloadSchemaType;
+import io.qdrant.client.grpc.Collections.QuantizationConfig;
+import io.qdrant.client.grpc.Collections.QuantizationConfigDiff;
+import io.qdrant.client.grpc.Collections.QuantizationType;
+import io.qdrant.client.grpc.Collections.ScalarQuantization;
+import io.qdrant.client.grpc.Collections.UpdateCollection;
+import io.qdrant.client.grpc.Collections.VectorParams;
+import io.qdrant.client.grpc.Collections.VectorParamsDiff;
+import io.qdrant.client.grpc.Collections.VectorParamsDiffMap;
+import io.qdrant.client.grpc.Collections.VectorParamsMap;
+import io.qdrant.client.grpc.Collections.VectorsConfig;
+import io.qdrant.client.grpc.Collections.VectorsConfigDiff;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Creates the Qdrant collection on startup if it is missing, or brings an existing one in line:
+ * keyword payload indexes for every filtered field, HNSW m / ef_construct, and optionally
+ * quantization with the original vectors moved to disk: scalar int8 (4x smaller in RAM) or binary
+ * (one bit per dimension, 32x smaller; searched by Hamming distance and rescored with the
+ * originals, see qdrant.search.oversampling).
+ *
+ * With qdrant.collection.tenant.enabled the username index is a tenant index (is_tenant): Qdrant
+ * stores each user's points together and builds a per-user HNSW graph (payload_m), so a search
+ * filtered by username only reads that user's segment instead of filtering the whole collection.
+ * An existing plain username index is dropped and re-created as a tenant index.
+ * Every step is idempotent and only sent when the collection differs. Failures are reported,
+ * never thrown, so the app still starts when Qdrant is unreachable.
+ */
+@Component
+@ConditionalOnProperty(name = "vector.store", havingValue = "qdrant", matchIfMissing = true)
+public class VectorCollectionBootstrap {
+
+    private static final String VECTOR_NAME = "text";
+
+    // Fields used in search filters; created_at is range-filtered by feed recall
+    private static final Map<String, PayloadSchemaType> PAYLOAD_INDEXES = Map.of(
+        "username", PayloadSchemaType.Keyword,
+        "post", PayloadSchemaType.Keyword,
+        "pdfdata", PayloadSchemaType.Keyword,
+        "chat", PayloadSchemaType.Keyword,
+        "created_at", PayloadSchemaType.Integer
+    );
+
+    private static final String TENANT_FIELD = "username";
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final VectorDB vectorDB;
+
+    @Value("${qdrant.collection.bootstrap:true}")
+    private boolean enabled;
+
+    // Cohere embed-english-v3.0
+    @Value("${qdrant.collection.dimension:1024}")
+    private int dimension;
+
+    @Value("${qdrant.collection.hnsw.m:16}")
+    private long hnswM;
+
+    @Value("${qdrant.collection.hnsw.ef-construct:100}")
+    private long hnswEfConstruct;
+
+    // Per-tenant graph degree; 0 leaves per-user searches to the global graph
+    @Value("${qdrant.collection.hnsw.payload-m:16}")
+    private long hnswPayloadM;
+
+    @Value("${qdrant.collection.tenant.enabled:true}")
+    private boolean tenantEnabled;
+
+    @Value("${qdrant.collection.quantization.enabled:false}")
+    private boolean quantizationEnabled;
+
+    // int8 (scalar) or binary
+    @Value("${qdrant.collection.quantization.type:int8}")
+    private String quantizationType;
+
+    @Value("${qdrant.collection.quantization.quantile:0.99}")
+    private float quantile;
+
+    @Value("${qdrant.collection.quantization.always-ram:true}")
+    private boolean quantizedAlwaysRam;
+
+    // What the last bootstrap run did, for the diagnostics endpoint
+    private volatile Map<String, Object> lastRun = Map.of("ran", false);
+
+    public VectorCollectionBootstrap(VectorDB vectorDB) {
+        this.vectorDB = vectorDB;
+    }
+
+    // Runs before CommandLineRunners such as the post embedding backfill write to the collection
+    @PostConstruct
+    void init() {
+        if (enabled) {
+            bootstrap();
+        }
+    }
+
+    /**
+     * Create or verify the collection. Returns (and keeps for describe) the list of changes made.
+     */
+    public synchronized Map<String, Object> bootstrap() {
+        QdrantClient client = vectorDB.client();
+        String collection = vectorDB.collectionName();
+        List<String> actions = new ArrayList<>();
+        Map<String, Object> run = new LinkedHashMap<>();
+        run.put("ran", true);
+        run.put("at", Instant.now().toString());
+        run.put("actions", actions);
+
+        try {
+            if (client == null) {
+                throw new IllegalStateException("Qdrant client is not initialized");
+            }
+
+            if (!client.collectionExistsAsync(collection, TIMEOUT).get()) {
+                createCollection(client, collection);
+                actions.add("created collection " + collection);
+            }
+            else {
+                updateCollection(client, collection, actions);
+            }
+
+            createMissingIndexes(client, collection, actions);
+            run.put("success", true);
+        }
+        catch (Exception e) {
+            System.err.println("Qdrant collection bootstrap failed: " + e.getMessage());
+            run.put("success", false);
+            run.put("error", String.valueOf(e.getMessage()));
+        }
+
+        for (String action : actions) {
+            System.out.println("Qdrant collection bootstrap: " + action);
+        }
+
+        lastRun = run;
+        return run;
+    }
+
+    /**
+     * The configuration Qdrant reports for the collection right now, with what was requested
+     * and what the last bootstrap changed.
+     */
+    public Map<String, Object> describe() throws Exception {
+        CollectionInfo info = vectorDB.client().getCollectionInfoAsync(vectorDB.collectionName(), TIMEOUT).get();
+
+        Map<String, Object> applied = new LinkedHashMap<>();
+        applied.put("collection", vectorDB.collectionName());
+        applied.put("status", info.getStatus().name());
+        applied.put("pointsCount", info.getPointsCount());
+        applied.put("indexedVectorsCount", info.getIndexedVectorsCount());
+        applied.put("segmentsCount", info.getSegmentsCount());
+
+        VectorParams params = textVectorParams(info);
+        if (params != null) {
+            applied.put("vector", Map.of(
+                "name", VECTOR_NAME,
+                "size", params.getSize(),
+                "distance", params.getDistance().name(),
+                "onDisk", params.getOnDisk()
+            ));
+        }
+
+        HnswConfigDiff hnsw = info.getConfig().getHnswConfig();
+        applied.put("hnsw", Map.of("m", hnsw.getM(), "efConstruct", hnsw.getEfConstruct(), "payloadM", hnsw.getPayloadM()));
+
+        QuantizationConfig quantization = info.getConfig().getQuantizationConfig();
+        if (quantization.hasScalar()) {
+            applied.put("quantization", Map.of("type", quantization.getScalar().getType().name(),
+                    "quantile", quantization.getScalar().getQuantile(),
+                    "alwaysRam", quantization.getScalar().getAlwaysRam()));
+        }
+        else if (quantization.hasBinary()) {
+            applied.put("quantization", Map.of("type", "Binary", "alwaysRam", quantization.getBinary().getAlwaysRam()));
+        }
+        else {
+            applied.put("quantization", quantization.getQuantizationCase().name());
+        }
+
+        Map<String, Object> indexes = new TreeMap<>();
+        for (Map.Entry<String, PayloadSchemaInfo> entry : info.getPayloadSchemaMap().entrySet()) {
+            indexes.put(entry.getKey(), Map.of(
+                "type", entry.getValue().getDataType().name(),
+                "points", entry.getValue().getPoints(),
+                "tenant", isTenantIndex(entry.getValue())
+            ));
+        }
+        applied.put("payloadIndexes", indexes);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("applied", applied);
+        result.put("requested", requested());
+        result.put("lastBootstrap", lastRun);
+        return result;
+    }
+
+    private Map<String, Object> requested() {
+        Map<String, Object> requested = new LinkedHashMap<>();
+        requested.put("dimension", dimension);
+        requested.put("hnsw", tenantEnabled
+                ? Map.of("m", hnswM, "efConstruct", hnswEfConstruct, "payloadM", hnswPayloadM)
+                : Map.of("m", hnswM, "efConstruct", hnswEfConstruct));
+        requested.put("tenantField", tenantEnabled ? TENANT_FIELD : "none");
+        if (!quantizationEnabled) {
+            requested.put("quantization", "unchanged");
+        }
+        else if (binaryQuantization()) {
+            requested.put("quantization", Map.of("type", "Binary", "alwaysRam", quantizedAlwaysRam, "originalsOnDisk", true));
+        }
+        else {
+            requested.put("quantization", Map.of("type", "Int8", "quantile", quantile, "alwaysRam", quantizedAlwaysRam, "originalsOnDisk", true));
+        }
+        requested.put("payloadIndexes", new TreeMap<>(PAYLOAD_INDEXES));
+        return requested;
+    }
+
+    private void createCollection(QdrantClient client, String collection) throws Exception {
+        VectorParams.Builder vector = VectorParams.newBuilder()
+                .setSize(dimension)
+                .setDistance(Distance.Cosine)
+                // Quantized vectors serve the search; originals are only read to rescore
+                .setOnDisk(quantizationEnabled);
+
+        CreateCollection.Builder request = CreateCollection.newBuilder()
+                .setCollectionName(collection)
+                .setVectorsConfig(VectorsConfig.newBuilder()
+                        .setParamsMap(VectorParamsMap.newBuilder().putMap(VECTOR_NAME, vector.build())))
+                .setHnswConfig(hnswConfig());
+
+        if (quantizationEnabled) {
+            request.setQuantizationConfig(quantizationConfig());
+        }
+
+        client.createCollectionAsync(request.build(), TIMEOUT).get();
+    }
+
+    private void updateCollection(QdrantClient client, String collection, List<String> actions) throws Exception {
+        CollectionInfo info = client.getCollectionInfoAsync(collection, TIMEOUT).get();
+
+        VectorParams params = textVectorParams(info);
+        if (params == null) {
+            throw new IllegalStateException("Collection " + collection + " has no \"" + VECTOR_NAME + "\" vector");
+        }
+        if (params.getSize() != dimension) {
+            // Re-creating would drop every point; leave it to an operator
+            throw new IllegalStateException("Collection " + collection + " stores " + params.getSize()
+                    + "-dimensional vectors, expected " + dimension);
+        }
+
+        UpdateCollection.Builder update = UpdateCollection.newBuilder().setCollectionName(collection);
+        boolean changed = false;
+
+        HnswConfigDiff hnsw = info.getConfig().getHnswConfig();
+        if (hnsw.getM() != hnswM || hnsw.getEfConstruct() != hnswEfConstruct) {
+            update.setHnswConfig(hnswConfig());
+            actions.add("HNSW m " + hnsw.getM() + " -> " + hnswM + ", ef_construct " + hnsw.getEfConstruct() + " -> " + hnswEfConstruct);
+            changed = true;
+        }
+        if (tenantEnabled && hnsw.getPayloadM() != hnswPayloadM) {
+            update.setHnswConfig(hnswConfig());
+            actions.add("HNSW payload_m " + hnsw.getPayloadM() + " -> " + hnswPayloadM);
+            changed = true;
+        }
+
+        // Quantization is only ever switched on here; turning it off stays a manual decision
+        if (quantizationEnabled) {
+            QuantizationConfig wanted = quantizationConfig();
+            QuantizationConfig current = info.getConfig().getQuantizationConfig();
+            if (!current.equals(wanted)) {
+                if (binaryQuantization()) {
+                    update.setQuantizationConfig(QuantizationConfigDiff.newBuilder().setBinary(wanted.getBinary()));
+                    actions.add("enabled binary quantization");
+                }
+                else {
+                    update.setQuantizationConfig(QuantizationConfigDiff.newBuilder().setScalar(wanted.getScalar()));
+                    actions.add("enabled scalar int8 quantization (quantile " + quantile + ")");
+                }
+                changed = true;
+            }
+            if (!params.getOnDisk()) {
+                update.setVectorsConfig(VectorsConfigDiff.newBuilder()
+                        .setParamsMap(VectorParamsDiffMap.newBuilder()
+                                .putMap(VECTOR_NAME, VectorParamsDiff.newBuilder().setOnDisk(true).build())));
+                actions.add("moved original vectors on disk");
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            client.updateCollectionAsync(update.build(), TIMEOUT).get();
+        }
+    }
+
+    private void createMissingIndexes(QdrantClient client, String collection, List<String> actions) throws Exception {
+        Map<String, PayloadSchemaInfo> existing = client.getCollectionInfoAsync(collection, TIMEOUT).get().getPayloadSchemaMap();
+
+        for (Map.Entry<String, PayloadSchemaType> index : new TreeMap<>(PAYLOAD_INDEXES).entrySet()) {
+            boolean tenant = tenantEnabled && TENANT_FIELD.equals(index.getKey());
+            PayloadSchemaInfo current = existing.get(index.getKey());
+            if (current != null && current.getDataType() == index.getValue() && isTenantIndex(current) == tenant) {
+                continue;
+            }
+
+            // Index parameters cannot be changed in place; the index is rebuilt from the stored payloads
+            if (current != null) {
+                client.deletePayloadIndexAsync(collection, index.getKey(), true, null, TIMEOUT).get();
+                actions.add("dropped payload index on " + index.getKey());
+            }
+
+            PayloadIndexParams params = tenant
+                    ? PayloadIndexParams.newBuilder().setKeywordIndexParams(KeywordIndexParams.newBuilder().setIsTenant(true)).build()
+                    : null;
+            client.createPayloadIndexAsync(collection, index.getKey(), index.getValue(), params, true, null, TIMEOUT).get();
+            actions.add("created " + (tenant ? "tenant " : "") + index.getValue().name().toLowerCase() + " payload index on " + index.getKey());
+        }
+    }
+
+    private HnswConfigDiff hnswConfig() {
+        HnswConfigDiff.Builder hnsw = HnswConfigDiff.newBuilder()
+                .setM(hnswM)
+                .setEfConstruct(hnswEfConstruct);
+        if (tenantEnabled) {
+            hnsw.setPayloadM(hnswPayloadM);
+        }
+        return hnsw.build();
+    }
+
+    private static boolean isTenantIndex(PayloadSchemaInfo index) {
+        return index.hasParams() && index.getParams().hasKeywordIndexParams()
+                && index.getParams().getKeywordIndexParams().getIsTenant();
+    }
+
+    private boolean binaryQuantization() {
+        return "binary".equalsIgnoreCase(quantizationType);
+    }
+
+    private QuantizationConfig quantizationConfig() {
+        if (binaryQuantization()) {
+            return QuantizationConfig.newBuilder()
+                    .setBinary(BinaryQuantization.newBuilder().setAlwaysRam(quantizedAlwaysRam))
+                    .build();
+        }
+        return QuantizationConfig.newBuilder().setScalar(scalarQuantization()).build();
+    }
+
+    private ScalarQuantization scalarQuantization() {
+        return ScalarQuantization.newBuilder()
+                .setType(QuantizationType.Int8)
+                .setQuantile(quantile)
+                .setAlwaysRam(quantizedAlwaysRam)
+                .build();
+    }
+
+    private static VectorParams textVectorParams(CollectionInfo info) {
+        VectorsConfig vectors = info.getConfig().getParams().getVectorsConfig();
+        return vectors.hasParamsMap() ? vectors.getParamsMap().getMapMap().get(VECTOR_NAME) : null;
+    }
+}
@@ -1,32 +1,62 @@
 package com.nxt.nxt.util;
 
-import static io.qdrant.client.PointIdFactory.id;
-import static io.qdrant.client.VectorFactory.vector;
 import static io.qdrant.client.VectorsFactory.namedVectors;
-import static io.qdrant.client.ConditionFactory.matchKeyword;
 import static io.qdrant.client.QueryFactory.nearest;
 
 import io.qdrant.client.QdrantClient;
 import io.qdrant.client.QdrantGrpcClient;
+import io.qdrant.client.grpc.Points.PointId;
 import io.qdrant.client.grpc.Points.PointStruct;
+import io.qdrant.client.grpc.Points.UpdateResult;
+import io.qdrant.client.grpc.Points.RetrievedPoint;
+import io.qdrant.client.grpc.Points.ScrollPoints;
+import io.qdrant.client.grpc.Points.ScrollResponse;
 import io.qdrant.client.grpc.Points.SearchPoints;
+import io.qdrant.client.grpc.Points.QuantizationSearchParams;
 import io.qdrant.client.grpc.Points.ScoredPoint;
+import io.qdrant.client.grpc.Points.Vector;
+import io.qdrant.client.grpc.Points.VectorOutput;
 import io.qdrant.client.grpc.Points.WithPayloadSelector;
+import io.qdrant.client.grpc.Points.WithVectorsSelector;
 import io.qdrant.client.grpc.Points.Filter;
 import io.qdrant.client.grpc.Points.QueryPoints;
 import io.qdrant.client.grpc.Points.SearchParams;
 import jakarta.annotation.PostConstruct;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.Internal;
+
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
+/**
+ * VectorStore on a Qdrant collection over gRPC (vector.store=qdrant, the default).
+ */
 @Component
-public class VectorDB {
+@ConditionalOnProperty(name = "vector.store", havingValue = "qdrant", matchIfMissing = true)
+public class VectorDB implements VectorStore {
 
     private QdrantClient client;
 
@@ -42,7 +72,21 @@ public class VectorDB {
     @Value("${qdrant.api.tls}")
     private boolean useTls;
 
-    private String collectionName = "nexara";
+    @Value("${qdrant.upsert.batch-size:64}")
+    private int upsertBatchSize;
+
+    @Value("${qdrant.upsert.max-in-flight:4}")
+    private int upsertMaxInFlight;
+
+    // Candidates fetched per result and rescored with the original vectors on quantized collections; 0 leaves Qdrant's default
+    @Value("${qdrant.search.oversampling:0}")
+    private double searchOversampling;
+
+    @Value("${qdrant.deadline-ms:2000}")
+    private long deadlineMs;
+
+    @Value("${qdrant.collection.name:nexara}")
+    private String collectionName;
 
     @PostConstruct
     public void initClient() {
@@ -70,179 +114,374 @@ public class VectorDB {
     }
 
     /**
-     * Upsert data with username and one keyword (text, post, chat, pdfdata).
-     * Always insert the data in "text", and set the keyword for that TRUE.
+     * Write many points with as few round trips as possible. Points are sent in chunks of
+     * qdrant.upsert.batch-size, with at most qdrant.upsert.max-in-flight chunks outstanding at once;
+     * each chunk has its own deadline. The future never fails: points that were rejected up front
+     * or whose chunk failed are listed in the result.
      */
-    public void upsertData(Long pointId, List<Double> vector, String keyword, String keywordValue, String username) {
-        try {
-            List<Float> floatVector = vector.stream()
-                    .map(Double::floatValue)
-                    .toList();
+    @Override
+    public CompletableFuture<UpsertResult> upsertBatchAsync(List<VectorPoint> points, Duration deadline) {
+        List<UpsertResult.PointFailure> failures = Collections.synchronizedList(new ArrayList<>());
+        List<VectorPoint> valid = new ArrayList<>();
+
+        for (VectorPoint point : points) {
+            if (point.vector() == null || point.vector().isEmpty()) {
+                failures.add(new UpsertResult.PointFailure(point.idString(), "empty vector"));
+            }
+            else {
+                valid.add(point);
+            }
+        }
 
-            Map<String, io.qdrant.client.grpc.JsonWithInt.Value> payload = new HashMap<>();
-            payload.put("username", io.qdrant.client.ValueFactory.value(username));
-            payload.put("text", io.qdrant.client.ValueFactory.value(keywordValue));
-            payload.put(keyword, io.qdrant.client.ValueFactory.value("TRUE"));
-
-            var response = client.upsertAsync(
-                    collectionName,
-                    List.of(
-                            PointStruct.newBuilder()
-                                    .setId(id(pointId))
-                                    .setVectors(
-                                            namedVectors(
-                                                    Map.of("text",
-                                                            vector(floatVector))))
-                                    .putAllPayload(payload)
-                                    .build()))
-                    .get();
-
-            System.out.println("Upsert response: " + response);
+        List<List<VectorPoint>> chunks = new ArrayList<>();
+        for (int from = 0; from < valid.size(); from += upsertBatchSize) {
+            chunks.add(valid.subList(from, Math.min(from + upsertBatchSize, valid.size())));
         }
-        catch (Exception e) {
-            System.out.println("Error during upsert: " + e.getMessage());
+
+        // Chunks are dealt round-robin into max-in-flight lanes; each lane sends its chunks one after another
+        AtomicInteger upserted = new AtomicInteger();
+        int lanes = Math.min(upsertMaxInFlight, chunks.size());
+        CompletableFuture<?>[] laneFutures = new CompletableFuture<?>[lanes];
+
+        for (int lane = 0; lane < lanes; lane++) {
+            CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+            for (int i = lane; i < chunks.size(); i += lanes) {
+                List<VectorPoint> chunk = chunks.get(i);
+                chain = chain.thenCompose(ignored -> upsertChunk(chunk, deadline, upserted, failures));
+            }
+            laneFutures[lane] = chain;
         }
+
+        return CompletableFuture.allOf(laneFutures)
+                .thenApply(ignored -> new UpsertResult(upserted.get(), List.copyOf(failures)));
     }
 
-    /**
-     * General upsert function: insert with username and any combination of other keywords.
-     * Always insert the data in "text", and set each keyword to TRUE.
-     */
-    public void upsertWithKeywords(Long pointId, List<Double> vector, String username, Map<String, String> keywordPayload) {
+    // Completes normally either way; a failed chunk is recorded against each of its points
+    private CompletableFuture<Void> upsertChunk(List<VectorPoint> chunk, Duration deadline,
+                                                AtomicInteger upserted, List<UpsertResult.PointFailure> failures) {
+        CompletableFuture<UpdateResult> future;
         try {
-            List<Float> floatVector = vector.stream()
-                    .map(Double::floatValue)
-                    .toList();
+            future = toCompletable(client.upsertAsync(collectionName, toPointStructs(chunk), deadline));
+        }
+        catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
 
-            Map<String, io.qdrant.client.grpc.JsonWithInt.Value> payload = new HashMap<>();
-            payload.put("username", io.qdrant.client.ValueFactory.value(username));
-            // Always insert content in "text"
-            if (keywordPayload.containsKey("text")) {
-                String textValue = keywordPayload.get("text");
-                System.out.println("VectorDB upsertWithKeywords: text=" + textValue);
-                payload.put("text", io.qdrant.client.ValueFactory.value(textValue));
-            }
-            // Set keywords to TRUE or blank only
-            for (String key : keywordPayload.keySet()) {
-                if (!key.equals("text")) {
-                    String value = keywordPayload.get(key);
-                    payload.put(key, io.qdrant.client.ValueFactory.value(
-                        "TRUE".equalsIgnoreCase(value) ? "TRUE" : ""
-                    ));
-                }
+        return future.handle((result, error) -> {
+            if (error == null) {
+                upserted.addAndGet(chunk.size());
+            }
+            else {
+                failAll(failures, chunk, rootMessage(error));
             }
+            return null;
+        });
+    }
+
+    private static List<PointStruct> toPointStructs(List<VectorPoint> points) {
+        List<PointStruct> structs = new ArrayList<>(points.size());
+        for (VectorPoint point : points) {
+            structs.add(PointStruct.newBuilder()
+                    .setId(point.id())
+                    .setVectors(namedVectors(Map.of("text", toVector(point.vector()))))
+                    .putAllPayload(point.payload())
+                    .build());
+        }
+        return structs;
+    }
+
+    private static void failAll(List<UpsertResult.PointFailure> failures, List<VectorPoint> points, String error) {
+        for (VectorPoint point : points) {
+            failures.add(new UpsertResult.PointFailure(point.idString(), error));
+        }
+    }
+
+    // For VectorCollectionBootstrap, which manages the collection itself rather than its points
+    QdrantClient client() {
+        return client;
+    }
 
-            var response = client.upsertAsync(
-                    collectionName,
-                    List.of(
-                            PointStruct.newBuilder()
-                                    .setId(id(pointId))
-                                    .setVectors(
-                                            namedVectors(
-                                                    Map.of("text",
-                                                            vector(floatVector))))
-                                    .putAllPayload(payload)
-                                    .build()))
-                    .get();
+    String collectionName() {
+        return collectionName;
+    }
+
+    /**
+     * Deadline used by the blocking methods (qdrant.deadline-ms).
+     */
+    @Override
+    public Duration defaultDeadline() {
+        return Duration.ofMillis(deadlineMs);
+    }
 
-            System.out.println("General upsert response: " + response);
+    @Override
+    public CompletableFuture<Long> countAsync(Filter filter, Duration deadline) {
+        try {
+            return toCompletable(client.countAsync(collectionName, filter, true, deadline));
         }
         catch (Exception e) {
-            System.out.println("Error during general upsert: " + e.getMessage());
+            return CompletableFuture.failedFuture(e);
         }
     }
 
     /**
-     * Search for similar items by keyword and username.
-     * Only search for similarity in "text" where keyword is TRUE.
+     * Delete every point matching the filter. Fails with the Qdrant error or a timeout after the deadline.
      */
-    public List<String> getSimilar(List<Double> queryVector, String username, String keyword, int k) {
+    @Override
+    public CompletableFuture<Void> deleteAsync(Filter filter, Duration deadline) {
+        try {
+            return toCompletable(client.deleteAsync(collectionName, filter, deadline)).thenApply(result -> null);
+        }
+        catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteAsync(List<String> pointIds, Duration deadline) {
         try {
-            List<Float> floatVector = queryVector.stream()
-                    .map(Double::floatValue)
+            List<PointId> ids = pointIds.stream()
+                    .map(VectorPayloads::toPointId)
                     .toList();
+            return toCompletable(client.deleteAsync(collectionName, ids, deadline)).thenApply(result -> null);
+        }
+        catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 
-            // Only filter by username and keyword (never "text")
-            if ("text".equals(keyword)) {
-                throw new IllegalArgumentException("Do not use 'text' as a filter keyword. Use a domain keyword like 'chat' or 'pdfdata'.");
-            }
+    @Override
+    public CompletableFuture<Set<String>> existingIdsAsync(List<String> pointIds, Duration deadline) {
+        if (pointIds.isEmpty()) {
+            return CompletableFuture.completedFuture(Set.of());
+        }
+        try {
+            List<PointId> ids = pointIds.stream()
+                    .map(VectorPayloads::toPointId)
+                    .toList();
 
-            SearchPoints searchRequest = SearchPoints.newBuilder()
+            // Ids only: neither payload nor vector is read
+            return toCompletable(client.retrieveAsync(collectionName, ids,
+                    WithPayloadSelector.newBuilder().setEnable(false).build(),
+                    WithVectorsSelector.newBuilder().setEnable(false).build(),
+                    null, deadline))
+                    .thenApply(points -> {
+                        Set<String> existing = new HashSet<>();
+                        for (RetrievedPoint point : points) {
+                            existing.add(VectorPayloads.pointIdToString(point.getId()));
+                        }
+                        return existing;
+                    });
+        }
+        catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<List<SearchHit>> searchAsync(Embedding queryVector, Filter filter,
+                                                          SearchOptions options, Duration deadline) {
+        try {
+            SearchPoints.Builder searchRequest = SearchPoints.newBuilder()
                     .setCollectionName(collectionName)
                     .setVectorName("text")
-                    .addAllVector(floatVector)
-                    .setFilter(Filter.newBuilder()
-                            .addMust(matchKeyword("username", username))
-                            .addMust(matchKeyword(keyword, "TRUE"))
-                            .build())
-                    .setLimit(k)
+                    .addAllVector(floatList(queryVector))
+                    .setFilter(filter)
+                    .setLimit(options.k())
                     .setWithPayload(WithPayloadSelector.newBuilder().setEnable(true).build())
-                    .build();
+                    .setWithVectors(WithVectorsSelector.newBuilder().setEnable(options.includeVectors()).build());
 
-            var searchResponse = client.searchAsync(searchRequest).get();
+            if (options.scoreThreshold() != null) {
+                searchRequest.setScoreThreshold(options.scoreThreshold());
+            }
+            if (searchOversampling > 0) {
+                searchRequest.setParams(SearchParams.newBuilder()
+                        .setQuantization(QuantizationSearchParams.newBuilder().setRescore(true).setOversampling(searchOversampling)));
+            }
 
-            List<String> results = new ArrayList<>();
+            return toCompletable(client.searchAsync(searchRequest.build(), deadline)).thenApply(searchResponse -> {
+                List<SearchHit> results = new ArrayList<>();
 
-            // Iterate directly over searchResponse
-            for (ScoredPoint point : searchResponse) {
-                if (point.getPayloadMap().containsKey("text")) {
-                    String value = point.getPayloadMap().get("text").getStringValue();
-                    results.add(value);
+                for (ScoredPoint point : searchResponse) {
+                    float[] vector = null;
+                    if (options.includeVectors()) {
+                        VectorOutput output = point.getVectors().getVectors().getVectorsMap().get("text");
+                        vector = output != null ? toFloatArray(output) : null;
+                    }
+                    results.add(new SearchHit(VectorPayloads.pointIdToString(point.getId()), point.getScore(), VectorPayloads.toPayloadMap(point.getPayloadMap()), vector));
                 }
-            }
 
-            return results;
+                return results;
+            });
         }
         catch (Exception e) {
-            System.out.println("Error during keyword+user search: " + e.getMessage());
-            return new ArrayList<>();
+            return CompletableFuture.failedFuture(e);
         }
     }
 
     /**
-     * Search for similar items by keyword only (no username filtering).
-     * Only search for similarity in "text" where keyword is TRUE.
+     * Bridge a Qdrant (Guava) future to a CompletableFuture. Callbacks run on the gRPC thread,
+     * so dependent stages must stay short or hop to their own executor.
      */
-    public List<String> getSimilarByKeyword(List<Double> queryVector, String keyword, int k) {
-        try {
-            List<Float> floatVector = queryVector.stream()
-                    .map(Double::floatValue)
-                    .toList();
+    private static <T> CompletableFuture<T> toCompletable(ListenableFuture<T> listenable) {
+        CompletableFuture<T> future = new CompletableFuture<>();
 
-            // Only filter by keyword (never "text")
-            if ("text".equals(keyword)) {
-                throw new IllegalArgumentException("Do not use 'text' as a filter keyword. Use a domain keyword like 'chat' or 'pdfdata'.");
+        Futures.addCallback(listenable, new FutureCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                future.complete(result);
             }
 
-            SearchPoints searchRequest = SearchPoints.newBuilder()
-                    .setCollectionName(collectionName)
-                    .setVectorName("text")
-                    .addAllVector(floatVector)
-                    .setFilter(Filter.newBuilder()
-                            .addMust(matchKeyword(keyword, "TRUE"))
-                            .build())
-                    .setLimit(k)
-                    .setWithPayload(WithPayloadSelector.newBuilder().setEnable(true).build())
-                    .build();
+            @Override
+            public void onFailure(Throwable error) {
+                future.completeExceptionally(error);
+            }
+        }, MoreExecutors.directExecutor());
+
+        // Cancelling the returned future cancels the gRPC call as well
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                listenable.cancel(true);
+            }
+        });
+
+        return future;
+    }
+
+    private static String rootMessage(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error.getMessage();
+    }
+
+    /**
+     * Lazily page through every point matching the filter with Qdrant's scroll API.
+     * Only the current page and the one being prefetched are held, so memory stays constant
+     * however many points match. Pages are fetched as the stream is consumed; a failed page
+     * throws IllegalStateException from the stream so a broken scroll is never mistaken for
+     * the end. Closing the stream cancels the prefetch.
+     */
+    @Override
+    public Stream<ScrolledPoint> scroll(Filter filter, int pageSize, boolean withVectors, boolean withPayload) {
+        ScrollIterator iterator = new ScrollIterator(filter, pageSize, withVectors, withPayload);
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+
+    private final class ScrollIterator implements Iterator<ScrolledPoint> {
 
-            var searchResponse = client.searchAsync(searchRequest).get();
+        private final Filter filter;
+        private final int pageSize;
+        private final boolean withVectors;
+        private final boolean withPayload;
 
-            List<String> results = new ArrayList<>();
+        private Iterator<RetrievedPoint> page = Collections.emptyIterator();
+        private CompletableFuture<ScrollResponse> next;
+
+        ScrollIterator(Filter filter, int pageSize, boolean withVectors, boolean withPayload) {
+            this.filter = filter;
+            this.pageSize = pageSize;
+            this.withVectors = withVectors;
+            this.withPayload = withPayload;
+            this.next = fetch(null);
+        }
 
-            // Iterate directly over searchResponse
-            for (ScoredPoint point : searchResponse) {
-                if (point.getPayloadMap().containsKey("text")) {
-                    String value = point.getPayloadMap().get("text").getStringValue();
-                    results.add(value);
+        @Override
+        public boolean hasNext() {
+            while (!page.hasNext() && next != null) {
+                ScrollResponse response;
+                try {
+                    response = next.join();
                 }
+                catch (Exception e) {
+                    next = null;
+                    throw new IllegalStateException("Scroll failed: " + rootMessage(e), e);
+                }
+
+                // Ask for the following page while the caller works through this one
+                next = response.hasNextPageOffset() ? fetch(response.getNextPageOffset()) : null;
+                page = response.getResultList().iterator();
             }
+            return page.hasNext();
+        }
 
-            return results;
+        @Override
+        public ScrolledPoint next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            RetrievedPoint point = page.next();
+            float[] vector = null;
+            if (withVectors) {
+                VectorOutput output = point.getVectors().getVectors().getVectorsMap().get("text");
+                vector = output != null ? toFloatArray(output) : null;
+            }
+            return new ScrolledPoint(VectorPayloads.pointIdToString(point.getId()), VectorPayloads.toPayloadMap(point.getPayloadMap()), vector);
         }
-        catch (Exception e) {
-            System.out.println("Error during keyword-only search: " + e.getMessage());
-            return new ArrayList<>();
+
+        void close() {
+            if (next != null) {
+                next.cancel(true);
+                next = null;
+            }
+        }
+
+        private CompletableFuture<ScrollResponse> fetch(PointId offset) {
+            ScrollPoints.Builder request = ScrollPoints.newBuilder()
+                    .setCollectionName(collectionName)
+                    .setFilter(filter)
+                    .setLimit(pageSize)
+                    .setWithPayload(WithPayloadSelector.newBuilder().setEnable(withPayload).build())
+                    .setWithVectors(WithVectorsSelector.newBuilder().setEnable(withVectors).build());
+
+            if (offset != null) {
+                request.setOffset(offset);
+            }
+
+            try {
+                return toCompletable(client.scrollAsync(request.build(), defaultDeadline()));
+            }
+            catch (Exception e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+    }
+
+    // Protobuf stores the floats unboxed, so copy them out with getFloat rather than through the List<Float> view
+    static float[] toFloatArray(VectorOutput output) {
+        List<Float> values = output.hasDense() ? output.getDense().getDataList() : output.getDataList();
+        float[] vector = new float[values.size()];
+        if (values instanceof Internal.FloatList floats) {
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = floats.getFloat(i);
+            }
+        }
+        else {
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = values.get(i);
+            }
+        }
+        return vector;
+    }
+
+    private static Vector toVector(Embedding embedding) {
+        return Vector.newBuilder().addAllData(floatList(embedding)).build();
+    }
+
+    /**
+     * The embedding as a presized protobuf float list, filled without boxing. Protobuf keeps its own
+     * copy of repeated fields, so this is the one copy a request needs: adding a FloatList to a
+     * builder is a single array copy, where a List<Float> is boxed and grown element by element.
+     */
+    private static Internal.FloatList floatList(Embedding embedding) {
+        Internal.FloatList list = ((Internal.FloatList) Vector.getDefaultInstance().getDataList())
+                .mutableCopyWithCapacity(embedding.dimension());
+        for (float value : embedding.array()) {
+            list.addFloat(value);
         }
+        return list;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,79 @@
+package com.nxt.nxt.util;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD kernels on the JDK Vector API. Only touched after isAvailable() returned true,
+ * so the JVM never loads jdk.incubator.vector classes when the module is missing.
+ */
+final class VectorKernels {
+
+    private VectorKernels() {}
+
+    static boolean isAvailable() {
+        try {
+            return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+                    && Kernels.SPECIES.length() > 1;
+        }
+        catch (Throwable e) {
+            return false;
+        }
+    }
+
+    static double cosineToUnit(float[] a, float[] unit) {
+        return Kernels.cosineToUnit(a, unit);
+    }
+
+    static float dot(float[] a, float[] b) {
+        return Kernels.dot(a, b);
+    }
+
+    // Holder class so the incubator types are resolved lazily
+    private static final class Kernels {
+
+        static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+        static double cosineToUnit(float[] a, float[] unit) {
+            FloatVector dot = FloatVector.zero(SPECIES);
+            FloatVector norm = FloatVector.zero(SPECIES);
+
+            int i = 0;
+            int upper = SPECIES.loopBound(a.length);
+            for (; i < upper; i += SPECIES.length()) {
+                FloatVector va = FloatVector.fromArray(SPECIES, a, i);
+                FloatVector vu = FloatVector.fromArray(SPECIES, unit, i);
+                dot = va.fma(vu, dot);
+                norm = va.fma(va, norm);
+            }
+
+            float dotSum = dot.reduceLanes(VectorOperators.ADD);
+            float normSum = norm.reduceLanes(VectorOperators.ADD);
+
+            // Tail that does not fill a whole vector
+            for (; i < a.length; i++) {
+                dotSum += a[i] * unit[i];
+                normSum += a[i] * a[i];
+            }
+
+            return normSum > 0 ? dotSum / Math.sqrt(normSum) : 0;
+        }
+
+        static float dot(float[] a, float[] b) {
+            FloatVector dot = FloatVector.zero(SPECIES);
+
+            int i = 0;
+            int upper = SPECIES.loopBound(a.length);
+            for (; i < upper; i += SPECIES.length()) {
+                dot = FloatVector.fromArray(SPECIES, a, i).fma(FloatVector.fromArray(SPECIES, b, i), dot);
+            }
+
+            float sum = dot.reduceLanes(VectorOperators.ADD);
+            for (; i < a.length; i++) {
+                sum += a[i] * b[i];
+            }
+            return sum;
+        }
+    }
+}
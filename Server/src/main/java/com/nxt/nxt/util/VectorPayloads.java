@@ -0,0 +1,46 @@
+package com.nxt.nxt.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import io.qdrant.client.PointIdFactory;
+import io.qdrant.client.grpc.JsonWithInt.Value;
+import io.qdrant.client.grpc.Points.PointId;
+
+/**
+ * Conversions between Qdrant's point id and payload types and the plain values VectorStore returns.
+ */
+final class VectorPayloads {
+
+    private VectorPayloads() {}
+
+    static String pointIdToString(PointId pointId) {
+        return pointId.hasUuid() ? pointId.getUuid() : Long.toString(pointId.getNum());
+    }
+
+    // Numeric ids stay numbers, anything else must be a UUID
+    static PointId toPointId(String pointId) {
+        try {
+            return PointIdFactory.id(Long.parseLong(pointId));
+        }
+        catch (NumberFormatException e) {
+            return PointIdFactory.id(UUID.fromString(pointId));
+        }
+    }
+
+    static Map<String, Object> toPayloadMap(Map<String, Value> payload) {
+        Map<String, Object> result = new HashMap<>();
+        for (Map.Entry<String, Value> entry : payload.entrySet()) {
+            Value value = entry.getValue();
+            switch (value.getKindCase()) {
+                case STRING_VALUE -> result.put(entry.getKey(), value.getStringValue());
+                case INTEGER_VALUE -> result.put(entry.getKey(), value.getIntegerValue());
+                case DOUBLE_VALUE -> result.put(entry.getKey(), value.getDoubleValue());
+                case BOOL_VALUE -> result.put(entry.getKey(), value.getBoolValue());
+                default -> { }
+            }
+        }
+        return result;
+    }
+}
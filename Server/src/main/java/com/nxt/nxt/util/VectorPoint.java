@@ -0,0 +1,66 @@
+package com.nxt.nxt.util;
+
+import static io.qdrant.client.ValueFactory.value;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import io.qdrant.client.PointIdFactory;
+import io.qdrant.client.grpc.JsonWithInt.Value;
+import io.qdrant.client.grpc.Points.PointId;
+
+/**
+ * One point to write to the VectorDB collection: id, "text" vector and payload.
+ * Built with the factory methods so the payload always follows the collection's conventions.
+ */
+public record VectorPoint(PointId id, Embedding vector, Map<String, Value> payload) {
+
+    /**
+     * Point with username, content in "text" and every other key of keywordPayload set to TRUE or blank.
+     */
+    public static VectorPoint withKeywords(long pointId, Embedding vector, String username, Map<String, String> keywordPayload) {
+        Map<String, Value> payload = new HashMap<>();
+        payload.put("username", value(username));
+        if (keywordPayload.containsKey("text")) {
+            payload.put("text", value(keywordPayload.get("text")));
+        }
+        for (Map.Entry<String, String> entry : keywordPayload.entrySet()) {
+            if (!entry.getKey().equals("text")) {
+                payload.put(entry.getKey(), value("TRUE".equalsIgnoreCase(entry.getValue()) ? "TRUE" : ""));
+            }
+        }
+        return new VectorPoint(PointIdFactory.id(pointId), vector, payload);
+    }
+
+    /**
+     * Point keyed by its content: the id is ContentHash.pointId(username, source, text), so writing
+     * the same text again for the same user and source overwrites the same point instead of adding one.
+     * The payload carries username, "text", the source keyword set to TRUE and the text's SHA-256 as "content_hash".
+     */
+    public static VectorPoint forContent(String username, String source, String text, Embedding vector) {
+        Map<String, Value> payload = new HashMap<>();
+        payload.put("username", value(username));
+        payload.put("text", value(text));
+        payload.put(source, value("TRUE"));
+        payload.put("content_hash", value(ContentHash.sha256Hex(text)));
+        return new VectorPoint(PointIdFactory.id(ContentHash.pointId(username, source, text)), vector, payload);
+    }
+
+    /**
+     * Post point keyed by the post UUID, with post_id and created_at (epoch seconds) in the payload.
+     */
+    public static VectorPoint post(UUID postId, Embedding vector, String username, String text, long createdAt) {
+        Map<String, Value> payload = new HashMap<>();
+        payload.put("username", value(username));
+        payload.put("text", value(text));
+        payload.put("post", value("TRUE"));
+        payload.put("post_id", value(postId.toString()));
+        payload.put("created_at", value(createdAt));
+        return new VectorPoint(PointIdFactory.id(postId), vector, payload);
+    }
+
+    public String idString() {
+        return id.hasUuid() ? id.getUuid() : Long.toString(id.getNum());
+    }
+}
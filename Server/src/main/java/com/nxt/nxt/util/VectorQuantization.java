@@ -0,0 +1,80 @@
+package com.nxt.nxt.util;
+
+/**
+ * Compact codes of embedding vectors for cheap first-pass scoring.
+ *
+ * Binary: one sign bit per dimension (1 for a positive value), packed 64 to a long, the same bits
+ * Cohere returns as a "ubinary" embedding. 1024 dims take 128 bytes instead of 4 KB, and the
+ * Hamming distance between two codes (16 popcounts) ranks vectors roughly like their cosine.
+ *
+ * Int8: each value scaled by 127 / max |value| and rounded, a quarter of the float size; the dot
+ * product of two codes divided by both scales approximates the float dot product.
+ */
+public final class VectorQuantization {
+
+    private VectorQuantization() {}
+
+    public static int binaryWords(int dimension) {
+        return (dimension + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    public static long[] binary(float[] vector) {
+        long[] code = new long[binaryWords(vector.length)];
+        binaryInto(vector, code, 0);
+        return code;
+    }
+
+    /**
+     * Write the binary code of the vector into codes, starting at word offset.
+     */
+    public static void binaryInto(float[] vector, long[] codes, int offset) {
+        for (int i = 0; i < vector.length; i++) {
+            if (vector[i] > 0) {
+                codes[offset + (i >>> 6)] |= 1L << (i & 63);
+            }
+        }
+    }
+
+    /**
+     * Hamming distance between the query code and the code stored at word offset in codes.
+     */
+    public static int hamming(long[] query, long[] codes, int offset) {
+        int distance = 0;
+        for (int i = 0; i < query.length; i++) {
+            distance += Long.bitCount(query[i] ^ codes[offset + i]);
+        }
+        return distance;
+    }
+
+    public static int hamming(long[] a, long[] b) {
+        return hamming(a, b, 0);
+    }
+
+    /**
+     * Int8 code of the vector; int8Scale gives the factor it was multiplied by.
+     */
+    public static byte[] int8(float[] vector) {
+        float scale = int8Scale(vector);
+        byte[] code = new byte[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            code[i] = (byte) Math.round(vector[i] * scale);
+        }
+        return code;
+    }
+
+    public static float int8Scale(float[] vector) {
+        float max = 0;
+        for (float value : vector) {
+            max = Math.max(max, Math.abs(value));
+        }
+        return max == 0 ? 1 : 127 / max;
+    }
+
+    public static int dot(byte[] a, byte[] b) {
+        int sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,314 @@
+package com.nxt.nxt.util;
+
+import static io.qdrant.client.ConditionFactory.isEmpty;
+import static io.qdrant.client.ConditionFactory.matchKeyword;
+import static io.qdrant.client.ConditionFactory.range;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+
+import io.qdrant.client.grpc.Points.Filter;
+import io.qdrant.client.grpc.Points.Range;
+
+/**
+ * Storage and similarity search of the "text" vectors behind chat, PDF and post retrieval.
+ * Filters use Qdrant's Filter type as the common language for every implementation.
+ * Selected with vector.store: "qdrant" (VectorDB, the default) or "embedded" (EmbeddedVectorStore,
+ * in-process, no network).
+ *
+ * Implementations provide the primitive operations; the keyword/username conveniences the
+ * callers use are built on them here, so both behave the same.
+ */
+public interface VectorStore {
+
+    /**
+     * Write many points. The future never fails: rejected points are listed in the result.
+     */
+    CompletableFuture<UpsertResult> upsertBatchAsync(List<VectorPoint> points, Duration deadline);
+
+    /**
+     * Nearest points to the query vector among those matching the filter, best first.
+     * Fails (instead of returning no hits) so callers can tell an error from an empty result.
+     */
+    CompletableFuture<List<SearchHit>> searchAsync(Embedding queryVector, Filter filter, SearchOptions options, Duration deadline);
+
+    CompletableFuture<Long> countAsync(Filter filter, Duration deadline);
+
+    /**
+     * Delete every point matching the filter.
+     */
+    CompletableFuture<Void> deleteAsync(Filter filter, Duration deadline);
+
+    /**
+     * Delete points by id, as returned by SearchHit.id (a UUID or a number).
+     */
+    CompletableFuture<Void> deleteAsync(List<String> pointIds, Duration deadline);
+
+    /**
+     * Which of the given point ids exist. Used to skip embedding content that is already stored.
+     */
+    CompletableFuture<Set<String>> existingIdsAsync(List<String> pointIds, Duration deadline);
+
+    /**
+     * Every point matching the filter, lazily and in constant memory. A failure part way
+     * throws IllegalStateException from the stream so it is never mistaken for the end.
+     */
+    Stream<ScrolledPoint> scroll(Filter filter, int pageSize, boolean withVectors, boolean withPayload);
+
+    /**
+     * Deadline used by the blocking methods.
+     */
+    Duration defaultDeadline();
+
+    default Stream<ScrolledPoint> scroll(Filter filter, int pageSize, boolean withVectors) {
+        return scroll(filter, pageSize, withVectors, true);
+    }
+
+    /**
+     * Upsert data with username and one keyword (text, post, chat, pdfdata).
+     * Always insert the data in "text", and set the keyword for that TRUE.
+     */
+    default void upsertData(Long pointId, Embedding vector, String keyword, String keywordValue, String username) {
+        Map<String, String> keywordPayload = new HashMap<>();
+        keywordPayload.put("text", keywordValue);
+        keywordPayload.put(keyword, "TRUE");
+
+        logFailures("upsert", upsertBatch(List.of(VectorPoint.withKeywords(pointId, vector, username, keywordPayload))));
+    }
+
+    /**
+     * General upsert function: insert with username and any combination of other keywords.
+     * Always insert the data in "text", and set each keyword to TRUE.
+     */
+    default void upsertWithKeywords(Long pointId, Embedding vector, String username, Map<String, String> keywordPayload) {
+        logFailures("general upsert", upsertBatch(List.of(VectorPoint.withKeywords(pointId, vector, username, keywordPayload))));
+    }
+
+    /**
+     * Upsert a post under its own UUID so search hits map straight back to the posts row.
+     * The payload carries the same id as "post_id" and the creation time (epoch seconds) as "created_at".
+     */
+    default void upsertPost(UUID postId, Embedding vector, String username, String text, long createdAt) {
+        logFailures("post upsert", upsertBatch(List.of(VectorPoint.post(postId, vector, username, text, createdAt))));
+    }
+
+    /**
+     * Blocking form of upsertBatchAsync with the default deadline.
+     */
+    default UpsertResult upsertBatch(List<VectorPoint> points) {
+        return upsertBatchAsync(points, defaultDeadline()).join();
+    }
+
+    /**
+     * Blocking form of existingIdsAsync. On failure nothing counts as existing, so the caller
+     * embeds and upserts again; content-addressed upserts are idempotent, so that is only wasted work.
+     */
+    default Set<String> existingIds(List<String> pointIds) {
+        if (pointIds.isEmpty()) {
+            return Set.of();
+        }
+        try {
+            return existingIdsAsync(pointIds, defaultDeadline()).join();
+        }
+        catch (Exception e) {
+            System.out.println("Error checking for existing points: " + rootMessage(e));
+            return Set.of();
+        }
+    }
+
+    /**
+     * Search for similar items by keyword and username.
+     * Only search for similarity in "text" where keyword is TRUE.
+     */
+    default List<SearchHit> search(Embedding queryVector, String username, String keyword, int k) {
+        return search(queryVector, username, keyword, SearchOptions.top(k));
+    }
+
+    default List<SearchHit> search(Embedding queryVector, String username, String keyword, SearchOptions options) {
+        return awaitSearch(searchAsync(queryVector, username, keyword, options, defaultDeadline()), "keyword+user");
+    }
+
+    default CompletableFuture<List<SearchHit>> searchAsync(Embedding queryVector, String username, String keyword,
+                                                           int k, Duration deadline) {
+        return searchAsync(queryVector, username, keyword, SearchOptions.top(k), deadline);
+    }
+
+    default CompletableFuture<List<SearchHit>> searchAsync(Embedding queryVector, String username, String keyword,
+                                                           SearchOptions options, Duration deadline) {
+        try {
+            return searchAsync(queryVector, sourceFilter(username, keyword), options, deadline);
+        }
+        catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Search for similar items by keyword only (no username filtering).
+     * Only search for similarity in "text" where keyword is TRUE.
+     */
+    default List<SearchHit> searchByKeyword(Embedding queryVector, String keyword, int k) {
+        return searchByKeyword(queryVector, keyword, SearchOptions.top(k));
+    }
+
+    default List<SearchHit> searchByKeyword(Embedding queryVector, String keyword, SearchOptions options) {
+        return awaitSearch(searchByKeywordAsync(queryVector, keyword, options, defaultDeadline()), "keyword-only");
+    }
+
+    default CompletableFuture<List<SearchHit>> searchByKeywordAsync(Embedding queryVector, String keyword,
+                                                                    SearchOptions options, Duration deadline) {
+        try {
+            return searchAsync(queryVector, keywordFilter(keyword), options, deadline);
+        }
+        catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Nearest posts to the query vector, optionally only those created at or after createdAfter (epoch seconds).
+     */
+    default List<SearchHit> searchPosts(Embedding queryVector, Long createdAfter, int k) {
+        return awaitSearch(searchPostsAsync(queryVector, createdAfter, SearchOptions.top(k), defaultDeadline()), "post recall");
+    }
+
+    default CompletableFuture<List<SearchHit>> searchPostsAsync(Embedding queryVector, Long createdAfter,
+                                                                SearchOptions options, Duration deadline) {
+        Filter.Builder filter = Filter.newBuilder()
+                .addMust(matchKeyword("post", "TRUE"));
+
+        if (createdAfter != null) {
+            filter.addMust(range("created_at", Range.newBuilder().setGte(createdAfter).build()));
+        }
+
+        return searchAsync(queryVector, filter.build(), options, deadline);
+    }
+
+    /**
+     * Same as search, returning only the "text" payload of each hit.
+     */
+    default List<String> getSimilar(Embedding queryVector, String username, String keyword, int k) {
+        return texts(search(queryVector, username, keyword, k));
+    }
+
+    default CompletableFuture<List<String>> getSimilarAsync(Embedding queryVector, String username, String keyword,
+                                                            int k, Duration deadline) {
+        return searchAsync(queryVector, username, keyword, k, deadline).thenApply(VectorStore::texts);
+    }
+
+    /**
+     * Same as searchByKeyword, returning only the "text" payload of each hit.
+     */
+    default List<String> getSimilarByKeyword(Embedding queryVector, String keyword, int k) {
+        return texts(searchByKeyword(queryVector, keyword, k));
+    }
+
+    /**
+     * True while "post" points without a post_id or created_at payload (written by older versions) still exist.
+     */
+    default boolean hasLegacyPostPoints() {
+        try {
+            Filter legacy = Filter.newBuilder()
+                    .addMust(matchKeyword("post", "TRUE"))
+                    .addShould(isEmpty("post_id"))
+                    .addShould(isEmpty("created_at"))
+                    .build();
+
+            return countAsync(legacy, defaultDeadline()).join() > 0;
+        }
+        catch (Exception e) {
+            System.out.println("Error counting legacy post points: " + rootMessage(e));
+            return false;
+        }
+    }
+
+    /**
+     * Delete "post" points that have no post_id payload, once they have been re-indexed by UUID.
+     */
+    default void deleteLegacyPostPoints() {
+        Filter legacy = Filter.newBuilder()
+                .addMust(matchKeyword("post", "TRUE"))
+                .addMust(isEmpty("post_id"))
+                .build();
+
+        try {
+            deleteAsync(legacy, defaultDeadline()).join();
+            System.out.println("Legacy post points deleted");
+        }
+        catch (Exception e) {
+            System.out.println("Error deleting legacy post points: " + rootMessage(e));
+        }
+    }
+
+    /**
+     * Filter for every point of a user from one source ("chat", "pdfdata", "post").
+     * The username match is what lets Qdrant search only that user's tenant segment
+     * (and the embedded store only that user's slots), so keep it a top-level must.
+     */
+    static Filter sourceFilter(String username, String keyword) {
+        return Filter.newBuilder()
+                .addMust(matchKeyword("username", username))
+                .addMust(keywordCondition(keyword))
+                .build();
+    }
+
+    /**
+     * Filter for every point from one source, of any user.
+     */
+    static Filter keywordFilter(String keyword) {
+        return Filter.newBuilder()
+                .addMust(keywordCondition(keyword))
+                .build();
+    }
+
+    // Only filter by username and keyword (never "text")
+    private static io.qdrant.client.grpc.Points.Condition keywordCondition(String keyword) {
+        if ("text".equals(keyword)) {
+            throw new IllegalArgumentException("Do not use 'text' as a filter keyword. Use a domain keyword like 'chat' or 'pdfdata'.");
+        }
+        return matchKeyword(keyword, "TRUE");
+    }
+
+    // The blocking search methods keep their old contract: errors are logged and give no hits
+    private static List<SearchHit> awaitSearch(CompletableFuture<List<SearchHit>> search, String label) {
+        try {
+            return search.join();
+        }
+        catch (Exception e) {
+            System.out.println("Error during " + label + " search: " + rootMessage(e));
+            return new ArrayList<>();
+        }
+    }
+
+    private static void logFailures(String label, UpsertResult result) {
+        for (UpsertResult.PointFailure failure : result.failures()) {
+            System.out.println("Error during " + label + " of point " + failure.pointId() + ": " + failure.error());
+        }
+    }
+
+    private static List<String> texts(List<SearchHit> hits) {
+        List<String> results = new ArrayList<>();
+        for (SearchHit hit : hits) {
+            if (hit.text() != null) {
+                results.add(hit.text());
+            }
+        }
+        return results;
+    }
+
+    private static String rootMessage(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error.getMessage();
+    }
+}
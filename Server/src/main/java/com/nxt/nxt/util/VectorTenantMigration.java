@@ -0,0 +1,136 @@
+package com.nxt.nxt.util;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import io.qdrant.client.QdrantClient;
+import io.qdrant.client.grpc.Points.PointId;
+import io.qdrant.client.grpc.Points.RetrievedPoint;
+import io.qdrant.client.grpc.Points.ScrollPoints;
+import io.qdrant.client.grpc.Points.ScrollResponse;
+import io.qdrant.client.grpc.Points.VectorOutput;
+import io.qdrant.client.grpc.Points.WithPayloadSelector;
+import io.qdrant.client.grpc.Points.WithVectorsSelector;
+
+/**
+ * Moves the points of an existing collection into the configured (tenant-partitioned) one.
+ *
+ * The configured collection is bootstrapped first, so it has the tenant index on username and the
+ * per-user HNSW graphs before any point arrives; points are then copied page by page with their
+ * ids, vectors and payloads unchanged, so copying twice is harmless. The source collection is left
+ * in place: point qdrant.collection.name at the new collection, migrate, then drop the old one.
+ *
+ * A collection that only needs the tenant index does not need this: bootstrap converts it in place.
+ */
+@Component
+@ConditionalOnProperty(name = "vector.store", havingValue = "qdrant", matchIfMissing = true)
+public class VectorTenantMigration {
+
+    private static final int PAGE_SIZE = 256;
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final VectorDB vectorDB;
+    private final VectorCollectionBootstrap bootstrap;
+
+    public VectorTenantMigration(VectorDB vectorDB, VectorCollectionBootstrap bootstrap) {
+        this.vectorDB = vectorDB;
+        this.bootstrap = bootstrap;
+    }
+
+    /**
+     * Copy every point of sourceCollection into the configured collection. Returns what was copied;
+     * points without a username are copied too but counted, since no per-user search finds them.
+     */
+    public synchronized Map<String, Object> migrateFrom(String sourceCollection) throws Exception {
+        QdrantClient client = vectorDB.client();
+        String target = vectorDB.collectionName();
+        if (client == null) {
+            throw new IllegalStateException("Qdrant client is not initialized");
+        }
+        if (sourceCollection == null || sourceCollection.isBlank() || sourceCollection.equals(target)) {
+            throw new IllegalArgumentException("Source collection must be set and differ from " + target);
+        }
+        if (!client.collectionExistsAsync(sourceCollection, TIMEOUT).get()) {
+            throw new IllegalArgumentException("Collection " + sourceCollection + " does not exist");
+        }
+
+        long started = System.currentTimeMillis();
+        Map<String, Object> targetSetup = bootstrap.bootstrap();
+        if (!Boolean.TRUE.equals(targetSetup.get("success"))) {
+            throw new IllegalStateException("Could not prepare " + target + ": " + targetSetup.get("error"));
+        }
+
+        long scanned = 0;
+        long copied = 0;
+        long withoutTenant = 0;
+        long withoutVector = 0;
+        List<String> failures = new ArrayList<>();
+
+        PointId offset = null;
+        do {
+            ScrollResponse page = client.scrollAsync(scrollRequest(sourceCollection, offset), TIMEOUT).get();
+            offset = page.hasNextPageOffset() ? page.getNextPageOffset() : null;
+
+            List<VectorPoint> points = new ArrayList<>(page.getResultCount());
+            for (RetrievedPoint point : page.getResultList()) {
+                scanned++;
+                VectorOutput vector = point.getVectors().getVectors().getVectorsMap().get("text");
+                if (vector == null) {
+                    withoutVector++;
+                    continue;
+                }
+                if (!point.getPayloadMap().containsKey("username")) {
+                    withoutTenant++;
+                }
+                points.add(new VectorPoint(point.getId(), Embedding.of(VectorDB.toFloatArray(vector)), point.getPayloadMap()));
+            }
+
+            UpsertResult upsert = vectorDB.upsertBatch(points);
+            copied += upsert.upserted();
+            for (UpsertResult.PointFailure failure : upsert.failures()) {
+                // Keep the report readable on a large failed run
+                if (failures.size() < 20) {
+                    failures.add(failure.pointId() + ": " + failure.error());
+                }
+            }
+            if (!upsert.isComplete()) {
+                System.err.println("Tenant migration: " + upsert.failures().size() + " points of a page not copied");
+            }
+        } while (offset != null);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("from", sourceCollection);
+        report.put("to", target);
+        report.put("finishedAt", Instant.now().toString());
+        report.put("scanned", scanned);
+        report.put("copied", copied);
+        report.put("withoutUsername", withoutTenant);
+        report.put("skippedWithoutVector", withoutVector);
+        report.put("failures", failures);
+        report.put("durationMs", System.currentTimeMillis() - started);
+        report.put("bootstrap", targetSetup.get("actions"));
+
+        System.out.println("Tenant migration " + sourceCollection + " -> " + target + ": copied " + copied
+                + " of " + scanned + " points, " + withoutTenant + " without username, " + withoutVector + " without vector");
+        return report;
+    }
+
+    private static ScrollPoints scrollRequest(String collection, PointId offset) {
+        ScrollPoints.Builder request = ScrollPoints.newBuilder()
+                .setCollectionName(collection)
+                .setLimit(PAGE_SIZE)
+                .setWithPayload(WithPayloadSelector.newBuilder().setEnable(true).build())
+                .setWithVectors(WithVectorsSelector.newBuilder().setEnable(true).build());
+        if (offset != null) {
+            request.setOffset(offset);
+        }
+        return request.build();
+    }
+}
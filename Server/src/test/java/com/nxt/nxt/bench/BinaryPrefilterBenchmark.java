@@ -0,0 +1,296 @@
+package com.nxt.nxt.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.nxt.nxt.util.VectorQuantization;
+
+/**
+ * Recall versus latency of one top-10 query over 20k vectors of 1024 dims:
+ * exactFloat scores every float vector; binaryThenFloat ranks all 1-bit codes by Hamming distance
+ * and rescores the closest k * oversampling with the floats (EmbeddedVectorStore with
+ * vector.embedded.binary-prefilter); binaryThenInt8 rescores with int8 codes instead, so no float
+ * vector is read at all; exactInt8 scores every int8 code.
+ * Vectors are clustered (like embeddings of related texts), queries are perturbed data points.
+ * Recall@10 against exactFloat is printed once per trial, before the timings.
+ *
+ * Run: mvn test-compile, then
+ * java -cp "target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout)" \
+ *      com.nxt.nxt.bench.BinaryPrefilterBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinaryPrefilterBenchmark {
+
+    private static final int K = 10;
+    private static final int QUERIES = 64;
+    private static final int CLUSTERS = 200;
+
+    @Param({ "20000" })
+    int points;
+
+    @Param({ "1024" })
+    int dimension;
+
+    @Param({ "2", "4", "8" })
+    int oversampling;
+
+    float[][] vectors;
+    long[] codes;
+    int codeWords;
+    byte[][] int8;
+    float[] int8Scales;
+
+    float[][] queries;
+    long[][] queryCodes;
+    byte[][] queryInt8;
+    int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        float[][] centers = new float[CLUSTERS][];
+        for (int c = 0; c < CLUSTERS; c++) {
+            centers[c] = gaussian(random, 1.0f);
+        }
+
+        vectors = new float[points][];
+        codeWords = VectorQuantization.binaryWords(dimension);
+        codes = new long[points * codeWords];
+        int8 = new byte[points][];
+        int8Scales = new float[points];
+        for (int i = 0; i < points; i++) {
+            vectors[i] = unit(add(centers[random.nextInt(CLUSTERS)], gaussian(random, 0.8f)));
+            VectorQuantization.binaryInto(vectors[i], codes, i * codeWords);
+            int8[i] = VectorQuantization.int8(vectors[i]);
+            int8Scales[i] = VectorQuantization.int8Scale(vectors[i]);
+        }
+
+        queries = new float[QUERIES][];
+        queryCodes = new long[QUERIES][];
+        queryInt8 = new byte[QUERIES][];
+        for (int q = 0; q < QUERIES; q++) {
+            queries[q] = unit(add(vectors[random.nextInt(points)], gaussian(random, 0.03f)));
+            queryCodes[q] = VectorQuantization.binary(queries[q]);
+            queryInt8[q] = VectorQuantization.int8(queries[q]);
+        }
+
+        double binaryFloat = 0;
+        double binaryInt8 = 0;
+        double int8Exact = 0;
+        for (int q = 0; q < QUERIES; q++) {
+            int[] truth = exactFloat(q);
+            binaryFloat += recall(truth, binaryThenFloat(q));
+            binaryInt8 += recall(truth, binaryThenInt8(q));
+            int8Exact += recall(truth, exactInt8(q));
+        }
+        System.out.printf("%nrecall@%d oversampling=%d: binaryThenFloat %.3f, binaryThenInt8 %.3f, exactInt8 %.3f%n",
+                K, oversampling, binaryFloat / QUERIES, binaryInt8 / QUERIES, int8Exact / QUERIES);
+    }
+
+    @Benchmark
+    public int[] exactFloat() {
+        return exactFloat(nextQuery());
+    }
+
+    @Benchmark
+    public int[] binaryThenFloat() {
+        return binaryThenFloat(nextQuery());
+    }
+
+    @Benchmark
+    public int[] binaryThenInt8() {
+        return binaryThenInt8(nextQuery());
+    }
+
+    @Benchmark
+    public int[] exactInt8() {
+        return exactInt8(nextQuery());
+    }
+
+    private int nextQuery() {
+        next = (next + 1) % QUERIES;
+        return next;
+    }
+
+    private int[] exactFloat(int q) {
+        Top top = new Top(K);
+        for (int i = 0; i < points; i++) {
+            top.offer(i, dot(vectors[i], queries[q]));
+        }
+        return top.ids();
+    }
+
+    private int[] binaryThenFloat(int q) {
+        int[] shortlist = hammingShortlist(q);
+        Top top = new Top(K);
+        for (int i : shortlist) {
+            top.offer(i, dot(vectors[i], queries[q]));
+        }
+        return top.ids();
+    }
+
+    private int[] binaryThenInt8(int q) {
+        int[] shortlist = hammingShortlist(q);
+        Top top = new Top(K);
+        for (int i : shortlist) {
+            top.offer(i, VectorQuantization.dot(int8[i], queryInt8[q]) / int8Scales[i]);
+        }
+        return top.ids();
+    }
+
+    private int[] exactInt8(int q) {
+        Top top = new Top(K);
+        for (int i = 0; i < points; i++) {
+            top.offer(i, VectorQuantization.dot(int8[i], queryInt8[q]) / int8Scales[i]);
+        }
+        return top.ids();
+    }
+
+    private int[] hammingShortlist(int q) {
+        Top shortlist = new Top(K * oversampling);
+        for (int i = 0; i < points; i++) {
+            shortlist.offer(i, -VectorQuantization.hamming(queryCodes[q], codes, i * codeWords));
+        }
+        return shortlist.ids();
+    }
+
+    private static double recall(int[] truth, int[] found) {
+        int hits = 0;
+        for (int id : found) {
+            for (int expected : truth) {
+                if (id == expected) {
+                    hits++;
+                    break;
+                }
+            }
+        }
+        return (double) hits / truth.length;
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private float[] gaussian(Random random, float sigma) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian() * sigma;
+        }
+        return vector;
+    }
+
+    private static float[] add(float[] a, float[] b) {
+        float[] sum = new float[a.length];
+        for (int i = 0; i < a.length; i++) {
+            sum[i] = a[i] + b[i];
+        }
+        return sum;
+    }
+
+    private static float[] unit(float[] vector) {
+        double norm = Math.sqrt(dot(vector, vector));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] /= norm;
+        }
+        return vector;
+    }
+
+    // Primitive bounded min-heap, so boxing does not blur the comparison
+    private static final class Top {
+        private final int[] ids;
+        private final float[] scores;
+        private int size;
+
+        Top(int k) {
+            ids = new int[k];
+            scores = new float[k];
+        }
+
+        void offer(int id, float score) {
+            if (size < ids.length) {
+                ids[size] = id;
+                scores[size] = score;
+                siftUp(size++);
+            }
+            else if (score > scores[0]) {
+                ids[0] = id;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        int[] ids() {
+            return java.util.Arrays.copyOf(ids, size);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (scores[parent] <= scores[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && scores[left] < scores[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && scores[right] < scores[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+            float score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BinaryPrefilterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,130 @@
+package com.nxt.nxt.bench;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.nxt.nxt.util.Embedding;
+import com.nxt.nxt.util.EmbeddingCodec;
+
+import com.google.protobuf.Internal;
+
+import io.qdrant.client.VectorFactory;
+import io.qdrant.client.grpc.Points.SearchPoints;
+import io.qdrant.client.grpc.Points.Vector;
+
+/**
+ * Bytes allocated per embedding on its way through a request, 1024 dims (the Cohere embedding size):
+ * taking the Cohere response, writing it to a Qdrant point, using it as a search query and
+ * reading a stored post vector back for scoring.
+ * boxedLists is the previous List<Double> path, embedding the Embedding/float[] path.
+ * Compare gc.alloc.rate.norm (bytes per operation) from the GC profiler.
+ *
+ * Run: mvn test-compile, then
+ * java -cp "target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout)" \
+ *      com.nxt.nxt.bench.EmbeddingAllocationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmbeddingAllocationBenchmark {
+
+    @Param({ "1024" })
+    int dimension;
+
+    // What the Cohere SDK returns: boxed Doubles
+    List<Double> response;
+    byte[] stored;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        response = new ArrayList<>(dimension);
+        for (int i = 0; i < dimension; i++) {
+            response.add(random.nextGaussian());
+        }
+        stored = EmbeddingCodec.encode(Embedding.of(response));
+    }
+
+    @Benchmark
+    public Object boxedLists() {
+        // Upsert: stream to List<Float>, then into the protobuf builder
+        List<Float> floats = response.stream()
+                .map(Double::floatValue)
+                .toList();
+        Vector point = VectorFactory.vector(floats);
+
+        // Search query: the same conversion again
+        List<Float> query = response.stream()
+                .map(Double::floatValue)
+                .toList();
+        SearchPoints search = SearchPoints.newBuilder().addAllVector(query).build();
+
+        // Stored vector decoded to List<Double>, then copied to float[] for the scorer
+        ByteBuffer buffer = ByteBuffer.wrap(stored).order(ByteOrder.LITTLE_ENDIAN);
+        List<Double> decoded = new ArrayList<>(stored.length / Float.BYTES);
+        while (buffer.remaining() >= Float.BYTES) {
+            decoded.add((double) buffer.getFloat());
+        }
+        float[] scored = new float[decoded.size()];
+        for (int i = 0; i < scored.length; i++) {
+            scored[i] = decoded.get(i).floatValue();
+        }
+
+        return new Object[] { point, search, scored };
+    }
+
+    @Benchmark
+    public Object embedding() {
+        // Converted once at the API boundary, then shared
+        Embedding embedding = Embedding.of(response);
+
+        // Upsert and search query, as VectorDB builds them: a presized float list, no boxing
+        Vector.Builder point = Vector.newBuilder().addAllData(floatList(embedding));
+        SearchPoints.Builder search = SearchPoints.newBuilder().addAllVector(floatList(embedding));
+
+        // Stored vector decoded straight into the float[] the scorer reads
+        float[] scored = EmbeddingCodec.decode(stored).array();
+
+        return new Object[] { point.build(), search.build(), scored };
+    }
+
+    // Same as VectorDB.floatList
+    private static Internal.FloatList floatList(Embedding embedding) {
+        Internal.FloatList list = ((Internal.FloatList) Vector.getDefaultInstance().getDataList())
+                .mutableCopyWithCapacity(embedding.dimension());
+        for (float value : embedding.array()) {
+            list.addFloat(value);
+        }
+        return list;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EmbeddingAllocationBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,144 @@
+package com.nxt.nxt.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.nxt.nxt.util.PostRankScorer;
+
+/**
+ * Throughput of scoring 10k candidates of 1024 dims (the Cohere embedding size).
+ * scoreBatchVectorized runs with the Vector API module, scoreBatchScalar without it (the fallback),
+ * and boxedLists is the previous List<Double> implementation for comparison.
+ *
+ * Run: mvn test-compile, then
+ * java -cp "target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout)" \
+ *      com.nxt.nxt.bench.PostRankScorerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PostRankScorerBenchmark {
+
+    @Param({ "10000" })
+    int candidates;
+
+    @Param({ "1024" })
+    int dimension;
+
+    float[][] posts;
+    int[] likes;
+    int[] comments;
+    int[] hoursAgo;
+    PostRankScorer scorer;
+
+    List<List<Double>> boxedPosts;
+    List<Double> boxedUser;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+
+        float[] user = randomVector(random);
+        scorer = new PostRankScorer(user);
+
+        posts = new float[candidates][];
+        likes = new int[candidates];
+        comments = new int[candidates];
+        hoursAgo = new int[candidates];
+        boxedPosts = new ArrayList<>(candidates);
+
+        for (int i = 0; i < candidates; i++) {
+            posts[i] = randomVector(random);
+            likes[i] = random.nextInt(100);
+            comments[i] = random.nextInt(50);
+            hoursAgo[i] = random.nextInt(24 * 30);
+            boxedPosts.add(box(posts[i]));
+        }
+        boxedUser = box(user);
+    }
+
+    @Benchmark
+    @Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+    public double[] scoreBatchVectorized() {
+        return scorer.scoreBatch(posts, likes, comments, hoursAgo);
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    public double[] scoreBatchScalar() {
+        return scorer.scoreBatch(posts, likes, comments, hoursAgo);
+    }
+
+    @Benchmark
+    @Fork(value = 1)
+    public double[] boxedLists() {
+        double[] scores = new double[candidates];
+        for (int i = 0; i < candidates; i++) {
+            scores[i] = boxedSimilarity(boxedPosts.get(i), boxedUser);
+        }
+        return scores;
+    }
+
+    // The List<Double> cosine PostRankScorer used before, user norm recomputed per post
+    private static double boxedSimilarity(List<Double> postVector, List<Double> userVector) {
+        double score = 0;
+        double normA = 0;
+        double normB = 0;
+
+        for (int i = 0; i < postVector.size(); i++) {
+            score += postVector.get(i) * userVector.get(i);
+            normA += Math.pow(postVector.get(i), 2);
+            normB += Math.pow(userVector.get(i), 2);
+        }
+
+        normA = Math.sqrt(normA);
+        normB = Math.sqrt(normB);
+
+        if (normA != 0 && normB != 0) {
+            score /= (normA * normB);
+        }
+
+        return score;
+    }
+
+    private float[] randomVector(Random random) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static List<Double> box(float[] vector) {
+        List<Double> boxed = new ArrayList<>(vector.length);
+        for (float value : vector) {
+            boxed.add((double) value);
+        }
+        return boxed;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PostRankScorerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
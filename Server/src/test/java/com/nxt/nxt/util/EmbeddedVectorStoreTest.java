@@ -0,0 +1,233 @@
+package com.nxt.nxt.util;
+
+import static io.qdrant.client.ValueFactory.value;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.qdrant.client.PointIdFactory;
+import io.qdrant.client.grpc.JsonWithInt.Value;
+import io.qdrant.client.grpc.Points.Filter;
+
+class EmbeddedVectorStoreTest {
+
+    private static final int DIMENSION = 16;
+
+    @TempDir
+    Path directory;
+
+    private final Random random = new Random(3);
+    private final List<EmbeddedVectorStore> stores = new ArrayList<>();
+
+    @AfterEach
+    void shutdown() {
+        stores.forEach(EmbeddedVectorStore::shutdown);
+    }
+
+    @Test
+    void searchFindsThePointItselfWithinTheUsersSource() {
+        EmbeddedVectorStore store = store(DIMENSION, "");
+        List<VectorPoint> points = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            points.add(VectorPoint.forContent(i % 2 == 0 ? "alice" : "bob", "chat", "message " + i, randomEmbedding()));
+        }
+        assertThat(store.upsertBatch(points).upserted()).isEqualTo(200);
+
+        VectorPoint target = points.get(42);
+        List<SearchHit> hits = store.search(target.vector(), "alice", "chat", 5);
+
+        assertThat(hits).hasSize(5).allMatch(hit -> "alice".equals(hit.payload().get("username")));
+        assertThat(hits.get(0).id()).isEqualTo(target.idString());
+        assertThat(hits.get(0).score()).isCloseTo(1f, org.assertj.core.data.Offset.offset(1e-5f));
+        assertThat(store.search(target.vector(), "alice", "pdfdata", 5)).isEmpty();
+    }
+
+    @Test
+    void wrongDimensionFailsOnlyThatPoint() {
+        EmbeddedVectorStore store = store(DIMENSION, "");
+        VectorPoint good = VectorPoint.forContent("alice", "chat", "fits", randomEmbedding());
+        VectorPoint bad = VectorPoint.forContent("alice", "chat", "too short", Embedding.of(new float[] { 1, 2, 3 }));
+
+        UpsertResult result = store.upsertBatch(List.of(good, bad));
+
+        assertThat(result.upserted()).isEqualTo(1);
+        assertThat(result.failures()).extracting(UpsertResult.PointFailure::pointId).containsExactly(bad.idString());
+    }
+
+    @Test
+    void deletedPointsAreGoneBeforeAndAfterCompaction() throws Exception {
+        EmbeddedVectorStore store = store(DIMENSION, "");
+        List<VectorPoint> points = posts(2000);
+        store.upsertBatch(points);
+
+        Iterator<ScrolledPoint> openScroll = store.scroll(Filter.getDefaultInstance(), 10, false).iterator();
+        openScroll.next();
+
+        List<String> deleted = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            deleted.add(points.get(i).idString());
+        }
+        long generation = generation(store);
+        store.deleteAsync(deleted, store.defaultDeadline()).join();
+
+        // Tombstoned: invisible right away, whether or not compaction has run yet
+        assertThat(store.countAsync(Filter.getDefaultInstance(), store.defaultDeadline()).join()).isEqualTo(500);
+        assertThat(store.existingIds(deleted.subList(0, 100))).isEmpty();
+
+        long waitUntil = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (generation(store) == generation && System.nanoTime() < waitUntil) {
+            Thread.sleep(10);
+        }
+        assertThat(generation(store)).isGreaterThan(generation);
+
+        assertThatThrownBy(() -> {
+            while (openScroll.hasNext()) {
+                openScroll.next();
+            }
+        }).isInstanceOf(IllegalStateException.class);
+
+        assertThat(store.countAsync(Filter.getDefaultInstance(), store.defaultDeadline()).join()).isEqualTo(500);
+        assertThat(store.scroll(Filter.getDefaultInstance(), 64, false).map(ScrolledPoint::id).toList())
+                .hasSize(500)
+                .doesNotContainAnyElementsOf(deleted);
+        VectorPoint kept = points.get(1999);
+        assertThat(store.searchPosts(kept.vector(), null, 1).get(0).id()).isEqualTo(kept.idString());
+        assertThat(store.searchPosts(points.get(0).vector(), null, 10))
+                .extracting(SearchHit::id)
+                .doesNotContainAnyElementsOf(deleted);
+    }
+
+    @Test
+    void snapshotRoundTripsPointsAndPayloads() throws IOException {
+        String path = directory.resolve("vectors.snap").toString();
+        EmbeddedVectorStore store = store(DIMENSION, path);
+
+        Map<String, Value> payload = new HashMap<>();
+        payload.put("username", value("alice"));
+        payload.put("text", value("typed payload"));
+        payload.put("created_at", value(1_700_000_000L));
+        payload.put("score", value(0.25));
+        payload.put("pinned", value(true));
+        VectorPoint typed = new VectorPoint(PointIdFactory.id(UUID.randomUUID()), randomEmbedding(), payload);
+        VectorPoint removed = VectorPoint.forContent("alice", "chat", "deleted before the snapshot", randomEmbedding());
+        List<VectorPoint> points = new ArrayList<>(posts(50));
+        points.add(typed);
+        points.add(removed);
+        store.upsertBatch(points);
+        store.deleteAsync(List.of(removed.idString()), store.defaultDeadline()).join();
+        store.snapshot();
+
+        EmbeddedVectorStore reloaded = store(DIMENSION, path);
+
+        assertThat(reloaded.countAsync(Filter.getDefaultInstance(), reloaded.defaultDeadline()).join()).isEqualTo(51);
+        assertThat(reloaded.existingIds(List.of(removed.idString()))).isEmpty();
+        SearchHit hit = reloaded.searchPosts(points.get(7).vector(), null, 1).get(0);
+        assertThat(hit.id()).isEqualTo(points.get(7).idString());
+        assertThat(hit.score()).isCloseTo(1f, org.assertj.core.data.Offset.offset(1e-5f));
+
+        Map<String, Object> restored = reloaded.scroll(Filter.getDefaultInstance(), 64, false)
+                .filter(point -> point.id().equals(typed.idString()))
+                .findFirst().orElseThrow().payload();
+        assertThat(restored).containsEntry("username", "alice")
+                .containsEntry("created_at", 1_700_000_000L)
+                .containsEntry("score", 0.25)
+                .containsEntry("pinned", true);
+    }
+
+    @Test
+    void snapshotOfAnotherVersionIsIgnored() throws IOException {
+        Path path = writeSnapshot();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).putInt(0, 99), Integer.BYTES);
+        }
+
+        assertThat(count(store(DIMENSION, path.toString()))).isZero();
+    }
+
+    @Test
+    void snapshotOfAnotherDimensionIsIgnored() throws IOException {
+        Path path = writeSnapshot();
+
+        assertThat(count(store(DIMENSION * 2, path.toString()))).isZero();
+    }
+
+    @Test
+    void truncatedSnapshotIsIgnored() throws IOException {
+        Path path = writeSnapshot();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - Float.BYTES);
+        }
+
+        assertThat(count(store(DIMENSION, path.toString()))).isZero();
+    }
+
+    private Path writeSnapshot() throws IOException {
+        Path path = directory.resolve("vectors.snap");
+        EmbeddedVectorStore store = store(DIMENSION, path.toString());
+        store.upsertBatch(posts(20));
+        store.snapshot();
+        assertThat(count(store(DIMENSION, path.toString()))).isEqualTo(20);
+        return path;
+    }
+
+    private EmbeddedVectorStore store(int dimension, String snapshotPath) {
+        EmbeddedVectorStore store = new EmbeddedVectorStore();
+        ReflectionTestUtils.setField(store, "dimension", dimension);
+        ReflectionTestUtils.setField(store, "initialCapacity", 64);
+        ReflectionTestUtils.setField(store, "hnswThreshold", 1000);
+        ReflectionTestUtils.setField(store, "hnswM", 16);
+        ReflectionTestUtils.setField(store, "hnswEfConstruct", 100);
+        ReflectionTestUtils.setField(store, "hnswEfSearch", 128);
+        ReflectionTestUtils.setField(store, "binaryPrefilter", false);
+        ReflectionTestUtils.setField(store, "binaryOversampling", 8);
+        ReflectionTestUtils.setField(store, "snapshotPath", snapshotPath);
+        ReflectionTestUtils.setField(store, "snapshotIntervalSeconds", 3600L);
+        store.init();
+        stores.add(store);
+        return store;
+    }
+
+    private List<VectorPoint> posts(int count) {
+        List<VectorPoint> points = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            points.add(VectorPoint.post(UUID.randomUUID(), randomEmbedding(), "user" + (i % 7), "post " + i, 1_700_000_000L + i));
+        }
+        return points;
+    }
+
+    private Embedding randomEmbedding() {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return Embedding.of(vector);
+    }
+
+    private static long count(EmbeddedVectorStore store) {
+        return store.countAsync(Filter.getDefaultInstance(), store.defaultDeadline()).join();
+    }
+
+    private static long generation(EmbeddedVectorStore store) {
+        return (long) ReflectionTestUtils.getField(store, "generation");
+    }
+}
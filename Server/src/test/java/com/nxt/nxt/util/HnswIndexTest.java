@@ -0,0 +1,132 @@
+package com.nxt.nxt.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class HnswIndexTest {
+
+    private static final int DIMENSION = 32;
+    private static final int POINTS = 3000;
+    private static final int K = 10;
+
+    private final Random random = new Random(7);
+    private OffHeapVectors vectors;
+    private HnswIndex graph;
+
+    @BeforeEach
+    void build() {
+        // Clustered, like embeddings of related texts
+        float[][] centers = new float[40][];
+        for (int c = 0; c < centers.length; c++) {
+            centers[c] = gaussian(1.0f);
+        }
+        vectors = new OffHeapVectors(DIMENSION, 64);
+        for (int i = 0; i < POINTS; i++) {
+            vectors.add(add(centers[random.nextInt(centers.length)], gaussian(0.5f)));
+        }
+        graph = new HnswIndex(vectors, 16, 100);
+        for (int slot = 0; slot < POINTS; slot++) {
+            graph.add(slot);
+        }
+    }
+
+    @Test
+    void recallAgainstBruteForce() {
+        double recall = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = OffHeapVectors.normalize(gaussian(1.0f));
+            Set<Integer> expected = bruteForce(query, slot -> true);
+            Set<Integer> found = nodes(graph.search(query, K, 128, slot -> true));
+            found.retainAll(expected);
+            recall += (double) found.size() / K;
+        }
+        assertThat(recall / queries).isGreaterThanOrEqualTo(0.95);
+    }
+
+    @Test
+    void resultsAreSortedBestFirst() {
+        List<HnswIndex.Candidate> hits = graph.search(OffHeapVectors.normalize(gaussian(1.0f)), K, 64, slot -> true);
+        assertThat(hits).hasSize(K);
+        for (int i = 1; i < hits.size(); i++) {
+            assertThat(hits.get(i - 1).similarity()).isGreaterThanOrEqualTo(hits.get(i).similarity());
+        }
+    }
+
+    @Test
+    void filteredSearchOnlyReturnsAcceptedNodes() {
+        java.util.function.IntPredicate even = slot -> slot % 2 == 0;
+        float[] query = OffHeapVectors.normalize(gaussian(1.0f));
+
+        List<HnswIndex.Candidate> hits = graph.search(query, K, 128, even);
+
+        assertThat(hits).hasSize(K).allMatch(hit -> hit.node() % 2 == 0);
+        Set<Integer> found = nodes(hits);
+        found.retainAll(bruteForce(query, even));
+        assertThat(found.size()).isGreaterThanOrEqualTo(8);
+    }
+
+    @Test
+    void findsAnIndexedVectorItself() {
+        float[] stored = vectors.get(1234, new float[DIMENSION]);
+        assertThat(graph.search(stored, 1, 64, slot -> true).get(0).node()).isEqualTo(1234);
+    }
+
+    @Test
+    void emptyGraphReturnsNothing() {
+        HnswIndex empty = new HnswIndex(new OffHeapVectors(DIMENSION, 4), 16, 100);
+        assertThat(empty.search(OffHeapVectors.normalize(gaussian(1.0f)), K, 64, slot -> true)).isEmpty();
+    }
+
+    @Test
+    void slotsMustBeAddedInOrder() {
+        vectors.add(gaussian(1.0f));
+        vectors.add(gaussian(1.0f));
+        assertThatThrownBy(() -> graph.add(POINTS + 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private Set<Integer> bruteForce(float[] query, java.util.function.IntPredicate accept) {
+        List<HnswIndex.Candidate> all = new ArrayList<>();
+        float[] scratch = new float[DIMENSION];
+        for (int slot = 0; slot < POINTS; slot++) {
+            if (accept.test(slot)) {
+                all.add(new HnswIndex.Candidate(slot, vectors.similarity(slot, query, scratch)));
+            }
+        }
+        all.sort((a, b) -> Float.compare(b.similarity(), a.similarity()));
+        return nodes(all.subList(0, K));
+    }
+
+    private static Set<Integer> nodes(List<HnswIndex.Candidate> candidates) {
+        Set<Integer> nodes = new HashSet<>();
+        for (HnswIndex.Candidate candidate : candidates) {
+            nodes.add(candidate.node());
+        }
+        return nodes;
+    }
+
+    private float[] gaussian(float sigma) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian() * sigma;
+        }
+        return vector;
+    }
+
+    private static float[] add(float[] a, float[] b) {
+        float[] sum = new float[a.length];
+        for (int i = 0; i < a.length; i++) {
+            sum[i] = a[i] + b[i];
+        }
+        return sum;
+    }
+}
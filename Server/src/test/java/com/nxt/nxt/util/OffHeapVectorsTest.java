@@ -0,0 +1,57 @@
+package com.nxt.nxt.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class OffHeapVectorsTest {
+
+    private static final int DIMENSION = 4;
+
+    private final Random random = new Random(1);
+
+    @Test
+    void slotsSpanSeveralChunks() {
+        // Chunks of 5 slots: growth doubles the first chunk, then adds whole chunks
+        OffHeapVectors vectors = new OffHeapVectors(DIMENSION, 2, true, 5);
+        float[][] stored = new float[23][];
+        for (int i = 0; i < stored.length; i++) {
+            stored[i] = randomVector();
+            assertThat(vectors.add(stored[i])).isEqualTo(i);
+        }
+
+        FloatBuffer bulk = FloatBuffer.allocate(9 * DIMENSION);
+        for (int i = 0; i < 9; i++) {
+            bulk.put(OffHeapVectors.normalize(stored[i]));
+        }
+        bulk.flip();
+        vectors.addUnit(bulk, 9);
+
+        assertThat(vectors.size()).isEqualTo(32);
+        for (int slot = 0; slot < 32; slot++) {
+            float[] expected = OffHeapVectors.normalize(stored[slot < 23 ? slot : slot - 23]);
+            assertThat(vectors.get(slot, new float[DIMENSION])).containsExactly(expected, org.assertj.core.data.Offset.offset(1e-6f));
+            assertThat(vectors.hamming(slot, VectorQuantization.binary(expected))).isZero();
+        }
+    }
+
+    @Test
+    void storesUnitVectorsSoSimilarityIsCosine() {
+        OffHeapVectors vectors = new OffHeapVectors(DIMENSION, 1);
+        int slot = vectors.add(new float[] { 3, 0, 4, 0 });
+
+        float similarity = vectors.similarity(slot, OffHeapVectors.normalize(new float[] { 3, 0, 4, 0 }), new float[DIMENSION]);
+        assertThat(similarity).isCloseTo(1f, org.assertj.core.data.Offset.offset(1e-6f));
+    }
+
+    private float[] randomVector() {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
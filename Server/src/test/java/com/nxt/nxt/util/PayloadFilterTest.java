@@ -0,0 +1,132 @@
+package com.nxt.nxt.util;
+
+import static io.qdrant.client.ConditionFactory.filter;
+import static io.qdrant.client.ConditionFactory.hasId;
+import static io.qdrant.client.ConditionFactory.isEmpty;
+import static io.qdrant.client.ConditionFactory.match;
+import static io.qdrant.client.ConditionFactory.matchExceptKeywords;
+import static io.qdrant.client.ConditionFactory.matchKeyword;
+import static io.qdrant.client.ConditionFactory.matchKeywords;
+import static io.qdrant.client.ConditionFactory.matchText;
+import static io.qdrant.client.ConditionFactory.range;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import io.qdrant.client.PointIdFactory;
+import io.qdrant.client.grpc.Points.Filter;
+import io.qdrant.client.grpc.Points.Range;
+
+class PayloadFilterTest {
+
+    private static final String ID = UUID.randomUUID().toString();
+
+    private static final Map<String, Object> POST = Map.of(
+            "username", "alice",
+            "post", "TRUE",
+            "text", "hello",
+            "created_at", 1_700_000_000L);
+
+    @Test
+    void mustRequiresEveryCondition() {
+        assertThat(matches(Filter.newBuilder()
+                .addMust(matchKeyword("username", "alice"))
+                .addMust(matchKeyword("post", "TRUE"))
+                .build())).isTrue();
+        assertThat(matches(Filter.newBuilder()
+                .addMust(matchKeyword("username", "alice"))
+                .addMust(matchKeyword("chat", "TRUE"))
+                .build())).isFalse();
+    }
+
+    @Test
+    void shouldRequiresAtLeastOneCondition() {
+        assertThat(matches(Filter.newBuilder()
+                .addShould(matchKeyword("chat", "TRUE"))
+                .addShould(matchKeyword("post", "TRUE"))
+                .build())).isTrue();
+        assertThat(matches(Filter.newBuilder()
+                .addShould(matchKeyword("chat", "TRUE"))
+                .addShould(matchKeyword("pdfdata", "TRUE"))
+                .build())).isFalse();
+    }
+
+    @Test
+    void mustNotExcludesMatches() {
+        assertThat(matches(Filter.newBuilder().addMustNot(matchKeyword("username", "bob")).build())).isTrue();
+        assertThat(matches(Filter.newBuilder().addMustNot(matchKeyword("username", "alice")).build())).isFalse();
+    }
+
+    @Test
+    void emptyFilterMatchesEverything() {
+        assertThat(matches(Filter.getDefaultInstance())).isTrue();
+    }
+
+    @Test
+    void hasIdMatchesThePointId() {
+        assertThat(matches(Filter.newBuilder().addMust(hasId(PointIdFactory.id(UUID.fromString(ID)))).build())).isTrue();
+        assertThat(matches(Filter.newBuilder().addMust(hasId(List.of(
+                PointIdFactory.id(UUID.randomUUID()), PointIdFactory.id(7)))).build())).isFalse();
+    }
+
+    @Test
+    void rangeBoundsAreInclusiveOrExclusiveAsGiven() {
+        assertThat(matches(Filter.newBuilder().addMust(range("created_at",
+                Range.newBuilder().setGte(1_700_000_000).build())).build())).isTrue();
+        assertThat(matches(Filter.newBuilder().addMust(range("created_at",
+                Range.newBuilder().setGt(1_700_000_000).build())).build())).isFalse();
+        assertThat(matches(Filter.newBuilder().addMust(range("created_at",
+                Range.newBuilder().setGt(1_600_000_000).setLt(1_800_000_000).build())).build())).isTrue();
+        // A missing or non-numeric field is never in range
+        assertThat(matches(Filter.newBuilder().addMust(range("text",
+                Range.newBuilder().setGte(0).build())).build())).isFalse();
+    }
+
+    @Test
+    void keywordListsAndExceptions() {
+        assertThat(matches(Filter.newBuilder().addMust(matchKeywords("username", List.of("bob", "alice"))).build())).isTrue();
+        assertThat(matches(Filter.newBuilder().addMust(matchExceptKeywords("username", List.of("alice"))).build())).isFalse();
+        assertThat(matches(Filter.newBuilder().addMust(match("created_at", 1_700_000_000L)).build())).isTrue();
+    }
+
+    @Test
+    void isEmptyMatchesMissingKeys() {
+        assertThat(matches(Filter.newBuilder().addMust(isEmpty("post_id")).build())).isTrue();
+        assertThat(matches(Filter.newBuilder().addMust(isEmpty("username")).build())).isFalse();
+    }
+
+    @Test
+    void nestedFiltersCombine() {
+        Filter either = Filter.newBuilder()
+                .addShould(matchKeyword("chat", "TRUE"))
+                .addShould(matchKeyword("post", "TRUE"))
+                .build();
+        assertThat(matches(Filter.newBuilder()
+                .addMust(matchKeyword("username", "alice"))
+                .addMust(filter(either))
+                .build())).isTrue();
+        assertThat(matches(Filter.newBuilder().addMustNot(filter(either)).build())).isFalse();
+    }
+
+    @Test
+    void unsupportedConditionsAreRejected() {
+        assertThatThrownBy(() -> matches(Filter.newBuilder().addMust(matchText("text", "hello")).build()))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void requiredUsernameComesFromATopLevelMust() {
+        assertThat(PayloadFilter.requiredUsername(VectorStore.sourceFilter("alice", "chat"))).isEqualTo("alice");
+        assertThat(PayloadFilter.requiredUsername(Filter.newBuilder()
+                .addShould(matchKeyword("username", "alice")).build())).isNull();
+    }
+
+    private static boolean matches(Filter filter) {
+        return PayloadFilter.matches(filter, ID, POST);
+    }
+}
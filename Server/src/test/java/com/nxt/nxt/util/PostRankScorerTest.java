@@ -0,0 +1,110 @@
+package com.nxt.nxt.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class PostRankScorerTest {
+
+    private static final int DIMENSION = 64;
+
+    private final Random random = new Random(11);
+
+    @Test
+    void maxScoreBoundsEveryPostOfThatAgeOrOlder() {
+        PostRankScorer scorer = new PostRankScorer(randomVector(DIMENSION));
+        int age = 5;
+
+        for (int trial = 0; trial < 200; trial++) {
+            int maxLikes = random.nextInt(21) - 10;
+            int maxComments = random.nextInt(6);
+            double bound = scorer.maxScore(age, maxLikes, maxComments);
+
+            // A post without votes has 0 likes, even when every voted post is net negative
+            int likes = random.nextBoolean() ? 0 : Math.min(maxLikes, random.nextInt(21) - 10);
+            int comments = random.nextInt(maxComments + 1);
+            double score = scorer.overallScore(likes, comments, age + random.nextInt(48), randomVector(DIMENSION));
+
+            assertThat(score).isLessThanOrEqualTo(bound);
+        }
+    }
+
+    @Test
+    void negativeEngagementDoesNotLowerTheBound() {
+        float[] user = randomVector(DIMENSION);
+        PostRankScorer scorer = new PostRankScorer(user);
+
+        // Every voted candidate net negative; an unvoted post with the same comments, identical to the user vector
+        double bound = scorer.maxScore(3, -2, 4);
+        assertThat(bound).isEqualTo(scorer.maxScore(3, 0, 4));
+        assertThat(bound).isGreaterThanOrEqualTo(scorer.overallScore(0, 4, 3, user));
+    }
+
+    @Test
+    void simdAndScalarKernelsAgree() {
+        assumeTrue(VectorKernels.isAvailable(), "jdk.incubator.vector not present");
+
+        // Lengths around and between whole vectors, so the tail loops run
+        for (int dimension : new int[] { 1, 3, 7, 8, 15, 17, 1023, 1024, 1025 }) {
+            float[] post = randomVector(dimension);
+            float[] unit = unit(randomVector(dimension));
+
+            assertThat(VectorKernels.cosineToUnit(post, unit))
+                    .as("cosine, dimension %d", dimension)
+                    .isCloseTo(PostRankScorer.scalarCosineToUnit(post, unit), within(1e-5));
+
+            double dot = 0;
+            for (int i = 0; i < dimension; i++) {
+                dot += (double) post[i] * unit[i];
+            }
+            assertThat((double) VectorKernels.dot(post, unit))
+                    .as("dot, dimension %d", dimension)
+                    .isCloseTo(dot, within(1e-3));
+        }
+    }
+
+    @Test
+    void similarityMatchesTheScalarCosine() {
+        float[] user = randomVector(1023);
+        float[] post = randomVector(1023);
+
+        assertThat(new PostRankScorer(user).similarityScore(post))
+                .isCloseTo(PostRankScorer.scalarCosineToUnit(post, unit(user)), within(1e-5));
+    }
+
+    @Test
+    void zeroVectorsHaveNoSimilarity() {
+        float[] vector = randomVector(1023);
+
+        assertThat(new PostRankScorer(vector).similarityScore(new float[1023])).isZero();
+        assertThat(new PostRankScorer(new float[1023]).similarityScore(vector)).isZero();
+        assertThat(PostRankScorer.scalarCosineToUnit(new float[1023], unit(vector))).isZero();
+        if (VectorKernels.isAvailable()) {
+            assertThat(VectorKernels.cosineToUnit(new float[1023], unit(vector))).isZero();
+        }
+    }
+
+    private static float[] unit(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        float[] unit = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            unit[i] = (float) (vector[i] / Math.sqrt(norm));
+        }
+        return unit;
+    }
+
+    private float[] randomVector(int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
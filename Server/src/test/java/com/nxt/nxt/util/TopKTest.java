@@ -0,0 +1,56 @@
+package com.nxt.nxt.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class TopKTest {
+
+    @Test
+    void keepsTheKBestInOrder() {
+        Random random = new Random(5);
+        TopK<Integer> top = new TopK<>(10);
+        List<double[]> all = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            double score = random.nextGaussian();
+            all.add(new double[] { i, score });
+            top.offer(i, score);
+        }
+
+        all.sort(Comparator.comparingDouble((double[] entry) -> entry[1]).reversed());
+        List<Integer> expected = all.subList(0, 10).stream().map(entry -> (int) entry[0]).toList();
+        assertThat(top.toSortedList()).containsExactlyElementsOf(expected);
+        assertThat(top.threshold()).isEqualTo(all.get(9)[1]);
+    }
+
+    @Test
+    void thresholdIsOpenUntilFull() {
+        TopK<String> top = new TopK<>(2);
+        assertThat(top.threshold()).isEqualTo(Double.NEGATIVE_INFINITY);
+        assertThat(top.offer("a", -5)).isTrue();
+        assertThat(top.isFull()).isFalse();
+        assertThat(top.offer("b", 1)).isTrue();
+        assertThat(top.threshold()).isEqualTo(-5);
+    }
+
+    @Test
+    void tiesWithTheThresholdAreNotKept() {
+        TopK<String> top = new TopK<>(1);
+        top.offer("first", 1.0);
+        assertThat(top.offer("second", 1.0)).isFalse();
+        assertThat(top.offer("third", 2.0)).isTrue();
+        assertThat(top.toSortedList()).containsExactly("third");
+        assertThat(top.size()).isEqualTo(1);
+    }
+
+    @Test
+    void kMustBePositive() {
+        assertThatThrownBy(() -> new TopK<>(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}